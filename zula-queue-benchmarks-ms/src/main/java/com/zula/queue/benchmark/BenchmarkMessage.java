@@ -0,0 +1,42 @@
+package com.zula.queue.benchmark;
+
+import com.zula.queue.core.ZulaMessage;
+
+/**
+ * Message used by all benchmarks; {@code data} is padded to the requested payload size.
+ */
+@ZulaMessage(messageType = "benchmark")
+public class BenchmarkMessage {
+
+    private String requestId;
+    private String orderId;
+    private long amount;
+    private String data;
+
+    public BenchmarkMessage() {
+    }
+
+    /**
+     * A message whose JSON body is roughly {@code payloadBytes} long.
+     */
+    public static BenchmarkMessage ofSize(int payloadBytes) {
+        BenchmarkMessage message = new BenchmarkMessage();
+        message.setRequestId("3f1c2a4e-8d6b-4c1e-9a7f-0b5d2e6c8a91");
+        message.setOrderId("order-42");
+        message.setAmount(1999);
+        message.setData("x".repeat(Math.max(0, payloadBytes - 110)));
+        return message;
+    }
+
+    public String getRequestId() { return requestId; }
+    public void setRequestId(String requestId) { this.requestId = requestId; }
+
+    public String getOrderId() { return orderId; }
+    public void setOrderId(String orderId) { this.orderId = orderId; }
+
+    public long getAmount() { return amount; }
+    public void setAmount(long amount) { this.amount = amount; }
+
+    public String getData() { return data; }
+    public void setData(String data) { this.data = data; }
+}
@@ -0,0 +1,90 @@
+package com.zula.queue.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zula.queue.config.QueueProperties;
+import com.zula.queue.core.InboundMessageListener;
+import com.zula.queue.core.MessageCodecRegistry;
+import com.zula.queue.core.MessageHandlerRegistry;
+import com.zula.queue.core.MessagePublisher;
+import com.zula.queue.core.QueueManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-delivery listener body, fed a message as {@link MessagePublisher} puts it on the wire.
+ * {@code registry} is the listener {@link MessageHandlerRegistry} starts, which is also what a
+ * {@code BaseMessageConsumer} runs when the registry is present; {@code consumer} is the plain
+ * listener a {@code BaseMessageConsumer} starts without a registry. Handlers only consume the
+ * decoded object, so the score is decode plus dispatch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ConsumeBenchmark {
+
+    @Param({"256", "4096", "65536"})
+    public int payloadBytes;
+
+    @Param({"1", "3"})
+    public int handlers;
+
+    private Message message;
+    private MessageListener registryListener;
+    private MessageListener consumerListener;
+    private volatile BenchmarkMessage lastHandled;
+
+    @Setup
+    public void setup() {
+        QueueProperties properties = new QueueProperties();
+        StubBroker broker = new StubBroker();
+        QueueManager queueManager = broker.queueManager(properties);
+        MessageCodecRegistry codecs = new MessageCodecRegistry(new ObjectMapper().findAndRegisterModules(), properties);
+
+        new MessagePublisher(queueManager, broker.template, properties, codecs)
+                .publishToService("benchmark-target", BenchmarkMessage.ofSize(payloadBytes));
+        message = broker.template.last;
+
+        StubBroker.CapturingContainerFactory containerFactory =
+                new StubBroker.CapturingContainerFactory(broker.connectionFactory, properties);
+        MessageHandlerRegistry registry = new MessageHandlerRegistry(queueManager, broker.connectionFactory,
+                new StandardEnvironment(), null, containerFactory, codecs);
+        for (int i = 0; i < handlers; i++) {
+            registry.register(BenchmarkMessage.class, decoded -> lastHandled = decoded);
+        }
+        registryListener = containerFactory.listeners.values().iterator().next();
+
+        String queueName = queueManager.generateQueueName("benchmark-target", "benchmark");
+        consumerListener = new InboundMessageListener<>(queueName, "benchmark", BenchmarkMessage.class, codecs,
+                decoded -> lastHandled = decoded, null);
+    }
+
+    @Benchmark
+    public void registry(Blackhole blackhole) {
+        registryListener.onMessage(message);
+        blackhole.consume(lastHandled);
+    }
+
+    @Benchmark
+    public void consumer(Blackhole blackhole) {
+        consumerListener.onMessage(message);
+        blackhole.consume(lastHandled);
+    }
+}
@@ -0,0 +1,62 @@
+package com.zula.queue.benchmark;
+
+import com.zula.queue.core.MessageMetadataHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MessageMetadataHelper#extractMessageId} for each place the id can come from: the
+ * {@code x-message-id} header, the payload's request id, or neither (a random UUID).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class MetadataBenchmark {
+
+    private Message withHeader;
+    private Message withoutHeader;
+    private BenchmarkMessage payload;
+    private BenchmarkMessage payloadWithoutId;
+
+    @Setup
+    public void setup() {
+        MessageProperties headerProperties = new MessageProperties();
+        headerProperties.setHeader(MessageMetadataHelper.HEADER_MESSAGE_ID, "3f1c2a4e-8d6b-4c1e-9a7f-0b5d2e6c8a91");
+        headerProperties.setHeader(MessageMetadataHelper.HEADER_SOURCE_SERVICE, "benchmark-source");
+        withHeader = new Message(new byte[0], headerProperties);
+        withoutHeader = new Message(new byte[0], new MessageProperties());
+        payload = BenchmarkMessage.ofSize(256);
+        payloadWithoutId = BenchmarkMessage.ofSize(256);
+        payloadWithoutId.setRequestId(null);
+    }
+
+    @Benchmark
+    public String fromHeader() {
+        return MessageMetadataHelper.extractMessageId(withHeader, payload);
+    }
+
+    @Benchmark
+    public String fromPayload() {
+        return MessageMetadataHelper.extractMessageId(withoutHeader, payload);
+    }
+
+    @Benchmark
+    public String generated() {
+        return MessageMetadataHelper.extractMessageId(withoutHeader, payloadWithoutId);
+    }
+}
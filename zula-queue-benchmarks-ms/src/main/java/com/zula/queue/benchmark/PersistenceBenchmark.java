@@ -0,0 +1,115 @@
+package com.zula.queue.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zula.database.config.DatabaseProperties;
+import com.zula.database.core.DatabaseManager;
+import com.zula.queue.config.QueueProperties;
+import com.zula.queue.core.QueuePersistenceService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.jdbi.v3.core.Jdbi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link QueuePersistenceService} outbox and inbox writes against an embedded PostgreSQL, with
+ * group commit and inbox pipelining off and on. Jdbi, DatabaseManager and the queue schema come
+ * from the database library's auto-configuration, exactly as in a service; only the DataSource is
+ * replaced by the embedded server. Both tables are truncated after every iteration so each
+ * iteration starts from the same table size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+
+    @Param({"false", "true"})
+    public boolean batched;
+
+    @Param({"1024"})
+    public int payloadBytes;
+
+    private EmbeddedPostgres postgres;
+    private ConfigurableApplicationContext context;
+    private QueuePersistenceService persistence;
+    private Jdbi jdbi;
+    private String schema;
+    private BenchmarkMessage message;
+    private byte[] payload;
+
+    @Setup
+    public void setup() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        DataSource dataSource = postgres.getPostgresDatabase();
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.application.name=benchmark", "zula.queue.auto-create-queues=false")
+                .initializers(ctx -> ctx.getBeanFactory().registerSingleton("dataSource", dataSource))
+                .run();
+
+        QueueProperties properties = new QueueProperties();
+        properties.getOutbox().setGroupCommit(batched);
+        properties.getInbox().setPipelined(batched);
+        jdbi = context.getBean(Jdbi.class);
+        DatabaseManager databaseManager = context.getBean(DatabaseManager.class);
+        persistence = new QueuePersistenceService(jdbi, databaseManager, new ObjectMapper(),
+                context.getBean(DatabaseProperties.class), properties);
+        schema = databaseManager.generateQueueSchemaName();
+        message = BenchmarkMessage.ofSize(payloadBytes);
+        payload = message.getData().getBytes();
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        jdbi.useHandle(handle -> handle.execute("TRUNCATE " + schema + ".message_outbox, " + schema + ".message_inbox"));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        persistence.close();
+        context.close();
+        postgres.close();
+    }
+
+    @Benchmark
+    public String persistOutbox() {
+        return persistence.persistOutbox(message, "benchmark", "benchmark-target", UUID.randomUUID().toString());
+    }
+
+    @Benchmark
+    public void inboxReceivedAndProcessed() {
+        String messageId = UUID.randomUUID().toString();
+        persistence.recordInboxReceived(messageId, "benchmark", "benchmark-source", payload);
+        persistence.markInboxProcessed(messageId);
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    static class Application {
+    }
+}
@@ -0,0 +1,53 @@
+package com.zula.queue.benchmark;
+
+import com.zula.queue.config.QueueProperties;
+import com.zula.queue.core.MessagePublisher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MessagePublisher#publishToService} without persistence: descriptor lookup, routing,
+ * queue declaration cache, encoding and building the AMQP message, sent to {@link StubBroker}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PublishBenchmark {
+
+    @Param({"256", "4096", "65536"})
+    public int payloadBytes;
+
+    @Param({"LEGACY", "TARGETED"})
+    public QueueProperties.RoutingMode routingMode;
+
+    private MessagePublisher publisher;
+    private BenchmarkMessage message;
+
+    @Setup
+    public void setup() {
+        QueueProperties properties = new QueueProperties();
+        properties.setRoutingMode(routingMode);
+        StubBroker broker = new StubBroker();
+        publisher = new MessagePublisher(broker.queueManager(properties), broker.template, properties);
+        message = BenchmarkMessage.ofSize(payloadBytes);
+    }
+
+    @Benchmark
+    public void publishToService() {
+        publisher.publishToService("benchmark-target", message);
+    }
+}
@@ -0,0 +1,61 @@
+package com.zula.queue.benchmark;
+
+import com.zula.queue.config.QueueProperties;
+import com.zula.queue.core.QueueManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link QueueManager#createServiceQueue} as called before every publish: eight threads hitting
+ * the declaration cache for a few or many message types. Declarations themselves are no-ops in
+ * {@link StubBroker}, so the score is the cost of finding out that nothing needs declaring.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(8)
+@State(Scope.Benchmark)
+public class QueueDeclarationBenchmark {
+
+    @Param({"1", "64"})
+    public int messageTypes;
+
+    @Param({"1", "4"})
+    public int partitions;
+
+    private QueueManager queueManager;
+    private String[] types;
+
+    @Setup
+    public void setup() {
+        QueueProperties properties = new QueueProperties();
+        types = new String[messageTypes];
+        for (int i = 0; i < messageTypes; i++) {
+            types[i] = "benchmark" + i;
+            if (partitions > 1) {
+                properties.getPartitioning().getTypes().put(types[i], partitions);
+            }
+        }
+        queueManager = new StubBroker().queueManager(properties);
+    }
+
+    @Benchmark
+    public void createServiceQueue() {
+        queueManager.createServiceQueue("benchmark-target", types[ThreadLocalRandom.current().nextInt(types.length)]);
+    }
+}
@@ -0,0 +1,97 @@
+package com.zula.queue.benchmark;
+
+import com.zula.queue.config.QueueProperties;
+import com.zula.queue.core.QueueListenerContainerFactory;
+import com.zula.queue.core.QueueManager;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Exchange;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.context.Lifecycle;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Broker stand-ins so the benchmarks measure the library alone: a template that keeps the last
+ * sent message instead of writing to a channel, an admin whose declarations are no-ops, and a
+ * container factory that hands out the listeners it is given instead of consuming. None of them
+ * opens a connection.
+ */
+final class StubBroker {
+
+    final CachingConnectionFactory connectionFactory = new CachingConnectionFactory("localhost");
+    final Template template = new Template(connectionFactory);
+    final Admin admin = new Admin(template);
+
+    QueueManager queueManager(QueueProperties properties) {
+        QueueManager queueManager = new QueueManager(admin, properties);
+        queueManager.init();
+        return queueManager;
+    }
+
+    static final class Template extends RabbitTemplate {
+
+        volatile Message last;
+
+        Template(CachingConnectionFactory connectionFactory) {
+            super(connectionFactory);
+        }
+
+        @Override
+        public void send(String exchange, String routingKey, Message message, CorrelationData correlationData) {
+            last = message;
+        }
+    }
+
+    static final class Admin extends RabbitAdmin {
+
+        final LongAdder declarations = new LongAdder();
+
+        Admin(RabbitTemplate template) {
+            super(template);
+        }
+
+        @Override
+        public void declareExchange(Exchange exchange) {
+            declarations.increment();
+        }
+
+        @Override
+        public String declareQueue(Queue queue) {
+            declarations.increment();
+            return queue.getName();
+        }
+
+        @Override
+        public void declareBinding(Binding binding) {
+            declarations.increment();
+        }
+
+        @Override
+        public void removeBinding(Binding binding) {
+            declarations.increment();
+        }
+    }
+
+    static final class CapturingContainerFactory extends QueueListenerContainerFactory {
+
+        final Map<String, MessageListener> listeners = new ConcurrentHashMap<>();
+
+        CapturingContainerFactory(CachingConnectionFactory connectionFactory, QueueProperties properties) {
+            super(connectionFactory, properties);
+        }
+
+        @Override
+        public Lifecycle startContainer(String queueName, String messageType, MessageListener listener) {
+            listeners.put(queueName, listener);
+            return null;
+        }
+    }
+}
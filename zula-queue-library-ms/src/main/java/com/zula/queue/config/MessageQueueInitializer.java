@@ -1,9 +1,12 @@
 package com.zula.queue.config;
 
+import com.zula.queue.core.MessageDescriptor;
 import com.zula.queue.core.QueueManager;
 import com.zula.queue.core.ZulaCommand;
 import com.zula.queue.core.ZulaMessage;
 import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.boot.autoconfigure.AutoConfigurationPackages;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
@@ -20,6 +23,8 @@ import org.springframework.util.ClassUtils;
 @Component
 public class MessageQueueInitializer {
 
+    private static final Logger log = LoggerFactory.getLogger(MessageQueueInitializer.class);
+
     private final QueueManager queueManager;
     private final Environment environment;
     private final BeanFactory beanFactory;
@@ -59,29 +64,11 @@ public class MessageQueueInitializer {
                         if (clazz.isInterface() || java.lang.reflect.Modifier.isAbstract(clazz.getModifiers())) {
                             return;
                         }
-                        ZulaMessage messageAnnotation = clazz.getAnnotation(ZulaMessage.class);
-                        ZulaCommand commandAnnotation = clazz.getAnnotation(ZulaCommand.class);
-                        String messageType = deriveMessageType(clazz.getSimpleName(), messageAnnotation, commandAnnotation);
+                        String messageType = MessageDescriptor.of(clazz).getMessageType();
                         queueManager.createServiceQueue(serviceName, messageType);
                     } catch (Exception ex) {
-                        System.out.println("Zula: Skipping message class " + className + " due to error: " + ex.getMessage());
+                        log.warn("Zula: Skipping message class {} due to error: {}", className, ex.getMessage());
                     }
                 }));
     }
-
-    private String deriveMessageType(String className, ZulaMessage messageAnnotation, ZulaCommand commandAnnotation) {
-        if (commandAnnotation != null && !commandAnnotation.commandType().isEmpty()) {
-            return commandAnnotation.commandType().toLowerCase();
-        }
-        if (messageAnnotation != null && !messageAnnotation.messageType().isEmpty()) {
-            return messageAnnotation.messageType().toLowerCase();
-        }
-        if (className.endsWith("Command")) {
-            return className.substring(0, className.length() - "Command".length()).toLowerCase();
-        }
-        if (className.endsWith("Message")) {
-            return className.substring(0, className.length() - "Message".length()).toLowerCase();
-        }
-        return className.toLowerCase();
-    }
 }
@@ -12,6 +12,7 @@ import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 
@@ -33,16 +34,56 @@ public class QueueAutoConfig {
         return new Jackson2JsonMessageConverter();
     }
 
+    /**
+     * Boot registers every Jackson {@code Module} bean with the application ObjectMapper, so this
+     * speeds up both the publisher's writers and the consumers' readers.
+     */
+    @Bean
+    @ConditionalOnClass(name = "com.fasterxml.jackson.module.blackbird.BlackbirdModule")
+    @ConditionalOnProperty(prefix = "zula.queue.json", name = "blackbird", havingValue = "true")
+    public com.fasterxml.jackson.databind.Module zulaBlackbirdModule() {
+        return new com.fasterxml.jackson.module.blackbird.BlackbirdModule();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public com.zula.queue.core.MessageCodecRegistry messageCodecRegistry(com.fasterxml.jackson.databind.ObjectMapper objectMapper,
+                                                                         QueueProperties properties,
+                                                                         org.springframework.beans.factory.ObjectProvider<com.zula.queue.core.MessageCodec> codecs) {
+        return new com.zula.queue.core.MessageCodecRegistry(objectMapper, properties, codecs.orderedStream().toList());
+    }
+
+    /**
+     * RabbitMQ unless {@code zula.queue.transport=loopback}. The Rabbit connection factory and
+     * template still exist in loopback mode but never connect.
+     */
     @Bean
     @ConditionalOnMissingBean
-    public QueueManager queueManager(RabbitAdmin rabbitAdmin, QueueProperties properties) {
-        return new QueueManager(rabbitAdmin, properties);
+    public com.zula.queue.core.MessageTransport messageTransport(RabbitTemplate rabbitTemplate,
+                                                                 RabbitAdmin rabbitAdmin,
+                                                                 QueueProperties properties) {
+        if (properties.getTransport() == QueueProperties.Transport.LOOPBACK) {
+            String broker = properties.getLoopback().getBroker();
+            return broker == null || broker.isBlank()
+                    ? new com.zula.queue.core.LoopbackTransport(properties.getLoopback())
+                    : com.zula.queue.core.LoopbackTransport.shared(broker, properties.getLoopback());
+        }
+        return new com.zula.queue.core.RabbitMessageTransport(rabbitTemplate, rabbitAdmin);
     }
 
     @Bean
     @ConditionalOnMissingBean
-    public MessagePublisher messagePublisher(QueueManager queueManager, RabbitTemplate rabbitTemplate) {
-        return new MessagePublisher(queueManager, rabbitTemplate);
+    public QueueManager queueManager(com.zula.queue.core.MessageTransport transport, QueueProperties properties) {
+        return new QueueManager(transport, properties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public MessagePublisher messagePublisher(QueueManager queueManager,
+                                             com.zula.queue.core.MessageTransport transport,
+                                             QueueProperties properties,
+                                             com.zula.queue.core.MessageCodecRegistry codecs) {
+        return new MessagePublisher(queueManager, transport, properties, codecs);
     }
 
     @Bean
@@ -51,14 +92,37 @@ public class QueueAutoConfig {
         return new com.zula.queue.core.CommandPublisher(messagePublisher);
     }
 
+    @Bean
+    @ConditionalOnMissingBean
+    public com.zula.queue.core.QueueListenerContainerFactory queueListenerContainerFactory(ConnectionFactory connectionFactory,
+                                                                                          QueueProperties properties,
+                                                                                          com.zula.queue.core.MessageTransport transport) {
+        return new com.zula.queue.core.QueueListenerContainerFactory(connectionFactory, properties, transport);
+    }
+
     @Bean
     @ConditionalOnMissingBean
     public com.zula.queue.core.MessageHandlerRegistry messageHandlerRegistry(QueueManager queueManager,
                                                                              org.springframework.amqp.rabbit.connection.ConnectionFactory connectionFactory,
-                                                                             com.fasterxml.jackson.databind.ObjectMapper objectMapper,
                                                                              org.springframework.core.env.Environment environment,
-                                                                             @org.springframework.beans.factory.annotation.Autowired(required = false) com.zula.queue.core.QueuePersistenceService queuePersistenceService) {
-        return new com.zula.queue.core.MessageHandlerRegistry(queueManager, connectionFactory, objectMapper, environment, queuePersistenceService);
+                                                                             @org.springframework.beans.factory.annotation.Autowired(required = false) com.zula.queue.core.QueuePersistenceService queuePersistenceService,
+                                                                             com.zula.queue.core.QueueListenerContainerFactory containerFactory,
+                                                                             com.zula.queue.core.MessageCodecRegistry codecs,
+                                                                             @org.springframework.beans.factory.annotation.Autowired(required = false) com.zula.queue.core.PayloadClaimCheck claimCheck,
+                                                                             @org.springframework.beans.factory.annotation.Autowired(required = false) com.zula.queue.core.DeliveryRetryHandler retryHandler) {
+        return new com.zula.queue.core.MessageHandlerRegistry(queueManager, connectionFactory, environment, queuePersistenceService, containerFactory, codecs,
+                claimCheck, retryHandler);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "zula.queue.retry", name = "enabled", havingValue = "true")
+    public com.zula.queue.core.DeliveryRetryHandler deliveryRetryHandler(com.zula.queue.core.MessageTransport transport,
+                                                                         QueueManager queueManager,
+                                                                         QueueProperties properties,
+                                                                         org.springframework.beans.factory.ObjectProvider<com.zula.queue.core.QueuePersistenceService> queuePersistenceService) {
+        return new com.zula.queue.core.DeliveryRetryHandler(transport, queueManager, properties.getRetry(), properties.getLogging(),
+                queuePersistenceService.getIfAvailable());
     }
 
     @Bean
@@ -81,7 +145,69 @@ public class QueueAutoConfig {
     public com.zula.queue.core.QueuePersistenceService queuePersistenceService(org.jdbi.v3.core.Jdbi jdbi,
                                                                                com.zula.database.core.DatabaseManager databaseManager,
                                                                                com.fasterxml.jackson.databind.ObjectMapper objectMapper,
-                                                                               com.zula.database.config.DatabaseProperties databaseProperties) {
-        return new com.zula.queue.core.QueuePersistenceService(jdbi, databaseManager, objectMapper, databaseProperties);
+                                                                               com.zula.database.config.DatabaseProperties databaseProperties,
+                                                                               QueueProperties queueProperties) {
+        return new com.zula.queue.core.QueuePersistenceService(jdbi, databaseManager, objectMapper, databaseProperties, queueProperties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnClass(org.jdbi.v3.core.Jdbi.class)
+    @ConditionalOnProperty(prefix = "zula.queue.outbox.relay", name = "enabled", havingValue = "true")
+    public com.zula.queue.core.OutboxRelay outboxRelay(@org.springframework.beans.factory.annotation.Autowired(required = false) com.zula.queue.core.QueuePersistenceService queuePersistenceService,
+                                                       com.zula.queue.core.MessageTransport transport,
+                                                       QueueManager queueManager,
+                                                       QueueProperties properties,
+                                                       org.springframework.core.env.Environment environment,
+                                                       org.springframework.beans.factory.ObjectProvider<com.zula.queue.core.PayloadClaimCheck> claimCheck) {
+        String serviceName = environment.getProperty("spring.application.name", "unknown-service");
+        return new com.zula.queue.core.OutboxRelay(queuePersistenceService, transport, queueManager, properties, serviceName,
+                claimCheck.getIfAvailable());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "zula.queue.claim-check", name = "enabled", havingValue = "true")
+    public com.zula.queue.core.PayloadClaimCheck payloadClaimCheck(org.springframework.beans.factory.ObjectProvider<com.zula.queue.core.PayloadStore> payloadStore,
+                                                                   org.springframework.beans.factory.ObjectProvider<org.jdbi.v3.core.Jdbi> jdbi,
+                                                                   QueueProperties properties) throws java.io.IOException {
+        QueueProperties.ClaimCheck settings = properties.getClaimCheck();
+        com.zula.queue.core.PayloadStore store = payloadStore.getIfAvailable();
+        if (store == null && "jdbi".equalsIgnoreCase(settings.getStore())) {
+            org.jdbi.v3.core.Jdbi database = jdbi.getIfAvailable();
+            if (database == null) {
+                throw new IllegalStateException("zula.queue.claim-check.store=jdbi requires a Jdbi bean");
+            }
+            com.zula.queue.core.JdbiPayloadStore jdbiStore = new com.zula.queue.core.JdbiPayloadStore(database, settings.getTable());
+            if (settings.isInitializeSchema()) {
+                jdbiStore.initializeSchema();
+            }
+            store = jdbiStore;
+        } else if (store == null) {
+            store = new com.zula.queue.core.FileSystemPayloadStore(java.nio.file.Path.of(settings.getDirectory()));
+        }
+        return new com.zula.queue.core.PayloadClaimCheck(store, settings);
+    }
+
+    /**
+     * Micrometer meters for the publish and consume paths. Kept in its own class so the
+     * Micrometer types are only touched when micrometer-core is on the classpath.
+     */
+    @org.springframework.context.annotation.Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnProperty(prefix = "zula.queue.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+    static class MetricsConfig {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public com.zula.queue.core.QueueMetrics queueMetrics(org.springframework.beans.factory.ObjectProvider<io.micrometer.core.instrument.MeterRegistry> meterRegistry,
+                                                             org.springframework.core.env.Environment environment) {
+            io.micrometer.core.instrument.MeterRegistry registry = meterRegistry.getIfAvailable();
+            if (registry == null) {
+                return com.zula.queue.core.QueueMetrics.NOOP;
+            }
+            String serviceName = environment.getProperty("spring.application.name", "unknown-service");
+            return new com.zula.queue.core.MicrometerQueueMetrics(registry, serviceName);
+        }
     }
 }
@@ -2,6 +2,9 @@ package com.zula.queue.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @ConfigurationProperties(prefix = "zula.queue")
 public class QueueProperties {
     private boolean autoCreateQueues = true;
@@ -10,6 +13,21 @@ public class QueueProperties {
     private boolean durableQueues = true;
     private boolean exclusiveQueues = false;
     private boolean autoDeleteQueues = false;
+    private RoutingMode routingMode = RoutingMode.LEGACY;
+    private Transport transport = Transport.RABBIT;
+    private final Loopback loopback = new Loopback();
+    private final Outbox outbox = new Outbox();
+    private final Inbox inbox = new Inbox();
+    private final Publisher publisher = new Publisher();
+    private final Listener listener = new Listener();
+    private final Json json = new Json();
+    private final Codec codec = new Codec();
+    private final Compression compression = new Compression();
+    private final ClaimCheck claimCheck = new ClaimCheck();
+    private final Partitioning partitioning = new Partitioning();
+    private final Retry retry = new Retry();
+    private final Metrics metrics = new Metrics();
+    private final Logging logging = new Logging();
 
     public boolean isAutoCreateQueues() { return autoCreateQueues; }
     public void setAutoCreateQueues(boolean autoCreateQueues) { this.autoCreateQueues = autoCreateQueues; }
@@ -29,4 +47,516 @@ public class QueueProperties {
     public boolean isAutoDeleteQueues() { return autoDeleteQueues; }
     public void setAutoDeleteQueues(boolean autoDeleteQueues) { this.autoDeleteQueues = autoDeleteQueues; }
 
+    public RoutingMode getRoutingMode() { return routingMode; }
+    public void setRoutingMode(RoutingMode routingMode) { this.routingMode = routingMode; }
+
+    public Transport getTransport() { return transport; }
+    public void setTransport(Transport transport) { this.transport = transport; }
+
+    public Loopback getLoopback() { return loopback; }
+
+    public Outbox getOutbox() { return outbox; }
+
+    public Inbox getInbox() { return inbox; }
+
+    public Publisher getPublisher() { return publisher; }
+
+    public Listener getListener() { return listener; }
+
+    public Json getJson() { return json; }
+
+    public Codec getCodec() { return codec; }
+
+    public Compression getCompression() { return compression; }
+
+    public ClaimCheck getClaimCheck() { return claimCheck; }
+
+    public Partitioning getPartitioning() { return partitioning; }
+
+    public Retry getRetry() { return retry; }
+
+    public Metrics getMetrics() { return metrics; }
+
+    public Logging getLogging() { return logging; }
+
+    /**
+     * How messages are routed from a type's exchange to service queues ({@code zula.queue.routing-mode}).
+     */
+    public enum RoutingMode {
+        /** Routing key {@code <type>.<action>}; every service queue of the type is bound with "#" and gets every message. */
+        LEGACY,
+        /**
+         * Routing key {@code <type>.<service>.<action>}. A service's own queue is bound with {@code <type>.<service>.#}
+         * plus {@code <type>.*} so it still receives messages from legacy publishers, and its "#" binding is removed.
+         */
+        MIGRATION,
+        /** Routing key {@code <type>.<service>.<action>}; a service's own queue is bound with {@code <type>.<service>.#} only. */
+        TARGETED
+    }
+
+    /**
+     * Broker the library talks to ({@code zula.queue.transport}).
+     */
+    public enum Transport {
+        /** RabbitMQ through the application's {@code spring.rabbitmq} connection. */
+        RABBIT,
+        /** The in-memory {@code LoopbackTransport}; nothing leaves the JVM and nothing is durable. */
+        LOOPBACK
+    }
+
+    /**
+     * In-memory transport settings ({@code zula.queue.loopback.*}).
+     */
+    public static class Loopback {
+        /**
+         * Name of the JVM-wide in-memory broker. Application contexts in one JVM using the same
+         * name exchange messages; an empty name gives the context a broker of its own.
+         */
+        private String broker = "default";
+        /** Pause before a message whose listener failed goes back to the head of its queue. */
+        private long redeliveryDelayMs = 100;
+        /** Deliveries of a message before it is dead-lettered (or dropped) instead of requeued. */
+        private int deliveryLimit = 20;
+
+        public String getBroker() { return broker; }
+        public void setBroker(String broker) { this.broker = broker; }
+
+        public long getRedeliveryDelayMs() { return redeliveryDelayMs; }
+        public void setRedeliveryDelayMs(long redeliveryDelayMs) { this.redeliveryDelayMs = redeliveryDelayMs; }
+
+        public int getDeliveryLimit() { return deliveryLimit; }
+        public void setDeliveryLimit(int deliveryLimit) { this.deliveryLimit = deliveryLimit; }
+    }
+
+    /**
+     * Outbox persistence settings ({@code zula.queue.outbox.*}).
+     */
+    public static class Outbox {
+        /** Buffer outbox rows in memory and insert them in batches from a writer thread. */
+        private boolean groupCommit = false;
+        /** Maximum number of rows written per batch. */
+        private int flushSize = 256;
+        /** Maximum time a row waits for its batch to fill before it is flushed anyway. */
+        private long lingerMs = 5;
+        /** Number of rows that can be buffered before publishers block. */
+        private int capacity = 8192;
+        /** Make publishers wait until their outbox row is flushed before sending. */
+        private boolean awaitDurable = false;
+        private final Relay relay = new Relay();
+
+        public boolean isGroupCommit() { return groupCommit; }
+        public void setGroupCommit(boolean groupCommit) { this.groupCommit = groupCommit; }
+
+        public int getFlushSize() { return flushSize; }
+        public void setFlushSize(int flushSize) { this.flushSize = flushSize; }
+
+        public long getLingerMs() { return lingerMs; }
+        public void setLingerMs(long lingerMs) { this.lingerMs = lingerMs; }
+
+        public int getCapacity() { return capacity; }
+        public void setCapacity(int capacity) { this.capacity = capacity; }
+
+        public boolean isAwaitDurable() { return awaitDurable; }
+        public void setAwaitDurable(boolean awaitDurable) { this.awaitDurable = awaitDurable; }
+
+        public Relay getRelay() { return relay; }
+    }
+
+    /**
+     * Outbox relay settings ({@code zula.queue.outbox.relay.*}). In relay mode publishers only
+     * insert PENDING outbox rows and background relay threads publish them to RabbitMQ.
+     */
+    public static class Relay {
+        private boolean enabled = false;
+        /** Number of relay threads draining the outbox on this node. */
+        private int threads = 1;
+        /** Maximum number of rows claimed per relay round. */
+        private int batchSize = 100;
+        /** Sleep between rounds when the outbox is empty. */
+        private long pollIntervalMs = 500;
+        /** Attempts before a row is parked as FAILED. */
+        private int maxRetries = 5;
+        /** Minimum time before a failed row is claimed again. */
+        private long retryDelayMs = 5000;
+        /** How long to wait for broker confirms of a claimed batch. */
+        private long confirmTimeoutMs = 5000;
+        /** How long claimed rows stay reserved for the relay publishing them; must exceed confirm-timeout-ms. */
+        private long leaseMs = 60000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getThreads() { return threads; }
+        public void setThreads(int threads) { this.threads = threads; }
+
+        public int getBatchSize() { return batchSize; }
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+        public long getPollIntervalMs() { return pollIntervalMs; }
+        public void setPollIntervalMs(long pollIntervalMs) { this.pollIntervalMs = pollIntervalMs; }
+
+        public int getMaxRetries() { return maxRetries; }
+        public void setMaxRetries(int maxRetries) { this.maxRetries = maxRetries; }
+
+        public long getRetryDelayMs() { return retryDelayMs; }
+        public void setRetryDelayMs(long retryDelayMs) { this.retryDelayMs = retryDelayMs; }
+
+        public long getConfirmTimeoutMs() { return confirmTimeoutMs; }
+        public void setConfirmTimeoutMs(long confirmTimeoutMs) { this.confirmTimeoutMs = confirmTimeoutMs; }
+
+        public long getLeaseMs() { return leaseMs; }
+        public void setLeaseMs(long leaseMs) { this.leaseMs = leaseMs; }
+    }
+
+    /**
+     * Inbox persistence settings ({@code zula.queue.inbox.*}).
+     */
+    public static class Inbox {
+        /** Write inbox inserts and status updates from a batching writer instead of the consumer thread. */
+        private boolean pipelined = false;
+        /** Maximum number of inbox writes per batch. */
+        private int flushSize = 256;
+        /** Maximum time a write waits for its batch to fill before it is flushed anyway. */
+        private long lingerMs = 10;
+        /** Number of writes that can be buffered before consumers block. */
+        private int capacity = 8192;
+
+        public boolean isPipelined() { return pipelined; }
+        public void setPipelined(boolean pipelined) { this.pipelined = pipelined; }
+
+        public int getFlushSize() { return flushSize; }
+        public void setFlushSize(int flushSize) { this.flushSize = flushSize; }
+
+        public long getLingerMs() { return lingerMs; }
+        public void setLingerMs(long lingerMs) { this.lingerMs = lingerMs; }
+
+        public int getCapacity() { return capacity; }
+        public void setCapacity(int capacity) { this.capacity = capacity; }
+    }
+
+    /**
+     * Publisher settings ({@code zula.queue.publisher.*}).
+     */
+    public static class Publisher {
+        /** Maximum unconfirmed publishAsync messages; callers block once it is reached. 0 disables the cap. */
+        private int maxInFlight = 10000;
+        /** Fail a publishAsync future if no confirm arrives within this time. */
+        private long confirmTimeoutMs = 30000;
+
+        public int getMaxInFlight() { return maxInFlight; }
+        public void setMaxInFlight(int maxInFlight) { this.maxInFlight = maxInFlight; }
+
+        public long getConfirmTimeoutMs() { return confirmTimeoutMs; }
+        public void setConfirmTimeoutMs(long confirmTimeoutMs) { this.confirmTimeoutMs = confirmTimeoutMs; }
+    }
+
+    /**
+     * JSON serialization settings ({@code zula.queue.json.*}).
+     */
+    public static class Json {
+        /** Register Jackson's Blackbird module with the application ObjectMapper; requires jackson-module-blackbird. */
+        private boolean blackbird = false;
+
+        public boolean isBlackbird() { return blackbird; }
+        public void setBlackbird(boolean blackbird) { this.blackbird = blackbird; }
+    }
+
+    /**
+     * Message codec selection ({@code zula.queue.codec.*}). Consumers always decode by content type.
+     */
+    public static class Codec {
+        /** Codec used when neither a per-type entry nor @ZulaPublish(codec=...) picks one: json, smile, cbor or a custom codec name. */
+        private String defaultCodec = "json";
+        /** Codec per message type, overriding the annotation and the default. */
+        private Map<String, String> types = new LinkedHashMap<>();
+
+        public String getDefaultCodec() { return defaultCodec; }
+        public void setDefaultCodec(String defaultCodec) { this.defaultCodec = defaultCodec; }
+
+        public Map<String, String> getTypes() { return types; }
+        public void setTypes(Map<String, String> types) { this.types = types; }
+    }
+
+    /**
+     * Body compression for large messages ({@code zula.queue.compression.*}). Consumers always
+     * decompress, so this only controls what publishers send.
+     */
+    public static class Compression {
+        private boolean enabled = false;
+        /** gzip, or lz4 (requires org.lz4:lz4-java). */
+        private String algorithm = "gzip";
+        /** Bodies smaller than this are sent uncompressed. */
+        private int thresholdBytes = 16384;
+        /** Store compressed JSON bodies in the outbox and inbox as {@code <algorithm>;base64,...} instead of plain JSON. */
+        private boolean storeCompressed = false;
+        /** Largest body a consumer will decompress; longer bodies fail to decode instead of exhausting the heap. */
+        private int maxDecompressedBytes = 64 * 1024 * 1024;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public String getAlgorithm() { return algorithm; }
+        public void setAlgorithm(String algorithm) { this.algorithm = algorithm; }
+
+        public int getThresholdBytes() { return thresholdBytes; }
+        public void setThresholdBytes(int thresholdBytes) { this.thresholdBytes = thresholdBytes; }
+
+        public boolean isStoreCompressed() { return storeCompressed; }
+        public void setStoreCompressed(boolean storeCompressed) { this.storeCompressed = storeCompressed; }
+
+        public int getMaxDecompressedBytes() { return maxDecompressedBytes; }
+        public void setMaxDecompressedBytes(int maxDecompressedBytes) { this.maxDecompressedBytes = maxDecompressedBytes; }
+    }
+
+    /**
+     * Claim-check for oversized bodies ({@code zula.queue.claim-check.*}). Producers and
+     * consumers must share the store: the same directory or the same table.
+     */
+    public static class ClaimCheck {
+        private boolean enabled = false;
+        /** Bodies of at least this size (after compression) go to the payload store. */
+        private int thresholdBytes = 1024 * 1024;
+        /** Built-in store to use when no PayloadStore bean is defined: filesystem or jdbi. */
+        private String store = "filesystem";
+        /** Shared directory for the filesystem store. */
+        private String directory = System.getProperty("java.io.tmpdir") + "/zula-payloads";
+        /** Shared table for the jdbi store. */
+        private String table = "zula_message_payload";
+        /** Run db/zula-queue/payload-store.sql for the jdbi store at startup instead of from the service's migrations. */
+        private boolean initializeSchema = false;
+        /**
+         * How long stored bodies are kept. Consumers do not delete them, since several queues and
+         * retries may read the same body; set this above the longest time a message can wait in a
+         * queue, including retries and dead-letter handling.
+         */
+        private long ttlMs = 7L * 24 * 60 * 60 * 1000;
+        /** How often expired bodies are deleted; 0 disables the sweep. */
+        private long sweepIntervalMs = 60 * 60 * 1000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getThresholdBytes() { return thresholdBytes; }
+        public void setThresholdBytes(int thresholdBytes) { this.thresholdBytes = thresholdBytes; }
+
+        public String getStore() { return store; }
+        public void setStore(String store) { this.store = store; }
+
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = directory; }
+
+        public String getTable() { return table; }
+        public void setTable(String table) { this.table = table; }
+
+        public boolean isInitializeSchema() { return initializeSchema; }
+        public void setInitializeSchema(boolean initializeSchema) { this.initializeSchema = initializeSchema; }
+
+        public long getTtlMs() { return ttlMs; }
+        public void setTtlMs(long ttlMs) { this.ttlMs = ttlMs; }
+
+        public long getSweepIntervalMs() { return sweepIntervalMs; }
+        public void setSweepIntervalMs(long sweepIntervalMs) { this.sweepIntervalMs = sweepIntervalMs; }
+    }
+
+    /**
+     * Partitioned queues ({@code zula.queue.partitioning.*}). A partitioned message type gets one
+     * single-active-consumer queue per partition instead of one queue per service; publishers and
+     * consumers of the type must use the same partition count.
+     */
+    public static class Partitioning {
+        /** Number of partitions per message type; types not listed use a single queue. */
+        private Map<String, Integer> types = new LinkedHashMap<>();
+
+        public Map<String, Integer> getTypes() { return types; }
+        public void setTypes(Map<String, Integer> types) { this.types = types; }
+
+        /**
+         * Partition count of a message type, 1 when it is not partitioned.
+         */
+        public int partitionsOf(String messageType) {
+            Integer partitions = messageType != null ? types.get(messageType.toLowerCase()) : null;
+            return partitions != null && partitions > 1 ? partitions : 1;
+        }
+    }
+
+    /**
+     * Retry of failed deliveries ({@code zula.queue.retry.*}). A failed message is re-sent through
+     * a TTL retry queue that dead-letters it back to its queue after the backoff delay; once
+     * {@code max-attempts} is reached it goes to the queue's {@code .dlq}.
+     */
+    public static class Retry {
+        private boolean enabled = false;
+        /** Total deliveries of a message, including the first one. */
+        private int maxAttempts = 5;
+        /** Delay before the first retry. */
+        private long initialIntervalMs = 1000;
+        /** Factor applied to the delay for each further retry. */
+        private double multiplier = 2.0;
+        /** Upper bound for the delay. */
+        private long maxIntervalMs = 60000;
+        /** Move messages that exhausted their attempts or cannot be decoded to {@code <queue>.dlq}; otherwise drop them. */
+        private boolean deadLetter = true;
+        /** How long to wait for the broker to confirm a retry or dead-letter copy before the original is requeued. */
+        private long confirmTimeoutMs = 5000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getMaxAttempts() { return maxAttempts; }
+        public void setMaxAttempts(int maxAttempts) { this.maxAttempts = maxAttempts; }
+
+        public long getInitialIntervalMs() { return initialIntervalMs; }
+        public void setInitialIntervalMs(long initialIntervalMs) { this.initialIntervalMs = initialIntervalMs; }
+
+        public double getMultiplier() { return multiplier; }
+        public void setMultiplier(double multiplier) { this.multiplier = multiplier; }
+
+        public long getMaxIntervalMs() { return maxIntervalMs; }
+        public void setMaxIntervalMs(long maxIntervalMs) { this.maxIntervalMs = maxIntervalMs; }
+
+        public boolean isDeadLetter() { return deadLetter; }
+        public void setDeadLetter(boolean deadLetter) { this.deadLetter = deadLetter; }
+
+        public long getConfirmTimeoutMs() { return confirmTimeoutMs; }
+        public void setConfirmTimeoutMs(long confirmTimeoutMs) { this.confirmTimeoutMs = confirmTimeoutMs; }
+    }
+
+    /**
+     * Micrometer instrumentation ({@code zula.queue.metrics.*}), active when Micrometer and a
+     * {@code MeterRegistry} bean are present.
+     */
+    public static class Metrics {
+        private boolean enabled = true;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    }
+
+    /**
+     * Library log output ({@code zula.queue.logging.*}). Per-message events are logged at debug
+     * level through SLF4J; repeated warnings and errors are rate-limited per queue.
+     */
+    public static class Logging {
+        /** Minimum time between two log lines for the same kind of failure; events in between are counted. */
+        private long errorIntervalMs = 10000;
+        /** Include message bodies in failure logs; otherwise only their size is logged. Off by default, since bodies may hold personal data. */
+        private boolean logPayloads = false;
+        /** Maximum number of body bytes included in a log line; a multi-byte character is never split. Must not be negative. */
+        private int maxPayloadBytes = 256;
+
+        public long getErrorIntervalMs() { return errorIntervalMs; }
+        public void setErrorIntervalMs(long errorIntervalMs) { this.errorIntervalMs = errorIntervalMs; }
+
+        public boolean isLogPayloads() { return logPayloads; }
+        public void setLogPayloads(boolean logPayloads) { this.logPayloads = logPayloads; }
+
+        public int getMaxPayloadBytes() { return maxPayloadBytes; }
+        public void setMaxPayloadBytes(int maxPayloadBytes) { this.maxPayloadBytes = maxPayloadBytes; }
+    }
+
+    /**
+     * Listener container settings ({@code zula.queue.listener.*}). Values set directly under
+     * {@code listener} apply to every queue; entries under {@code listener.types.<message-type>}
+     * override them per message type. Unset values keep Spring AMQP's container defaults.
+     */
+    public static class Listener extends ContainerSettings {
+        /** Run handlers on virtual threads (Java 21+), acking each message when its handler finishes. */
+        private boolean virtualThreads = false;
+        /**
+         * Consume all queues without per-type overrides through one shared direct container instead
+         * of a container per handler. Not used with virtual threads or for batch handlers.
+         */
+        private boolean shared = false;
+        /** Consumers (channels) per queue in the shared container. */
+        private int sharedConsumersPerQueue = 1;
+        /** Run the handlers registered for the same message type in parallel instead of in registration order. */
+        private boolean parallelFanOut = false;
+        /** Threads shared by all parallel fan-outs; at most this many handlers run off the listener threads at once. */
+        private int fanOutThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        /** Handler calls that can wait for a fan-out thread; beyond that the listener thread runs them itself. */
+        private int fanOutQueueCapacity = 256;
+        private final Map<String, ContainerSettings> types = new LinkedHashMap<>();
+
+        public boolean isVirtualThreads() { return virtualThreads; }
+        public void setVirtualThreads(boolean virtualThreads) { this.virtualThreads = virtualThreads; }
+
+        public boolean isShared() { return shared; }
+        public void setShared(boolean shared) { this.shared = shared; }
+
+        public int getSharedConsumersPerQueue() { return sharedConsumersPerQueue; }
+        public void setSharedConsumersPerQueue(int sharedConsumersPerQueue) { this.sharedConsumersPerQueue = sharedConsumersPerQueue; }
+
+        public boolean isParallelFanOut() { return parallelFanOut; }
+        public void setParallelFanOut(boolean parallelFanOut) { this.parallelFanOut = parallelFanOut; }
+
+        public int getFanOutThreads() { return fanOutThreads; }
+        public void setFanOutThreads(int fanOutThreads) { this.fanOutThreads = fanOutThreads; }
+
+        public int getFanOutQueueCapacity() { return fanOutQueueCapacity; }
+        public void setFanOutQueueCapacity(int fanOutQueueCapacity) { this.fanOutQueueCapacity = fanOutQueueCapacity; }
+
+        public Map<String, ContainerSettings> getTypes() { return types; }
+
+        /**
+         * Effective settings for a message type: the type's own values, falling back to the defaults.
+         */
+        public ContainerSettings resolve(String messageType) {
+            ContainerSettings override = messageType != null ? types.get(messageType.toLowerCase()) : null;
+            return override != null ? override.withDefaults(this) : this;
+        }
+    }
+
+    public static class ContainerSettings {
+        private Integer concurrentConsumers;
+        private Integer maxConcurrentConsumers;
+        private Integer prefetchCount;
+        private Integer batchSize;
+        private Integer consecutiveActiveTrigger;
+        private Integer consecutiveIdleTrigger;
+        private Long startConsumerMinIntervalMs;
+        private Long stopConsumerMinIntervalMs;
+        private Long receiveTimeoutMs;
+
+        public Integer getConcurrentConsumers() { return concurrentConsumers; }
+        public void setConcurrentConsumers(Integer concurrentConsumers) { this.concurrentConsumers = concurrentConsumers; }
+
+        public Integer getMaxConcurrentConsumers() { return maxConcurrentConsumers; }
+        public void setMaxConcurrentConsumers(Integer maxConcurrentConsumers) { this.maxConcurrentConsumers = maxConcurrentConsumers; }
+
+        public Integer getPrefetchCount() { return prefetchCount; }
+        public void setPrefetchCount(Integer prefetchCount) { this.prefetchCount = prefetchCount; }
+
+        public Integer getBatchSize() { return batchSize; }
+        public void setBatchSize(Integer batchSize) { this.batchSize = batchSize; }
+
+        public Integer getConsecutiveActiveTrigger() { return consecutiveActiveTrigger; }
+        public void setConsecutiveActiveTrigger(Integer consecutiveActiveTrigger) { this.consecutiveActiveTrigger = consecutiveActiveTrigger; }
+
+        public Integer getConsecutiveIdleTrigger() { return consecutiveIdleTrigger; }
+        public void setConsecutiveIdleTrigger(Integer consecutiveIdleTrigger) { this.consecutiveIdleTrigger = consecutiveIdleTrigger; }
+
+        public Long getStartConsumerMinIntervalMs() { return startConsumerMinIntervalMs; }
+        public void setStartConsumerMinIntervalMs(Long startConsumerMinIntervalMs) { this.startConsumerMinIntervalMs = startConsumerMinIntervalMs; }
+
+        public Long getStopConsumerMinIntervalMs() { return stopConsumerMinIntervalMs; }
+        public void setStopConsumerMinIntervalMs(Long stopConsumerMinIntervalMs) { this.stopConsumerMinIntervalMs = stopConsumerMinIntervalMs; }
+
+        /** How long a batch consumer waits for more messages before delivering a partial batch. */
+        public Long getReceiveTimeoutMs() { return receiveTimeoutMs; }
+        public void setReceiveTimeoutMs(Long receiveTimeoutMs) { this.receiveTimeoutMs = receiveTimeoutMs; }
+
+        ContainerSettings withDefaults(ContainerSettings defaults) {
+            ContainerSettings merged = new ContainerSettings();
+            merged.concurrentConsumers = concurrentConsumers != null ? concurrentConsumers : defaults.concurrentConsumers;
+            merged.maxConcurrentConsumers = maxConcurrentConsumers != null ? maxConcurrentConsumers : defaults.maxConcurrentConsumers;
+            merged.prefetchCount = prefetchCount != null ? prefetchCount : defaults.prefetchCount;
+            merged.batchSize = batchSize != null ? batchSize : defaults.batchSize;
+            merged.consecutiveActiveTrigger = consecutiveActiveTrigger != null ? consecutiveActiveTrigger : defaults.consecutiveActiveTrigger;
+            merged.consecutiveIdleTrigger = consecutiveIdleTrigger != null ? consecutiveIdleTrigger : defaults.consecutiveIdleTrigger;
+            merged.startConsumerMinIntervalMs = startConsumerMinIntervalMs != null ? startConsumerMinIntervalMs : defaults.startConsumerMinIntervalMs;
+            merged.stopConsumerMinIntervalMs = stopConsumerMinIntervalMs != null ? stopConsumerMinIntervalMs : defaults.stopConsumerMinIntervalMs;
+            merged.receiveTimeoutMs = receiveTimeoutMs != null ? receiveTimeoutMs : defaults.receiveTimeoutMs;
+            return merged;
+        }
+    }
 }
@@ -0,0 +1,137 @@
+package com.zula.queue.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+
+import jakarta.annotation.PostConstruct;
+import java.util.List;
+
+/**
+ * Batch-oriented sibling of {@link BaseMessageConsumer}. Messages are delivered to
+ * {@link #processMessages(List)} in batches sized by {@code zula.queue.listener.batch-size}
+ * (or the per-type override), so a handler can turn N messages into one bulk operation.
+ * Inbox rows for the batch are written in one insert and the batch is acked once the
+ * handler returns.
+ */
+public abstract class BaseBatchMessageConsumer<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(BaseBatchMessageConsumer.class);
+
+    @Autowired
+    @Lazy
+    private QueueManager queueManager;
+
+    @Value("${spring.application.name:unknown-service}")
+    private String serviceName;
+
+    @Autowired(required = false)
+    private ConnectionFactory connectionFactory;
+
+    @Autowired(required = false)
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private QueuePersistenceService queuePersistenceService;
+
+    @Autowired(required = false)
+    private QueueListenerContainerFactory containerFactory;
+
+    @Autowired(required = false)
+    private com.zula.queue.config.QueueProperties properties;
+
+    @Autowired(required = false)
+    private MessageTransport transport;
+
+    @Autowired(required = false)
+    private MessageCodecRegistry codecs;
+
+    @Autowired(required = false)
+    private PayloadClaimCheck claimCheck;
+
+    @Autowired(required = false)
+    private MessageHandlerRegistry handlerRegistry;
+
+    @Autowired(required = false)
+    private DeliveryRetryHandler retryHandler;
+
+    @Autowired(required = false)
+    private QueueMetrics metrics;
+
+    private final String messageType;
+    private final Class<T> messageClass;
+
+    protected BaseBatchMessageConsumer() {
+        this.messageType = ConsumerTypeResolver.messageType(getClass());
+        this.messageClass = ConsumerTypeResolver.messageClass(getClass());
+    }
+
+    protected BaseBatchMessageConsumer(String customMessageType) {
+        this.messageType = customMessageType.toLowerCase();
+        this.messageClass = ConsumerTypeResolver.messageClass(getClass());
+    }
+
+    @PostConstruct
+    public void init() {
+        if (handlerRegistry != null && messageClass != null) {
+            log.info("Zula: {} batch-listening for {}", getClass().getSimpleName(), messageType);
+            handlerRegistry.registerBatch(messageType, messageClass, this::processMessages);
+            return;
+        }
+        List<String> queueNames = queueManager.getQueueNames(serviceName, messageType);
+        queueManager.createServiceQueue(serviceName, messageType);
+        log.info("Zula: {} batch-listening on {}", getClass().getSimpleName(), String.join(", ", queueNames));
+
+        if (connectionFactory == null) {
+            log.warn("Zula: No ConnectionFactory available in context; batch consumer will not start a listener container.");
+            return;
+        }
+        if (messageClass == null) {
+            log.warn("Zula: Cannot determine target class for {}; batch consumer not started.", getClass().getSimpleName());
+            return;
+        }
+        com.zula.queue.config.QueueProperties settings = this.properties != null
+                ? this.properties
+                : new com.zula.queue.config.QueueProperties();
+        QueueListenerContainerFactory factory = this.containerFactory != null
+                ? this.containerFactory
+                : new QueueListenerContainerFactory(connectionFactory, settings, transport);
+        MessageCodecRegistry codecRegistry = this.codecs != null
+                ? this.codecs
+                : new MessageCodecRegistry(this.objectMapper != null ? this.objectMapper : new ObjectMapper(),
+                        settings);
+        for (String queueName : queueNames) {
+            if (retryHandler != null) {
+                retryHandler.declareQueues(queueName);
+            }
+            factory.startBatchContainer(queueName, messageType, new InboundBatchListener<>(
+                    queueName, messageType, messageClass, codecRegistry, claimCheck,
+                    this::processMessages, queuePersistenceService, retryHandler, metrics, settings.getLogging()));
+        }
+    }
+
+    public abstract void processMessages(List<T> messages);
+
+    public String getMessageType() {
+        return messageType;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getQueueName() {
+        if (queueManager != null) {
+            return queueManager.generateQueueName(serviceName, messageType);
+        }
+        return serviceName + "." + messageType;
+    }
+
+    public Class<T> getMessageClass() {
+        return messageClass;
+    }
+}
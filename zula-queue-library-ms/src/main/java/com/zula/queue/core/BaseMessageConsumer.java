@@ -1,20 +1,21 @@
 package com.zula.queue.core;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.zula.queue.core.ZulaCommand;
-import com.zula.queue.core.ZulaMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
-import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 
 import jakarta.annotation.PostConstruct;
-import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 public abstract class BaseMessageConsumer<T> {
 
+    private static final Logger log = LoggerFactory.getLogger(BaseMessageConsumer.class);
+
     @Autowired
     @Lazy
     private QueueManager queueManager;
@@ -31,132 +32,91 @@ public abstract class BaseMessageConsumer<T> {
     @Autowired(required = false)
     private QueuePersistenceService queuePersistenceService;
 
+    @Autowired(required = false)
+    private QueueListenerContainerFactory containerFactory;
+
+    @Autowired(required = false)
+    private com.zula.queue.config.QueueProperties properties;
+
+    @Autowired(required = false)
+    private MessageTransport transport;
+
+    @Autowired(required = false)
+    private MessageCodecRegistry codecs;
+
+    @Autowired(required = false)
+    private PayloadClaimCheck claimCheck;
+
+    @Autowired(required = false)
+    private MessageHandlerRegistry handlerRegistry;
+
+    @Autowired(required = false)
+    private DeliveryRetryHandler retryHandler;
+
+    @Autowired(required = false)
+    private QueueMetrics metrics;
+
     private final String messageType;
     private final Class<T> messageClass;
 
     protected BaseMessageConsumer() {
-        this.messageType = deriveMessageTypeFromGeneric();
-        this.messageClass = deriveMessageClassFromGeneric();
+        this.messageType = ConsumerTypeResolver.messageType(getClass());
+        this.messageClass = ConsumerTypeResolver.messageClass(getClass());
     }
 
     protected BaseMessageConsumer(String customMessageType) {
         this.messageType = customMessageType.toLowerCase();
-        this.messageClass = deriveMessageClassFromGeneric();
+        this.messageClass = ConsumerTypeResolver.messageClass(getClass());
     }
 
     @PostConstruct
     public void init() {
-        String queueName = queueManager.generateQueueName(serviceName, messageType);
+        // join the registry's handler group so this consumer and registered handlers of the same
+        // type share one queue consumer instead of competing for deliveries
+        if (handlerRegistry != null && messageClass != null) {
+            log.info("Zula: {} listening for {}", getClass().getSimpleName(), messageType);
+            handlerRegistry.register(messageType, messageClass, this::processMessage);
+            return;
+        }
+        List<String> queueNames = queueManager.getQueueNames(serviceName, messageType);
         queueManager.createServiceQueue(serviceName, messageType);
-        System.out.println("Zula: " + getClass().getSimpleName() + " listening on " + queueName);
+        log.info("Zula: {} listening on {}", getClass().getSimpleName(), String.join(", ", queueNames));
 
         // If a ConnectionFactory is available, create a listener container programmatically so
         // consuming services don't need to use @RabbitListener + SpEL on annotation attributes.
         if (connectionFactory != null) {
-            SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(connectionFactory);
-            container.setQueueNames(queueName);
-            final ObjectMapper mapper = this.objectMapper != null ? this.objectMapper : new ObjectMapper();
-
-            container.setMessageListener((Message message) -> {
-                try {
-                    byte[] body = message.getBody();
-                    String rawPayload = new String(body, StandardCharsets.UTF_8);
-                    if (messageClass != null) {
-                        T obj = mapper.readValue(body, messageClass);
-                        String messageId = MessageMetadataHelper.extractMessageId(message, obj);
-                        String sourceService = MessageMetadataHelper.extractSourceService(message);
-                        recordInbox(messageId, sourceService, rawPayload);
-                        processMessage(obj);
-                        markInboxProcessed(messageId);
-                    } else {
-                        System.out.println("Zula: Received message but cannot determine target class. Raw: " + rawPayload);
-                    }
-                } catch (Exception ex) {
-                    System.err.println("Zula: Error processing message in " + getClass().getSimpleName());
-                    ex.printStackTrace();
-                }
-            });
-
-            // start the container
-            container.start();
-        } else {
-            System.out.println("Zula: No ConnectionFactory available in context; consumer will not start a listener container. If you use @RabbitListener in the application, avoid SpEL on annotation attributes.");
-        }
-    }
-
-    public abstract void processMessage(T message);
-
-    @SuppressWarnings("unchecked")
-    private String deriveMessageTypeFromGeneric() {
-        try {
-            java.lang.reflect.Type genericSuperclass = getClass().getGenericSuperclass();
-            if (genericSuperclass instanceof java.lang.reflect.ParameterizedType) {
-                java.lang.reflect.Type actualType = ((java.lang.reflect.ParameterizedType) genericSuperclass).getActualTypeArguments()[0];
-                String className = actualType.getTypeName();
-
-                String simpleName = className.substring(className.lastIndexOf('.') + 1);
-                if (actualType instanceof Class<?>) {
-                    Class<?> clazz = (Class<?>) actualType;
-                    ZulaCommand commandAnnotation = clazz.getAnnotation(ZulaCommand.class);
-                    if (commandAnnotation != null && !commandAnnotation.commandType().isEmpty()) {
-                        return commandAnnotation.commandType().toLowerCase();
-                    }
-                    ZulaMessage messageAnnotation = clazz.getAnnotation(ZulaMessage.class);
-                    if (messageAnnotation != null && !messageAnnotation.messageType().isEmpty()) {
-                        return messageAnnotation.messageType().toLowerCase();
+            com.zula.queue.config.QueueProperties settings = this.properties != null
+                    ? this.properties
+                    : new com.zula.queue.config.QueueProperties();
+            QueueListenerContainerFactory factory = this.containerFactory != null
+                    ? this.containerFactory
+                    : new QueueListenerContainerFactory(connectionFactory, settings, transport);
+            RateLimitedLogger failureLog = new RateLimitedLogger(log, settings.getLogging());
+            MessageCodecRegistry codecRegistry = this.codecs != null
+                    ? this.codecs
+                    : new MessageCodecRegistry(this.objectMapper != null ? this.objectMapper : new ObjectMapper(),
+                            settings);
+
+            for (String queueName : queueNames) {
+                if (messageClass != null) {
+                    if (retryHandler != null) {
+                        retryHandler.declareQueues(queueName);
                     }
-                }
-                return convertClassNameToMessageType(simpleName);
-            }
-        } catch (Exception e) {
-            System.out.println("Could not derive message type from generic, using class name");
-        }
-
-        return deriveMessageTypeFromClassName();
-    }
-
-    @SuppressWarnings("unchecked")
-    private Class<T> deriveMessageClassFromGeneric() {
-        try {
-            java.lang.reflect.Type genericSuperclass = getClass().getGenericSuperclass();
-            if (genericSuperclass instanceof java.lang.reflect.ParameterizedType) {
-                java.lang.reflect.Type actualType = ((java.lang.reflect.ParameterizedType) genericSuperclass).getActualTypeArguments()[0];
-                if (actualType instanceof Class) {
-                    return (Class<T>) actualType;
-                } else if (actualType instanceof java.lang.reflect.ParameterizedType) {
-                    return (Class<T>) ((java.lang.reflect.ParameterizedType) actualType).getRawType();
+                    factory.startContainer(queueName, messageType, new InboundMessageListener<>(
+                            queueName, messageType, messageClass, codecRegistry, claimCheck,
+                            this::processMessage, queuePersistenceService, retryHandler, metrics, settings.getLogging()));
                 } else {
-                    // Fallback: try to load by type name
-                    String typeName = actualType.getTypeName();
-                    return (Class<T>) Class.forName(typeName);
+                    factory.startContainer(queueName, messageType, (Message message) -> failureLog.warn(queueName,
+                            "Zula: Received message but cannot determine target class. Raw: {}",
+                            failureLog.payload(message.getBody())));
                 }
             }
-        } catch (Exception e) {
-            // ignore - we'll return null below
-        }
-        return null;
-    }
-
-    private String convertClassNameToMessageType(String className) {
-        if (className.endsWith("Command")) {
-            return className.substring(0, className.length() - "Command".length()).toLowerCase();
-        }
-        if (className.endsWith("Message")) {
-            return className.substring(0, className.length() - 7).toLowerCase();
+        } else {
+            log.warn("Zula: No ConnectionFactory available in context; consumer will not start a listener container. If you use @RabbitListener in the application, avoid SpEL on annotation attributes.");
         }
-        return className.toLowerCase();
     }
 
-    private String deriveMessageTypeFromClassName() {
-        String className = getClass().getSimpleName();
-        if (className.endsWith("MessageConsumer")) {
-            return className.substring(0, className.length() - 15).toLowerCase();
-        }
-        if (className.endsWith("Consumer")) {
-            return className.substring(0, className.length() - 8).toLowerCase();
-        }
-        return "default";
-    }
+    public abstract void processMessage(T message);
 
     public String getMessageType() {
         return messageType;
@@ -176,26 +136,4 @@ public abstract class BaseMessageConsumer<T> {
     public Class<T> getMessageClass() {
         return messageClass;
     }
-
-    private void recordInbox(String messageId, String sourceService, String payload) {
-        if (queuePersistenceService == null) {
-            return;
-        }
-        try {
-            queuePersistenceService.recordInboxReceived(messageId, messageType, sourceService, payload);
-        } catch (Exception ex) {
-            System.out.println("Zula: Could not persist inbox message " + messageId + " - " + ex.getMessage());
-        }
-    }
-
-    private void markInboxProcessed(String messageId) {
-        if (queuePersistenceService == null) {
-            return;
-        }
-        try {
-            queuePersistenceService.markInboxProcessed(messageId);
-        } catch (Exception ex) {
-            System.out.println("Zula: Could not mark inbox message " + messageId + " as processed - " + ex.getMessage());
-        }
-    }
 }
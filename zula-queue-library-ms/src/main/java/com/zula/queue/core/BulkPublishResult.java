@@ -0,0 +1,40 @@
+package com.zula.queue.core;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-message outcome of a bulk publish, in the order the messages were given.
+ */
+public final class BulkPublishResult {
+
+    private final List<PublishReceipt> receipts;
+    private final Map<PublishReceipt.Status, Integer> counts = new EnumMap<>(PublishReceipt.Status.class);
+
+    public BulkPublishResult(List<PublishReceipt> receipts) {
+        this.receipts = Collections.unmodifiableList(receipts);
+        for (PublishReceipt receipt : receipts) {
+            counts.merge(receipt.getStatus(), 1, Integer::sum);
+        }
+    }
+
+    public List<PublishReceipt> getReceipts() { return receipts; }
+
+    public int size() { return receipts.size(); }
+
+    public int count(PublishReceipt.Status status) {
+        return counts.getOrDefault(status, 0);
+    }
+
+    /** True when every message was acked by the broker (or queued for the outbox relay). */
+    public boolean isAllAccepted() {
+        return count(PublishReceipt.Status.ACKED) + count(PublishReceipt.Status.QUEUED) == receipts.size();
+    }
+
+    @Override
+    public String toString() {
+        return "BulkPublishResult{size=" + receipts.size() + ", counts=" + counts + "}";
+    }
+}
@@ -27,21 +27,6 @@ public class CommandHandlerRegistry {
     }
 
     private String deriveCommandType(Class<?> clazz) {
-        ZulaCommand commandAnnotation = clazz.getAnnotation(ZulaCommand.class);
-        if (commandAnnotation != null && !commandAnnotation.commandType().isEmpty()) {
-            return commandAnnotation.commandType().toLowerCase();
-        }
-        ZulaMessage messageAnnotation = clazz.getAnnotation(ZulaMessage.class);
-        if (messageAnnotation != null && !messageAnnotation.messageType().isEmpty()) {
-            return messageAnnotation.messageType().toLowerCase();
-        }
-        String simpleName = clazz.getSimpleName();
-        if (simpleName.endsWith("Command")) {
-            return simpleName.substring(0, simpleName.length() - "Command".length()).toLowerCase();
-        }
-        if (simpleName.endsWith("Message")) {
-            return simpleName.substring(0, simpleName.length() - "Message".length()).toLowerCase();
-        }
-        return simpleName.toLowerCase();
+        return MessageDescriptor.of(clazz).getMessageType();
     }
 }
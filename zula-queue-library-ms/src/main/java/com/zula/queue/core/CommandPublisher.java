@@ -1,7 +1,11 @@
 package com.zula.queue.core;
 
+import org.jdbi.v3.core.Handle;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Command-first facade that mirrors the Standard Bank style "sendCommand" API
  * while delegating to {@link MessagePublisher} under the hood.
@@ -30,4 +34,36 @@ public class CommandPublisher {
     public <T> void sendCommandToService(String serviceName, String commandType, String action, T command) {
         messagePublisher.publishToService(serviceName, commandType, action, command);
     }
+
+    public <T> CompletableFuture<PublishReceipt> sendCommandAsync(T command) {
+        return messagePublisher.publishAsync(command);
+    }
+
+    public <T> CompletableFuture<PublishReceipt> sendCommandToServiceAsync(String serviceName, T command) {
+        return messagePublisher.publishAsync(serviceName, command);
+    }
+
+    public <T> CompletableFuture<PublishReceipt> sendCommandToServiceAsync(String serviceName, String action, T command) {
+        return messagePublisher.publishAsync(serviceName, action, command);
+    }
+
+    public <T> CompletableFuture<PublishReceipt> sendCommandToServiceAsync(String serviceName, String commandType, String action, T command) {
+        return messagePublisher.publishAsync(serviceName, commandType, action, command);
+    }
+
+    public <T> BulkPublishResult sendCommands(Collection<T> commands) {
+        return messagePublisher.publishAll(commands);
+    }
+
+    public <T> BulkPublishResult sendCommandsToService(String serviceName, Collection<T> commands) {
+        return messagePublisher.publishAllToService(serviceName, commands);
+    }
+
+    public <T> BulkPublishResult sendCommandsToService(String serviceName, String action, Collection<T> commands) {
+        return messagePublisher.publishAllToService(serviceName, action, commands);
+    }
+
+    public <T> void sendCommandInTransaction(Handle handle, String serviceName, T command) {
+        messagePublisher.publishInTransaction(handle, serviceName, command);
+    }
 }
@@ -0,0 +1,71 @@
+package com.zula.queue.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * Resolves the message class and message type of a consumer subclass from the type
+ * argument it passes to its generic base class, e.g. {@code extends BaseMessageConsumer<OrderMessage>}.
+ */
+final class ConsumerTypeResolver {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsumerTypeResolver.class);
+
+    private ConsumerTypeResolver() {
+    }
+
+    static String messageType(Class<?> consumerClass) {
+        try {
+            Type actualType = typeArgument(consumerClass);
+            if (actualType != null) {
+                if (actualType instanceof Class<?>) {
+                    return MessageDescriptor.of((Class<?>) actualType).getMessageType();
+                }
+                String className = actualType.getTypeName();
+                return MessageDescriptor.messageTypeFromName(className.substring(className.lastIndexOf('.') + 1));
+            }
+        } catch (Exception e) {
+            log.debug("Zula: Could not derive message type of {} from generic, using class name", consumerClass.getName());
+        }
+        return messageTypeFromConsumerName(consumerClass.getSimpleName());
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> Class<T> messageClass(Class<?> consumerClass) {
+        try {
+            Type actualType = typeArgument(consumerClass);
+            if (actualType instanceof Class) {
+                return (Class<T>) actualType;
+            } else if (actualType instanceof ParameterizedType) {
+                return (Class<T>) ((ParameterizedType) actualType).getRawType();
+            } else if (actualType != null) {
+                // Fallback: try to load by type name
+                return (Class<T>) Class.forName(actualType.getTypeName());
+            }
+        } catch (Exception e) {
+            // ignore - we'll return null below
+        }
+        return null;
+    }
+
+    private static Type typeArgument(Class<?> consumerClass) {
+        Type genericSuperclass = consumerClass.getGenericSuperclass();
+        if (genericSuperclass instanceof ParameterizedType) {
+            return ((ParameterizedType) genericSuperclass).getActualTypeArguments()[0];
+        }
+        return null;
+    }
+
+    private static String messageTypeFromConsumerName(String className) {
+        if (className.endsWith("MessageConsumer")) {
+            return className.substring(0, className.length() - "MessageConsumer".length()).toLowerCase();
+        }
+        if (className.endsWith("Consumer")) {
+            return className.substring(0, className.length() - "Consumer".length()).toLowerCase();
+        }
+        return "default";
+    }
+}
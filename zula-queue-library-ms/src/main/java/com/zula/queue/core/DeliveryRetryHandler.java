@@ -0,0 +1,258 @@
+package com.zula.queue.core;
+
+import com.zula.queue.config.QueueProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Handles deliveries whose handler failed, for {@link InboundMessageListener} and
+ * {@link InboundBatchListener}. Instead of rejecting the message (which either loses it or
+ * redelivers it immediately, over and over), a copy with an incremented {@code x-retry-count}
+ * is sent to the queue's TTL retry queue for the next backoff delay, and the broker routes it
+ * back to the queue once the delay has passed. Messages that used up {@code max-attempts}, or
+ * that cannot be decoded at all, go to {@code <queue>.dlq}. The inbox row follows along as
+ * {@code RETRY_<n>} and {@code DEAD_LETTERED}.
+ *
+ * The original delivery is acked only after the broker confirmed the copy (with publisher
+ * confirms enabled); if sending fails, is nacked or is not confirmed within
+ * {@code confirm-timeout-ms}, the exception propagates and the container requeues the original.
+ * Retry and dead-letter queues are always declared, also with {@code auto-create-queues=false},
+ * since copies sent to a missing queue would be dropped by the broker.
+ */
+public class DeliveryRetryHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(DeliveryRetryHandler.class);
+    private final RateLimitedLogger failureLog;
+
+    public static final String HEADER_RETRY_COUNT = "x-retry-count";
+    public static final String HEADER_LAST_ERROR = "x-last-error";
+    public static final String STATUS_RETRY_PREFIX = "RETRY_";
+    public static final String STATUS_DEAD_LETTERED = "DEAD_LETTERED";
+
+    private static final int MAX_ERROR_LENGTH = 500;
+    /** Batch copies remembered so a requeued batch does not copy its messages twice. */
+    private static final int MAX_FORWARDED = 10_000;
+
+    private final MessageTransport transport;
+    private final QueueManager queueManager;
+    private final QueueProperties.Retry settings;
+    private final QueuePersistenceService queuePersistenceService;
+    private final List<Long> delays;
+    private final Set<String> forwarded = Collections.newSetFromMap(Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > MAX_FORWARDED;
+                }
+            }));
+
+    public DeliveryRetryHandler(RabbitTemplate rabbitTemplate,
+                                QueueManager queueManager,
+                                QueueProperties.Retry settings,
+                                QueuePersistenceService queuePersistenceService) {
+        this(new RabbitMessageTransport(rabbitTemplate), queueManager, settings, queuePersistenceService);
+    }
+
+    public DeliveryRetryHandler(MessageTransport transport,
+                                QueueManager queueManager,
+                                QueueProperties.Retry settings,
+                                QueuePersistenceService queuePersistenceService) {
+        this(transport, queueManager, settings, new QueueProperties.Logging(), queuePersistenceService);
+    }
+
+    public DeliveryRetryHandler(MessageTransport transport,
+                                QueueManager queueManager,
+                                QueueProperties.Retry settings,
+                                QueueProperties.Logging logging,
+                                QueuePersistenceService queuePersistenceService) {
+        this.transport = transport;
+        this.failureLog = new RateLimitedLogger(log, logging);
+        this.queueManager = queueManager;
+        this.settings = settings;
+        this.queuePersistenceService = queuePersistenceService;
+        List<Long> distinct = new ArrayList<>();
+        for (int retry = 1; retry < settings.getMaxAttempts(); retry++) {
+            long delay = delayFor(retry);
+            if (!distinct.contains(delay)) {
+                distinct.add(delay);
+            }
+        }
+        this.delays = List.copyOf(distinct);
+        if (transport.getConfirms() == MessageTransport.Confirms.NONE) {
+            log.warn("Zula: Retries enabled without publisher confirms; a retry copy lost by the broker loses its message");
+        }
+    }
+
+    /**
+     * Declare the retry and dead-letter queues of a queue before consuming from it.
+     */
+    public void declareQueues(String queueName) {
+        queueManager.createRetryQueues(queueName, delays, settings.isDeadLetter());
+    }
+
+    /**
+     * Backoff before retry number {@code retry} (1-based): the initial interval times the
+     * multiplier for each earlier retry, capped at the max interval.
+     */
+    public long delayFor(int retry) {
+        double delay = settings.getInitialIntervalMs() * Math.pow(settings.getMultiplier(), retry - 1);
+        return (long) Math.min(delay, settings.getMaxIntervalMs());
+    }
+
+    public static int retryCountOf(Message message) {
+        Object header = message.getMessageProperties().getHeaders().get(HEADER_RETRY_COUNT);
+        if (header instanceof Number number) {
+            return number.intValue();
+        }
+        return header != null ? Integer.parseInt(header.toString()) : 0;
+    }
+
+    /**
+     * Schedule another attempt for a message whose handler failed, or dead-letter it once it has
+     * used up its attempts.
+     *
+     * @param messageId inbox message id, or null when no inbox row was written
+     */
+    public void retryOrDeadLetter(Message message, String queueName, String messageId, Exception cause) {
+        int retry = retryCountOf(message) + 1;
+        if (retry >= settings.getMaxAttempts()) {
+            deadLetter(message, queueName, messageId, cause);
+            return;
+        }
+        long delay = delayFor(retry);
+        sendConfirmed(queueManager.generateRetryQueueName(queueName, delay), copyOf(message, retry, cause));
+        failureLog.warn("retry:" + queueName, "Zula: Retrying message {} from {} in {} ms (retry {} of {}) - {}",
+                messageId, queueName, delay, retry, settings.getMaxAttempts() - 1, String.valueOf(cause));
+        markInbox(messageId, STATUS_RETRY_PREFIX + retry);
+    }
+
+    /**
+     * Move a message to the dead-letter queue without further attempts, e.g. when it cannot be decoded.
+     */
+    public void deadLetter(Message message, String queueName, String messageId, Exception cause) {
+        if (settings.isDeadLetter()) {
+            sendConfirmed(queueManager.generateDeadLetterQueueName(queueName), copyOf(message, retryCountOf(message), cause));
+            failureLog.error("dead-letter:" + queueName, "Zula: Dead-lettered message {} from {}", messageId, queueName, cause);
+        } else {
+            failureLog.error("dead-letter:" + queueName, "Zula: Dropped message {} from {} after {} attempts",
+                    messageId, queueName, retryCountOf(message) + 1, cause);
+        }
+        markInbox(messageId, STATUS_DEAD_LETTERED);
+    }
+
+    /**
+     * {@link #retryOrDeadLetter} for every message of a failed batch. Messages copied before are
+     * skipped: if a copy fails, the exception propagates and the container requeues the whole
+     * batch, and only the messages without a copy are copied again on its redelivery.
+     *
+     * @param messageIds inbox message ids in the order of {@code messages}
+     */
+    public void retryOrDeadLetterAll(List<Message> messages, String queueName, List<String> messageIds, Exception cause) {
+        RuntimeException failure = null;
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            String key = forwardedKey(message, queueName);
+            if (key != null && forwarded.contains(key)) {
+                continue;
+            }
+            try {
+                retryOrDeadLetter(message, queueName, messageIds.get(i), cause);
+                if (key != null) {
+                    forwarded.add(key);
+                }
+            } catch (RuntimeException ex) {
+                if (failure == null) {
+                    failure = ex;
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static String forwardedKey(Message message, String queueName) {
+        Object id = message.getMessageProperties().getHeaders().get(MessageMetadataHelper.HEADER_MESSAGE_ID);
+        if (id == null) {
+            id = message.getMessageProperties().getMessageId();
+        }
+        return id != null ? queueName + "|" + id + "|" + retryCountOf(message) : null;
+    }
+
+    /**
+     * Send a copy through the default exchange and wait for the broker to confirm it.
+     */
+    private void sendConfirmed(String queueName, Message copy) {
+        long timeoutMs = settings.getConfirmTimeoutMs();
+        MessageTransport.Confirms confirms = transport.getConfirms();
+        if (confirms == MessageTransport.Confirms.SIMPLE) {
+            transport.invoke(channel -> {
+                channel.send("", queueName, copy, null);
+                if (!channel.waitForConfirms(timeoutMs)) {
+                    throw new AmqpException("Broker did not confirm the copy to " + queueName + " within " + timeoutMs + " ms");
+                }
+                return null;
+            });
+            return;
+        }
+        if (confirms != MessageTransport.Confirms.CORRELATED) {
+            transport.send("", queueName, copy, null);
+            return;
+        }
+        CorrelationData correlation = new CorrelationData();
+        transport.send("", queueName, copy, correlation);
+        CorrelationData.Confirm confirm;
+        try {
+            confirm = correlation.getFuture().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AmqpException("Interrupted while waiting for the confirm of a copy to " + queueName, ex);
+        } catch (ExecutionException | TimeoutException ex) {
+            throw new AmqpException("No confirm for the copy to " + queueName + " within " + timeoutMs + " ms", ex);
+        }
+        if (!confirm.isAck()) {
+            throw new AmqpException("Broker nacked the copy to " + queueName + ": " + confirm.getReason());
+        }
+        if (correlation.getReturned() != null) {
+            throw new AmqpException("Copy to " + queueName + " was returned: " + correlation.getReturned().getReplyText());
+        }
+    }
+
+    private Message copyOf(Message message, int retryCount, Exception cause) {
+        String error = String.valueOf(cause);
+        return MessageBuilder.fromClonedMessage(message)
+                .setDeliveryMode(MessageDeliveryMode.PERSISTENT)
+                .setHeader(HEADER_RETRY_COUNT, retryCount)
+                .setHeader(HEADER_LAST_ERROR, error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error)
+                .build();
+    }
+
+    private void markInbox(String messageId, String status) {
+        if (queuePersistenceService == null || messageId == null) {
+            return;
+        }
+        try {
+            queuePersistenceService.markInboxStatus(messageId, status);
+        } catch (Exception ex) {
+            failureLog.warn("inbox", "Zula: Could not mark inbox message {} as {} - {}", messageId, status, ex.getMessage());
+        }
+    }
+}
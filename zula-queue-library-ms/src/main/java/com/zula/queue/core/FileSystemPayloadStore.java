@@ -0,0 +1,123 @@
+package com.zula.queue.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * {@link PayloadStore} keeping one file per body in a directory that producers and consumers
+ * share. Bodies are written to a temporary file and moved into place, so a reader never sees a
+ * partial file, and are read through a memory-mapped buffer instead of being copied onto the heap.
+ */
+public class FileSystemPayloadStore implements PayloadStore {
+
+    private static final Pattern REFERENCE = Pattern.compile("[0-9a-f-]{36}\\.bin");
+
+    private final Path directory;
+
+    public FileSystemPayloadStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    @Override
+    public String store(String messageId, byte[] body) throws IOException {
+        String reference = UUID.randomUUID() + ".bin";
+        Path tmp = directory.resolve(reference + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(body);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(tmp, directory.resolve(reference), StandardCopyOption.ATOMIC_MOVE);
+        return reference;
+    }
+
+    @Override
+    public InputStream open(String reference) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(reference), StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return new MappedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public void delete(String reference) throws IOException {
+        Files.deleteIfExists(resolve(reference));
+    }
+
+    /**
+     * Deletes bodies, and temporary files left by interrupted writes, last modified before the cutoff.
+     */
+    @Override
+    public int deleteStoredBefore(Instant cutoff) throws IOException {
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{bin,tmp}")) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff) && Files.deleteIfExists(file)) {
+                        deleted++;
+                    }
+                } catch (NoSuchFileException ex) {
+                    // deleted concurrently
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private Path resolve(String reference) throws IOException {
+        if (reference == null || !REFERENCE.matcher(reference).matches()) {
+            throw new IOException("Invalid payload reference " + reference);
+        }
+        return directory.resolve(reference);
+    }
+
+    private static final class MappedInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private MappedInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.min(Math.max(n, 0), buffer.remaining());
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+    }
+}
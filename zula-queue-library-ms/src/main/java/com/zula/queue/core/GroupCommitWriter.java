@@ -0,0 +1,181 @@
+package com.zula.queue.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Bounded group-commit buffer. Callers enqueue items and a single writer thread
+ * hands them to the flusher in batches, as soon as {@code flushSize} items are
+ * waiting or the oldest item has lingered for {@code linger}, whichever comes first.
+ *
+ * Each submitted item gets a future that completes once its batch has been written,
+ * so callers can either wait for durability or fire and forget. When the buffer is
+ * full, {@link #submit(Object)} blocks, pushing back on the producer instead of
+ * growing memory. Once the writer is closed, blocked and later submissions fail
+ * instead of waiting for a writer that is gone.
+ */
+public class GroupCommitWriter<T> implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitWriter.class);
+    private static final RateLimitedLogger failureLog = new RateLimitedLogger(log);
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final String name;
+    private final BlockingQueue<Pending<T>> ring;
+    private final int flushSize;
+    private final long lingerNanos;
+    private final Consumer<List<T>> flusher;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    public GroupCommitWriter(String name,
+                             int capacity,
+                             int flushSize,
+                             Duration linger,
+                             Consumer<List<T>> flusher) {
+        Assert.hasText(name, "name must not be empty");
+        Assert.isTrue(capacity > 0, "capacity must be positive");
+        Assert.isTrue(flushSize > 0, "flushSize must be positive");
+        Assert.notNull(linger, "linger must not be null");
+        Assert.notNull(flusher, "flusher must not be null");
+        this.name = name;
+        this.ring = new ArrayBlockingQueue<>(capacity);
+        this.flushSize = flushSize;
+        this.lingerNanos = linger.toNanos();
+        this.flusher = flusher;
+        this.writerThread = new Thread(this::runLoop, name);
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Enqueue an item for the next flush. Blocks while the buffer is full, until space
+     * frees up or the writer is closed.
+     */
+    public CompletableFuture<Void> submit(T item) {
+        Pending<T> pending = new Pending<>(item);
+        try {
+            while (!ring.offer(pending, IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    pending.future.completeExceptionally(new IllegalStateException(name + " is closed"));
+                    return pending.future;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(ex);
+            return pending.future;
+        }
+        // close() may have drained the ring between the running check and the put
+        if (!running && ring.remove(pending)) {
+            pending.future.completeExceptionally(new IllegalStateException(name + " is closed"));
+        }
+        return pending.future;
+    }
+
+    public int pendingCount() {
+        return ring.size();
+    }
+
+    /**
+     * Stop accepting items and flush whatever is still buffered. Items the writer did not
+     * flush within 30 seconds are failed, so no caller waits on them forever.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        List<Pending<T>> left = new ArrayList<>();
+        ring.drainTo(left);
+        for (Pending<T> pending : left) {
+            pending.future.completeExceptionally(new IllegalStateException(name + " closed before the item was written"));
+        }
+    }
+
+    private void runLoop() {
+        List<Pending<T>> batch = new ArrayList<>(flushSize);
+        try {
+            while (running) {
+                Pending<T> first = ring.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+                flush(batch);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            flush(batch);
+            while (ring.drainTo(batch, flushSize) > 0) {
+                flush(batch);
+            }
+        }
+    }
+
+    private void fillBatch(List<Pending<T>> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < flushSize) {
+            if (ring.drainTo(batch, flushSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            Pending<T> next = ring.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<Pending<T>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<T> items = new ArrayList<>(batch.size());
+        for (Pending<T> pending : batch) {
+            items.add(pending.item);
+        }
+        try {
+            flusher.accept(items);
+            for (Pending<T> pending : batch) {
+                pending.future.complete(null);
+            }
+        } catch (Exception ex) {
+            failureLog.warn(name, "Zula: {} could not flush {} items - {}", name, items.size(), ex.getMessage());
+            for (Pending<T> pending : batch) {
+                pending.future.completeExceptionally(ex);
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private static final class Pending<T> {
+        private final T item;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Pending(T item) {
+            this.item = item;
+        }
+    }
+}
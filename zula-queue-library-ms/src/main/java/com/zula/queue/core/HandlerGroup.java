@@ -0,0 +1,102 @@
+package com.zula.queue.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * All handlers registered for one message type in {@link MessageHandlerRegistry}. The queue has a
+ * single consumer whose listener decodes each delivery once and passes it to this group, which
+ * calls every handler, in registration order or in parallel, and returns only when all of them
+ * have finished. A failing handler does not stop the others: every handler sees the delivery,
+ * then the first failure is rethrown with the rest attached as suppressed exceptions. The
+ * listener then retries or dead-letters the whole delivery (see {@link InboundMessageListener}),
+ * so on a retry the handlers that succeeded see the message again and need to be idempotent.
+ */
+final class HandlerGroup<T> implements Consumer<T> {
+
+    private final Class<?> messageClass;
+    private volatile List<Consumer<T>> handlers = List.of();
+    private final Executor parallelExecutor;
+
+    /**
+     * @param parallelExecutor runs all but the first handler of a delivery; null calls them in sequence
+     */
+    HandlerGroup(Class<?> messageClass, Executor parallelExecutor) {
+        this.messageClass = messageClass;
+        this.parallelExecutor = parallelExecutor;
+    }
+
+    Class<?> getMessageClass() {
+        return messageClass;
+    }
+
+    synchronized void add(Consumer<T> handler) {
+        List<Consumer<T>> updated = new ArrayList<>(handlers);
+        updated.add(handler);
+        handlers = List.copyOf(updated);
+    }
+
+    int size() {
+        return handlers.size();
+    }
+
+    @Override
+    public void accept(T message) {
+        List<Consumer<T>> current = handlers;
+        if (parallelExecutor == null || current.size() == 1) {
+            RuntimeException failure = null;
+            for (Consumer<T> handler : current) {
+                try {
+                    handler.accept(message);
+                } catch (RuntimeException ex) {
+                    failure = collect(failure, ex);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return;
+        }
+        CompletableFuture<?>[] others = new CompletableFuture<?>[current.size() - 1];
+        for (int i = 1; i < current.size(); i++) {
+            Consumer<T> handler = current.get(i);
+            others[i - 1] = CompletableFuture.runAsync(() -> handler.accept(message), parallelExecutor);
+        }
+        RuntimeException failure = null;
+        try {
+            current.get(0).accept(message);
+        } catch (RuntimeException ex) {
+            failure = ex;
+        }
+        for (CompletableFuture<?> other : others) {
+            try {
+                other.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw collect(failure, new IllegalStateException("Interrupted while waiting for handlers", ex));
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause() instanceof CompletionException && ex.getCause().getCause() != null
+                        ? ex.getCause().getCause() : ex.getCause();
+                failure = collect(failure, cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause));
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static RuntimeException collect(RuntimeException first, RuntimeException next) {
+        if (first == null) {
+            return next;
+        }
+        if (first != next) {
+            first.addSuppressed(next);
+        }
+        return first;
+    }
+}
@@ -0,0 +1,200 @@
+package com.zula.queue.core;
+
+import com.zula.database.entity.MessageInbox;
+import com.zula.queue.config.QueueProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.BatchMessageListener;
+import org.springframework.amqp.core.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Batch counterpart of {@link InboundMessageListener}: decodes a consumer batch, records all
+ * inbox rows in one bulk insert, hands the payloads to the handler as one list and marks them
+ * processed with a single update. Messages that cannot be deserialized are skipped so
+ * one bad payload does not block the rest of the batch.
+ *
+ * With a {@link DeliveryRetryHandler}, undecodable messages are dead-lettered and, if the
+ * handler fails, every message of the batch is scheduled for a retry on its own. Without one,
+ * a failed handler rejects the batch without requeue, and so does an undecodable message once
+ * the rest of the batch has been handled: like {@link InboundMessageListener}, the delivery is
+ * never acked as if it had been handled. A consumer batch is acked or rejected as a whole, so
+ * on a queue with a dead-letter exchange the handled messages are dead-lettered with it; their
+ * inbox rows say PROCESSED.
+ */
+public class InboundBatchListener<T> implements BatchMessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(InboundBatchListener.class);
+
+    private final String queueName;
+    private final String messageType;
+    private final Class<T> messageClass;
+    private final InboundDecoder decoder;
+    private final Consumer<List<T>> handler;
+    private final QueuePersistenceService queuePersistenceService;
+    private final DeliveryRetryHandler retryHandler;
+    private final QueueMetrics metrics;
+    private final RateLimitedLogger failureLog;
+
+    public InboundBatchListener(String queueName,
+                                String messageType,
+                                Class<T> messageClass,
+                                MessageCodecRegistry codecs,
+                                Consumer<List<T>> handler,
+                                QueuePersistenceService queuePersistenceService) {
+        this(queueName, messageType, messageClass, codecs, null, handler, queuePersistenceService);
+    }
+
+    public InboundBatchListener(String queueName,
+                                String messageType,
+                                Class<T> messageClass,
+                                MessageCodecRegistry codecs,
+                                PayloadClaimCheck claimCheck,
+                                Consumer<List<T>> handler,
+                                QueuePersistenceService queuePersistenceService) {
+        this(queueName, messageType, messageClass, codecs, claimCheck, handler, queuePersistenceService, null);
+    }
+
+    public InboundBatchListener(String queueName,
+                                String messageType,
+                                Class<T> messageClass,
+                                MessageCodecRegistry codecs,
+                                PayloadClaimCheck claimCheck,
+                                Consumer<List<T>> handler,
+                                QueuePersistenceService queuePersistenceService,
+                                DeliveryRetryHandler retryHandler) {
+        this(queueName, messageType, messageClass, codecs, claimCheck, handler, queuePersistenceService, retryHandler, null);
+    }
+
+    public InboundBatchListener(String queueName,
+                                String messageType,
+                                Class<T> messageClass,
+                                MessageCodecRegistry codecs,
+                                PayloadClaimCheck claimCheck,
+                                Consumer<List<T>> handler,
+                                QueuePersistenceService queuePersistenceService,
+                                DeliveryRetryHandler retryHandler,
+                                QueueMetrics metrics) {
+        this(queueName, messageType, messageClass, codecs, claimCheck, handler, queuePersistenceService, retryHandler, metrics,
+                new QueueProperties.Logging());
+    }
+
+    public InboundBatchListener(String queueName,
+                                String messageType,
+                                Class<T> messageClass,
+                                MessageCodecRegistry codecs,
+                                PayloadClaimCheck claimCheck,
+                                Consumer<List<T>> handler,
+                                QueuePersistenceService queuePersistenceService,
+                                DeliveryRetryHandler retryHandler,
+                                QueueMetrics metrics,
+                                QueueProperties.Logging logging) {
+        this.queueName = queueName;
+        this.messageType = messageType;
+        this.messageClass = messageClass;
+        this.decoder = new InboundDecoder(codecs, claimCheck);
+        this.handler = handler;
+        this.queuePersistenceService = queuePersistenceService;
+        this.retryHandler = retryHandler;
+        this.metrics = metrics != null ? metrics : QueueMetrics.NOOP;
+        this.failureLog = new RateLimitedLogger(log, logging);
+    }
+
+    @Override
+    public void onMessageBatch(List<Message> messages) {
+        metrics.inFlight(false, messageType, messages.size());
+        try {
+            process(messages);
+        } finally {
+            metrics.inFlight(false, messageType, -messages.size());
+        }
+    }
+
+    private void process(List<Message> messages) {
+        List<T> payloads = new ArrayList<>(messages.size());
+        List<String> messageIds = new ArrayList<>(messages.size());
+        List<Message> accepted = new ArrayList<>(messages.size());
+        List<MessageInbox> inboxRows = queuePersistenceService != null ? new ArrayList<>(messages.size()) : null;
+        Exception undecodable = null;
+        int undecodableCount = 0;
+
+        for (Message message : messages) {
+            byte[] body = message.getBody();
+            metrics.payloadSize(false, messageType, body.length);
+            long started = metrics.start();
+            try {
+                InboundDecoder.Decoded<T> decoded = decoder.decode(message, messageClass);
+                metrics.record(QueueMetrics.Stage.DECODE, messageType, started);
+                String messageId = MessageMetadataHelper.extractMessageId(message, decoded.value);
+                if (inboxRows != null) {
+                    inboxRows.add(queuePersistenceService.inboxRow(messageId, messageType,
+                            MessageMetadataHelper.extractSourceService(message),
+                            new String(decoder.inboxPayload(decoded), StandardCharsets.UTF_8)));
+                }
+                payloads.add(decoded.value);
+                messageIds.add(messageId);
+                accepted.add(message);
+            } catch (Exception ex) {
+                metrics.error(QueueMetrics.Stage.DECODE, messageType);
+                if (retryHandler != null) {
+                    retryHandler.deadLetter(message, queueName, MessageMetadataHelper.extractMessageId(message, null), ex);
+                    continue;
+                }
+                failureLog.error("decode:" + queueName, "Zula: Skipping undeserializable message in batch for {}, raw message: {}",
+                        queueName, failureLog.payload(body), ex);
+                undecodable = undecodable != null ? undecodable : ex;
+                undecodableCount++;
+            }
+        }
+        if (!payloads.isEmpty()) {
+            handle(payloads, messageIds, accepted, inboxRows);
+        }
+        if (undecodable != null) {
+            throw new AmqpRejectAndDontRequeueException("Zula: Rejected batch for " + queueName + " with "
+                    + undecodableCount + " undeserializable message(s)", undecodable);
+        }
+    }
+
+    private void handle(List<T> payloads, List<String> messageIds, List<Message> accepted, List<MessageInbox> inboxRows) {
+
+        if (inboxRows != null) {
+            long started = metrics.start();
+            try {
+                queuePersistenceService.insertInboxBatch(inboxRows);
+                metrics.record(QueueMetrics.Stage.INBOX, messageType, started);
+            } catch (Exception ex) {
+                failureLog.warn("inbox:" + queueName, "Zula: Could not persist inbox batch of {} messages - {}", inboxRows.size(), ex.getMessage());
+            }
+        }
+
+        long started = metrics.start();
+        try {
+            handler.accept(payloads);
+            metrics.record(QueueMetrics.Stage.HANDLER, messageType, started);
+        } catch (Exception ex) {
+            metrics.error(QueueMetrics.Stage.HANDLER, messageType);
+            if (retryHandler != null) {
+                retryHandler.retryOrDeadLetterAll(accepted, queueName, messageIds, ex);
+                return;
+            }
+            failureLog.error("handler:" + queueName, "Zula: Error processing batch of {} messages for {}, rejecting it",
+                    payloads.size(), queueName, ex);
+            throw new AmqpRejectAndDontRequeueException("Zula: Rejected batch for " + queueName, ex);
+        }
+
+        if (queuePersistenceService != null) {
+            started = metrics.start();
+            try {
+                queuePersistenceService.markInboxProcessedBatch(messageIds);
+                metrics.record(QueueMetrics.Stage.PROCESSED, messageType, started);
+            } catch (Exception ex) {
+                failureLog.warn("inbox:" + queueName, "Zula: Could not mark inbox batch of {} messages as processed - {}", messageIds.size(), ex.getMessage());
+            }
+        }
+    }
+}
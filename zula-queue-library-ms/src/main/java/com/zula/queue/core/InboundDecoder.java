@@ -0,0 +1,71 @@
+package com.zula.queue.core;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Turns a received AMQP message into its payload object for {@link InboundMessageListener} and
+ * {@link InboundBatchListener}: resolves a claim-check reference, decompresses according to the
+ * content-encoding and decodes with the codec named by the content type.
+ */
+final class InboundDecoder {
+
+    private final MessageCodecRegistry codecs;
+    private final PayloadClaimCheck claimCheck;
+
+    InboundDecoder(MessageCodecRegistry codecs, PayloadClaimCheck claimCheck) {
+        this.codecs = codecs;
+        this.claimCheck = claimCheck;
+    }
+
+    <T> Decoded<T> decode(Message message, Class<T> type) throws IOException {
+        MessageProperties props = message.getMessageProperties();
+        String algorithm = PayloadCompression.algorithmOf(props.getContentEncoding());
+        MessageCodec codec = codecs.forContentType(props.getContentType());
+        String reference = PayloadClaimCheck.referenceOf(message);
+        if (reference != null) {
+            if (claimCheck == null) {
+                throw new IOException("Message carries claim-check reference " + reference
+                        + " but zula.queue.claim-check is not enabled");
+            }
+            try (InputStream in = codecs.getCompression().decompress(claimCheck.open(reference), algorithm)) {
+                return new Decoded<>(codec.decode(in, type), codec, null, null, null, reference);
+            }
+        }
+        byte[] body = message.getBody();
+        byte[] decoded = codecs.getCompression().decompress(body, algorithm);
+        return new Decoded<>(codec.decode(decoded, type), codec, decoded, algorithm, body, null);
+    }
+
+    /**
+     * Bytes for the inbox payload column: the claim-check reference for claim-checked messages,
+     * otherwise what {@link MessageCodecRegistry#toStoredPayload} picks.
+     */
+    byte[] inboxPayload(Decoded<?> decoded) throws IOException {
+        if (decoded.reference != null) {
+            return PayloadClaimCheck.toStoredPayload(decoded.reference);
+        }
+        return codecs.toStoredPayload(decoded.codec, decoded.body, decoded.value, decoded.algorithm, decoded.wireBody);
+    }
+
+    static final class Decoded<T> {
+        final T value;
+        private final MessageCodec codec;
+        private final byte[] body;
+        private final String algorithm;
+        private final byte[] wireBody;
+        private final String reference;
+
+        private Decoded(T value, MessageCodec codec, byte[] body, String algorithm, byte[] wireBody, String reference) {
+            this.value = value;
+            this.codec = codec;
+            this.body = body;
+            this.algorithm = algorithm;
+            this.wireBody = wireBody;
+            this.reference = reference;
+        }
+    }
+}
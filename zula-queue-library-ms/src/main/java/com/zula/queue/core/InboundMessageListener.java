@@ -0,0 +1,172 @@
+package com.zula.queue.core;
+
+import com.zula.queue.config.QueueProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+
+import java.util.function.Consumer;
+
+/**
+ * Single-message listener shared by {@link MessageHandlerRegistry} and {@link BaseMessageConsumer}:
+ * decodes the body (see {@link InboundDecoder}), records the inbox row, calls the handler, marks
+ * the row processed. The raw body is handed to the persistence
+ * service as bytes and only decoded to a string when an inbox row is actually written.
+ *
+ * With a {@link DeliveryRetryHandler}, a failed handler schedules a delayed retry and an
+ * undecodable message is dead-lettered. Without one, failures are logged and the delivery is
+ * rejected without requeue, so the broker drops it or, when the queue has a dead-letter
+ * exchange, dead-letters it; the delivery is never acked as if it had been handled.
+ */
+public class InboundMessageListener<T> implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(InboundMessageListener.class);
+
+    private final String queueName;
+    private final String messageType;
+    private final Class<T> messageClass;
+    private final InboundDecoder decoder;
+    private final Consumer<T> handler;
+    private final QueuePersistenceService queuePersistenceService;
+    private final DeliveryRetryHandler retryHandler;
+    private final QueueMetrics metrics;
+    private final RateLimitedLogger failureLog;
+
+    public InboundMessageListener(String queueName,
+                                  String messageType,
+                                  Class<T> messageClass,
+                                  MessageCodecRegistry codecs,
+                                  Consumer<T> handler,
+                                  QueuePersistenceService queuePersistenceService) {
+        this(queueName, messageType, messageClass, codecs, null, handler, queuePersistenceService);
+    }
+
+    public InboundMessageListener(String queueName,
+                                  String messageType,
+                                  Class<T> messageClass,
+                                  MessageCodecRegistry codecs,
+                                  PayloadClaimCheck claimCheck,
+                                  Consumer<T> handler,
+                                  QueuePersistenceService queuePersistenceService) {
+        this(queueName, messageType, messageClass, codecs, claimCheck, handler, queuePersistenceService, null);
+    }
+
+    public InboundMessageListener(String queueName,
+                                  String messageType,
+                                  Class<T> messageClass,
+                                  MessageCodecRegistry codecs,
+                                  PayloadClaimCheck claimCheck,
+                                  Consumer<T> handler,
+                                  QueuePersistenceService queuePersistenceService,
+                                  DeliveryRetryHandler retryHandler) {
+        this(queueName, messageType, messageClass, codecs, claimCheck, handler, queuePersistenceService, retryHandler, null);
+    }
+
+    public InboundMessageListener(String queueName,
+                                  String messageType,
+                                  Class<T> messageClass,
+                                  MessageCodecRegistry codecs,
+                                  PayloadClaimCheck claimCheck,
+                                  Consumer<T> handler,
+                                  QueuePersistenceService queuePersistenceService,
+                                  DeliveryRetryHandler retryHandler,
+                                  QueueMetrics metrics) {
+        this(queueName, messageType, messageClass, codecs, claimCheck, handler, queuePersistenceService, retryHandler, metrics,
+                new QueueProperties.Logging());
+    }
+
+    public InboundMessageListener(String queueName,
+                                  String messageType,
+                                  Class<T> messageClass,
+                                  MessageCodecRegistry codecs,
+                                  PayloadClaimCheck claimCheck,
+                                  Consumer<T> handler,
+                                  QueuePersistenceService queuePersistenceService,
+                                  DeliveryRetryHandler retryHandler,
+                                  QueueMetrics metrics,
+                                  QueueProperties.Logging logging) {
+        this.queueName = queueName;
+        this.messageType = messageType;
+        this.messageClass = messageClass;
+        this.decoder = new InboundDecoder(codecs, claimCheck);
+        this.handler = handler;
+        this.queuePersistenceService = queuePersistenceService;
+        this.retryHandler = retryHandler;
+        this.metrics = metrics != null ? metrics : QueueMetrics.NOOP;
+        this.failureLog = new RateLimitedLogger(log, logging);
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        metrics.inFlight(false, messageType, 1);
+        try {
+            process(message);
+        } finally {
+            metrics.inFlight(false, messageType, -1);
+        }
+    }
+
+    private void process(Message message) {
+        metrics.payloadSize(false, messageType, message.getBody().length);
+        InboundDecoder.Decoded<T> decoded;
+        long started = metrics.start();
+        try {
+            decoded = decoder.decode(message, messageClass);
+            metrics.record(QueueMetrics.Stage.DECODE, messageType, started);
+        } catch (Exception ex) {
+            metrics.error(QueueMetrics.Stage.DECODE, messageType);
+            if (retryHandler == null) {
+                throw reject(message, ex);
+            }
+            retryHandler.deadLetter(message, queueName, MessageMetadataHelper.extractMessageId(message, null), ex);
+            return;
+        }
+        T obj = decoded.value;
+        String messageId = MessageMetadataHelper.extractMessageId(message, obj);
+        try {
+            if (queuePersistenceService != null) {
+                started = metrics.start();
+                recordInbox(messageId, MessageMetadataHelper.extractSourceService(message), decoder.inboxPayload(decoded));
+                metrics.record(QueueMetrics.Stage.INBOX, messageType, started);
+            }
+            started = metrics.start();
+            handler.accept(obj);
+            metrics.record(QueueMetrics.Stage.HANDLER, messageType, started);
+            if (queuePersistenceService != null) {
+                started = metrics.start();
+                markInboxProcessed(messageId);
+                metrics.record(QueueMetrics.Stage.PROCESSED, messageType, started);
+            }
+        } catch (Exception ex) {
+            metrics.error(QueueMetrics.Stage.HANDLER, messageType);
+            if (retryHandler == null) {
+                throw reject(message, ex);
+            }
+            retryHandler.retryOrDeadLetter(message, queueName, messageId, ex);
+        }
+    }
+
+    private AmqpRejectAndDontRequeueException reject(Message message, Exception ex) {
+        failureLog.error(queueName, "Zula: Error processing message for {}, rejecting it, raw message: {}",
+                queueName, failureLog.payload(message.getBody()), ex);
+        return new AmqpRejectAndDontRequeueException("Zula: Rejected message for " + queueName, ex);
+    }
+
+    private void recordInbox(String messageId, String sourceService, byte[] payload) {
+        try {
+            queuePersistenceService.recordInboxReceived(messageId, messageType, sourceService, payload);
+        } catch (Exception ex) {
+            failureLog.warn("inbox:" + queueName, "Zula: Could not persist inbox message {} - {}", messageId, ex.getMessage());
+        }
+    }
+
+    private void markInboxProcessed(String messageId) {
+        try {
+            queuePersistenceService.markInboxProcessed(messageId);
+        } catch (Exception ex) {
+            failureLog.warn("inbox:" + queueName, "Zula: Could not mark inbox message {} as processed - {}", messageId, ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.zula.queue.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link MessageCodec} backed by a Jackson {@link ObjectMapper}. The mapper's factory decides
+ * the wire format (JSON, Smile, CBOR, ...); readers and writers are resolved once per class.
+ */
+public class JacksonMessageCodec implements MessageCodec {
+
+    private final String name;
+    private final String contentType;
+    private final ClassValue<ObjectWriter> writers;
+    private final ClassValue<ObjectReader> readers;
+
+    public JacksonMessageCodec(String name, String contentType, ObjectMapper objectMapper) {
+        this.name = name;
+        this.contentType = contentType;
+        this.writers = new ClassValue<>() {
+            @Override
+            protected ObjectWriter computeValue(Class<?> type) {
+                return objectMapper.writerFor(type);
+            }
+        };
+        this.readers = new ClassValue<>() {
+            @Override
+            protected ObjectReader computeValue(Class<?> type) {
+                return objectMapper.readerFor(type);
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public byte[] encode(Object message) throws IOException {
+        return writers.get(message.getClass()).writeValueAsBytes(message);
+    }
+
+    @Override
+    public <T> T decode(byte[] body, Class<T> type) throws IOException {
+        return readers.get(type).readValue(body);
+    }
+
+    @Override
+    public <T> T decode(InputStream body, Class<T> type) throws IOException {
+        return readers.get(type).readValue(body);
+    }
+}
@@ -0,0 +1,153 @@
+package com.zula.queue.core;
+
+import org.jdbi.v3.core.Jdbi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * {@link PayloadStore} keeping bodies in a database table shared by producers and consumers.
+ * The table is created by {@code db/zula-queue/payload-store.sql} (PostgreSQL DDL), either from the
+ * service's own migrations or through {@link #initializeSchema()}. Bodies are read back in ranges
+ * of {@code chunkBytes}, so a reader holds one chunk at a time rather than the whole body.
+ */
+public class JdbiPayloadStore implements PayloadStore {
+
+    public static final int DEFAULT_CHUNK_BYTES = 256 * 1024;
+
+    private final Jdbi jdbi;
+    private final String table;
+    private final int chunkBytes;
+    private final String insertSql;
+    private final String lengthSql;
+    private final String selectChunkSql;
+    private final String deleteSql;
+    private final String deleteBeforeSql;
+
+    public JdbiPayloadStore(Jdbi jdbi, String table) {
+        this(jdbi, table, DEFAULT_CHUNK_BYTES);
+    }
+
+    public JdbiPayloadStore(Jdbi jdbi, String table, int chunkBytes) {
+        this.jdbi = jdbi;
+        this.table = table;
+        this.chunkBytes = Math.max(1, chunkBytes);
+        this.insertSql = "INSERT INTO " + table + " (reference, message_id, payload, created_at) "
+                + "VALUES (:reference, :messageId, :payload, :createdAt)";
+        this.lengthSql = "SELECT octet_length(payload) FROM " + table + " WHERE reference = :reference";
+        this.selectChunkSql = "SELECT substring(payload FROM :from FOR :length) FROM " + table + " WHERE reference = :reference";
+        this.deleteSql = "DELETE FROM " + table + " WHERE reference = :reference";
+        this.deleteBeforeSql = "DELETE FROM " + table + " WHERE created_at < :cutoff";
+    }
+
+    /**
+     * Create the table and its index when they do not exist yet.
+     */
+    public void initializeSchema() {
+        String tableName = table.substring(table.lastIndexOf('.') + 1);
+        SchemaScripts.run(jdbi, "payload-store.sql", Map.of("table", table, "table_name", tableName));
+    }
+
+    @Override
+    public String store(String messageId, byte[] body) {
+        String reference = UUID.randomUUID().toString();
+        jdbi.useHandle(handle -> handle.createUpdate(insertSql)
+                .bind("reference", reference)
+                .bind("messageId", messageId)
+                .bind("payload", body)
+                .bind("createdAt", LocalDateTime.now())
+                .execute());
+        return reference;
+    }
+
+    @Override
+    public InputStream open(String reference) throws IOException {
+        Optional<Integer> length = jdbi.withHandle(handle -> handle.createQuery(lengthSql)
+                .bind("reference", reference)
+                .mapTo(Integer.class)
+                .findOne());
+        return new ChunkedInputStream(reference,
+                length.orElseThrow(() -> new IOException("No stored payload for reference " + reference)));
+    }
+
+    @Override
+    public void delete(String reference) {
+        jdbi.useHandle(handle -> handle.createUpdate(deleteSql).bind("reference", reference).execute());
+    }
+
+    @Override
+    public int deleteStoredBefore(Instant cutoff) {
+        return jdbi.withHandle(handle -> handle.createUpdate(deleteBeforeSql)
+                .bind("cutoff", LocalDateTime.ofInstant(cutoff, ZoneId.systemDefault()))
+                .execute());
+    }
+
+    /**
+     * Reads a stored body one {@code substring} range at a time.
+     */
+    private final class ChunkedInputStream extends InputStream {
+        private final String reference;
+        private final int length;
+        private int position;
+        private byte[] chunk = new byte[0];
+        private int chunkPosition;
+
+        private ChunkedInputStream(String reference, int length) {
+            this.reference = reference;
+            this.length = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? chunk[chunkPosition++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, chunk.length - chunkPosition);
+            System.arraycopy(chunk, chunkPosition, b, off, n);
+            chunkPosition += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - chunkPosition;
+        }
+
+        private boolean fill() throws IOException {
+            if (chunkPosition < chunk.length) {
+                return true;
+            }
+            if (position >= length) {
+                return false;
+            }
+            int from = position;
+            Optional<byte[]> next = jdbi.withHandle(handle -> handle.createQuery(selectChunkSql)
+                    .bind("from", from + 1)
+                    .bind("length", chunkBytes)
+                    .bind("reference", reference)
+                    .mapTo(byte[].class)
+                    .findOne());
+            if (next.isEmpty() || next.get().length == 0) {
+                throw new IOException("Stored payload " + reference + " was deleted while it was being read");
+            }
+            chunk = next.get();
+            chunkPosition = 0;
+            position += chunk.length;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.zula.queue.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.MessagePropertiesBuilder;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The in-memory broker behind {@link LoopbackTransport}: topic exchanges, and queues held in
+ * {@link LinkedBlockingDeque}s so requeued messages can go back to the head. Routing results are
+ * cached per exchange and routing key and rebuilt after any binding or queue change. Queues with
+ * {@code x-message-ttl} and a dead-letter exchange (the retry queues) dead-letter messages once
+ * their TTL expires; as in RabbitMQ, expiry takes messages from the head of the queue, so it
+ * costs nothing per message left in the queue.
+ *
+ * Brokers are either private to one transport or shared by name, so several application
+ * contexts in one JVM can exchange messages; a shared broker lives until its last transport closes.
+ */
+final class LoopbackBroker {
+
+    private static final Logger log = LoggerFactory.getLogger(LoopbackBroker.class);
+    private static final RateLimitedLogger failureLog = new RateLimitedLogger(log);
+
+    private static final Map<String, LoopbackBroker> SHARED = new HashMap<>();
+    private static final int MAX_CACHED_ROUTES = 10_000;
+
+    private final String name;
+    private int references;
+    private final Map<String, Exchange> exchanges = new ConcurrentHashMap<>();
+    private final Map<String, LoopbackQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicLong deliveryTags = new AtomicLong();
+    private volatile ScheduledExecutorService expiry;
+
+    private LoopbackBroker(String name) {
+        this.name = name;
+    }
+
+    static LoopbackBroker create() {
+        LoopbackBroker broker = new LoopbackBroker(null);
+        broker.references = 1;
+        return broker;
+    }
+
+    static LoopbackBroker acquire(String name) {
+        synchronized (SHARED) {
+            LoopbackBroker broker = SHARED.computeIfAbsent(name, LoopbackBroker::new);
+            broker.references++;
+            return broker;
+        }
+    }
+
+    void release() {
+        synchronized (SHARED) {
+            if (--references > 0) {
+                return;
+            }
+            if (name != null) {
+                SHARED.remove(name, this);
+            }
+        }
+        if (expiry != null) {
+            expiry.shutdownNow();
+        }
+    }
+
+    void declareExchange(String exchangeName) {
+        exchanges.computeIfAbsent(exchangeName, k -> new Exchange());
+    }
+
+    void declareQueue(String queueName, Map<String, Object> arguments) {
+        if (queues.containsKey(queueName)) {
+            return;
+        }
+        Object ttl = arguments.get("x-message-ttl");
+        Object deadLetterExchange = arguments.get("x-dead-letter-exchange");
+        Object deadLetterRoutingKey = arguments.get("x-dead-letter-routing-key");
+        LoopbackQueue queue = new LoopbackQueue(queueName,
+                ttl instanceof Number number ? number.longValue() : -1,
+                deadLetterExchange != null ? deadLetterExchange.toString() : null,
+                deadLetterRoutingKey != null ? deadLetterRoutingKey.toString() : null);
+        if (queues.putIfAbsent(queueName, queue) == null) {
+            exchanges.values().forEach(Exchange::invalidate);
+        }
+    }
+
+    void bind(String exchangeName, String pattern, String queueName) {
+        exchanges.computeIfAbsent(exchangeName, k -> new Exchange()).bind(pattern, queueName);
+    }
+
+    void unbind(String exchangeName, String pattern, String queueName) {
+        Exchange exchange = exchanges.get(exchangeName);
+        if (exchange != null) {
+            exchange.unbind(pattern, queueName);
+        }
+    }
+
+    LoopbackQueue queue(String queueName) {
+        LoopbackQueue queue = queues.get(queueName);
+        if (queue == null) {
+            throw new IllegalStateException("Queue " + queueName + " has not been declared on the loopback broker");
+        }
+        return queue;
+    }
+
+    /**
+     * Route a message to every matching queue; each queue gets its own properties so consumers
+     * can set delivery fields, while the body is shared.
+     *
+     * @return whether any queue received the message
+     */
+    boolean publish(String exchangeName, String routingKey, Message message) {
+        if (exchangeName == null || exchangeName.isEmpty()) {
+            LoopbackQueue queue = queues.get(routingKey);
+            if (queue == null) {
+                return false;
+            }
+            enqueue(queue, "", routingKey, message);
+            return true;
+        }
+        Exchange exchange = exchanges.get(exchangeName);
+        if (exchange == null) {
+            failureLog.warn("exchange:" + exchangeName, "Zula: Loopback exchange {} has not been declared; message dropped", exchangeName);
+            return false;
+        }
+        LoopbackQueue[] targets = exchange.route(routingKey);
+        for (LoopbackQueue queue : targets) {
+            enqueue(queue, exchangeName, routingKey, message);
+        }
+        return targets.length > 0;
+    }
+
+    /**
+     * Put messages whose delivery failed back at the head of their queue, in their original
+     * order, after {@code delayMs}.
+     */
+    void requeue(LoopbackQueue queue, List<Message> messages, long delayMs) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (delayMs <= 0) {
+            queue.addFirst(messages);
+            return;
+        }
+        expiry().schedule(() -> queue.addFirst(messages), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    void deadLetter(LoopbackQueue queue, Message message) {
+        if (queue.deadLetterExchange == null) {
+            log.debug("Zula: Loopback queue {} dropped a rejected message", queue.name);
+            return;
+        }
+        String routingKey = queue.deadLetterRoutingKey != null
+                ? queue.deadLetterRoutingKey
+                : message.getMessageProperties().getReceivedRoutingKey();
+        publish(queue.deadLetterExchange, routingKey, message);
+    }
+
+    private void enqueue(LoopbackQueue queue, String exchangeName, String routingKey, Message message) {
+        MessageProperties properties = MessagePropertiesBuilder.fromClonedProperties(message.getMessageProperties()).build();
+        properties.setReceivedExchange(exchangeName);
+        properties.setReceivedRoutingKey(routingKey);
+        properties.setConsumerQueue(queue.name);
+        properties.setRedelivered(false);
+        queue.addLast(new Message(message.getBody(), properties));
+        if (queue.expires()) {
+            expiry().schedule(() -> expire(queue), queue.ttlMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Dead-letter the expired messages at the head of a TTL queue.
+     */
+    private void expire(LoopbackQueue queue) {
+        long now = System.nanoTime();
+        for (Entry head = queue.entries.peekFirst(); head != null && head.expiresAt - now <= 0; head = queue.entries.peekFirst()) {
+            // a consumer may have taken the head meanwhile; it is then found at once or not at all
+            if (queue.entries.removeFirstOccurrence(head)) {
+                deadLetter(queue, head.message);
+            }
+        }
+    }
+
+    long nextDeliveryTag() {
+        return deliveryTags.incrementAndGet();
+    }
+
+    private ScheduledExecutorService expiry() {
+        ScheduledExecutorService scheduler = expiry;
+        if (scheduler == null) {
+            synchronized (this) {
+                scheduler = expiry;
+                if (scheduler == null) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "zula-loopback-expiry");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    expiry = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    static final class LoopbackQueue {
+        final String name;
+        private final LinkedBlockingDeque<Entry> entries = new LinkedBlockingDeque<>();
+        private final long ttlMs;
+        private final String deadLetterExchange;
+        private final String deadLetterRoutingKey;
+
+        private LoopbackQueue(String name, long ttlMs, String deadLetterExchange, String deadLetterRoutingKey) {
+            this.name = name;
+            this.ttlMs = ttlMs;
+            this.deadLetterExchange = deadLetterExchange;
+            this.deadLetterRoutingKey = deadLetterRoutingKey;
+        }
+
+        Message poll(long timeoutMs) throws InterruptedException {
+            Entry entry = entries.pollFirst(timeoutMs, TimeUnit.MILLISECONDS);
+            return entry != null ? entry.message : null;
+        }
+
+        void drainTo(List<Message> batch, int maxMessages) {
+            for (int i = 0; i < maxMessages; i++) {
+                Entry entry = entries.pollFirst();
+                if (entry == null) {
+                    return;
+                }
+                batch.add(entry.message);
+            }
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        private boolean expires() {
+            return ttlMs >= 0 && deadLetterExchange != null;
+        }
+
+        private void addLast(Message message) {
+            entries.offerLast(new Entry(message, expiresAt()));
+        }
+
+        private void addFirst(List<Message> messages) {
+            long expiresAt = expiresAt();
+            for (int i = messages.size() - 1; i >= 0; i--) {
+                entries.offerFirst(new Entry(messages.get(i), expiresAt));
+            }
+        }
+
+        private long expiresAt() {
+            return expires() ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMs) : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * A queued message and, on TTL queues, the {@link System#nanoTime()} it expires at.
+     */
+    private static final class Entry {
+        private final Message message;
+        private final long expiresAt;
+
+        private Entry(Message message, long expiresAt) {
+            this.message = message;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * A topic exchange: {@code *} matches one dot-separated word, {@code #} zero or more.
+     */
+    private final class Exchange {
+        private final List<Route> routes = new CopyOnWriteArrayList<>();
+        private volatile Map<String, LoopbackQueue[]> cache = new ConcurrentHashMap<>();
+
+        void bind(String pattern, String queueName) {
+            Route route = new Route(pattern, queueName);
+            if (!routes.contains(route)) {
+                routes.add(route);
+                invalidate();
+            }
+        }
+
+        void unbind(String pattern, String queueName) {
+            if (routes.remove(new Route(pattern, queueName))) {
+                invalidate();
+            }
+        }
+
+        void invalidate() {
+            cache = new ConcurrentHashMap<>();
+        }
+
+        LoopbackQueue[] route(String routingKey) {
+            Map<String, LoopbackQueue[]> current = cache;
+            LoopbackQueue[] targets = current.get(routingKey);
+            if (targets == null) {
+                if (current.size() >= MAX_CACHED_ROUTES) {
+                    invalidate();
+                    current = cache;
+                }
+                targets = current.computeIfAbsent(routingKey, this::resolve);
+            }
+            return targets;
+        }
+
+        private LoopbackQueue[] resolve(String routingKey) {
+            String[] words = routingKey.split("\\.", -1);
+            Set<LoopbackQueue> targets = new LinkedHashSet<>();
+            for (Route route : routes) {
+                LoopbackQueue queue = queues.get(route.queueName);
+                if (queue != null && matches(route.words, 0, words, 0)) {
+                    targets.add(queue);
+                }
+            }
+            return targets.toArray(new LoopbackQueue[0]);
+        }
+    }
+
+    private record Route(String pattern, String queueName, String[] words) {
+
+        Route(String pattern, String queueName) {
+            this(pattern, queueName, pattern.split("\\.", -1));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Route route && route.pattern.equals(pattern) && route.queueName.equals(queueName);
+        }
+
+        @Override
+        public int hashCode() {
+            return pattern.hashCode() * 31 + queueName.hashCode();
+        }
+    }
+
+    static boolean matches(String[] pattern, int p, String[] key, int k) {
+        if (p == pattern.length) {
+            return k == key.length;
+        }
+        if (pattern[p].equals("#")) {
+            for (int i = k; i <= key.length; i++) {
+                if (matches(pattern, p + 1, key, i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (k == key.length) {
+            return false;
+        }
+        return (pattern[p].equals("*") || pattern[p].equals(key[k])) && matches(pattern, p + 1, key, k + 1);
+    }
+}
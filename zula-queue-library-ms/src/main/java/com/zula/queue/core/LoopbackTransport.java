@@ -0,0 +1,307 @@
+package com.zula.queue.core;
+
+import com.zula.queue.config.QueueProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.ImmediateAcknowledgeAmqpException;
+import org.springframework.amqp.core.BatchMessageListener;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Exchange;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.context.Lifecycle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * In-memory {@link MessageTransport} ({@code zula.queue.transport=loopback}). Messages are routed
+ * through topic exchanges into in-memory queues and delivered to subscribed listeners on the
+ * transport's own consumer threads, without a broker, a socket or any serialization beyond what
+ * the publisher already does. Every send is confirmed immediately.
+ *
+ * Acks follow the Rabbit container defaults: a message is acked when its listener returns and
+ * requeued (marked redelivered) when it throws, except for
+ * {@link AmqpRejectAndDontRequeueException}, which dead-letters or drops it. As with RabbitMQ, a
+ * requeued message goes back to the head of its queue; it does so after
+ * {@code redelivery-delay-ms}, and like a quorum queue's delivery limit, a message that has been
+ * delivered {@code delivery-limit} times is dead-lettered instead, so a poison message cannot
+ * spin a consumer. Nothing survives a restart, so this is for local runs, integration tests and
+ * measuring the library's own overhead.
+ */
+public class LoopbackTransport implements MessageTransport, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LoopbackTransport.class);
+    private static final RateLimitedLogger failureLog = new RateLimitedLogger(log);
+
+    private static final long POLL_MS = 100;
+    private static final long STOP_TIMEOUT_MS = 5000;
+    /** Delivery count header, as set by RabbitMQ quorum queues. */
+    static final String DELIVERY_COUNT = "x-delivery-count";
+
+    private final LoopbackBroker broker;
+    private final long redeliveryDelayMs;
+    private final int deliveryLimit;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Channel channel = new Channel() {
+        @Override
+        public void send(String exchange, String routingKey, Message message, CorrelationData correlation) {
+            LoopbackTransport.this.send(exchange, routingKey, message, correlation);
+        }
+
+        @Override
+        public boolean waitForConfirms(long timeoutMs) {
+            return true;
+        }
+    };
+
+    /**
+     * A transport with its own broker, not visible to other transports.
+     */
+    public LoopbackTransport() {
+        this(new QueueProperties.Loopback());
+    }
+
+    public LoopbackTransport(QueueProperties.Loopback settings) {
+        this(LoopbackBroker.create(), settings);
+    }
+
+    private LoopbackTransport(LoopbackBroker broker, QueueProperties.Loopback settings) {
+        this.broker = broker;
+        this.redeliveryDelayMs = settings.getRedeliveryDelayMs();
+        this.deliveryLimit = Math.max(1, settings.getDeliveryLimit());
+    }
+
+    /**
+     * A transport on the JVM-wide broker called {@code brokerName}; all transports created with
+     * the same name see the same exchanges and queues.
+     */
+    public static LoopbackTransport shared(String brokerName) {
+        return shared(brokerName, new QueueProperties.Loopback());
+    }
+
+    public static LoopbackTransport shared(String brokerName, QueueProperties.Loopback settings) {
+        return new LoopbackTransport(LoopbackBroker.acquire(brokerName), settings);
+    }
+
+    @Override
+    public Confirms getConfirms() {
+        return Confirms.CORRELATED;
+    }
+
+    @Override
+    public void send(String exchange, String routingKey, Message message, CorrelationData correlation) {
+        if (!broker.publish(exchange, routingKey, message)) {
+            log.debug("Zula: No loopback queue bound to {} for routing key {}", exchange, routingKey);
+        }
+        if (correlation != null) {
+            correlation.getFuture().complete(new CorrelationData.Confirm(true, null));
+        }
+    }
+
+    @Override
+    public <T> T invoke(Function<Channel, T> action) {
+        return action.apply(channel);
+    }
+
+    @Override
+    public void declareExchange(Exchange exchange) {
+        broker.declareExchange(exchange.getName());
+    }
+
+    @Override
+    public void declareQueue(Queue queue) {
+        broker.declareQueue(queue.getName(), queue.getArguments());
+    }
+
+    @Override
+    public void declareBinding(Binding binding) {
+        if (!binding.isDestinationQueue()) {
+            throw new IllegalArgumentException("The loopback transport only binds queues, not exchange " + binding.getDestination());
+        }
+        broker.bind(binding.getExchange(), binding.getRoutingKey(), binding.getDestination());
+    }
+
+    @Override
+    public void removeBinding(Binding binding) {
+        broker.unbind(binding.getExchange(), binding.getRoutingKey(), binding.getDestination());
+    }
+
+    @Override
+    public void onReconnect(Runnable action) {
+        // never disconnects
+    }
+
+    @Override
+    public Lifecycle subscribe(String queueName, MessageListener listener, int consumers) {
+        LoopbackBroker.LoopbackQueue queue = broker.queue(queueName);
+        return start(new Subscription(queue, consumers, () -> {
+            Message message = poll(queue);
+            if (message != null) {
+                deliver(queue, List.of(message), batch -> listener.onMessage(batch.get(0)));
+            }
+        }));
+    }
+
+    @Override
+    public Lifecycle subscribeBatch(String queueName, BatchMessageListener listener, int consumers, int batchSize) {
+        LoopbackBroker.LoopbackQueue queue = broker.queue(queueName);
+        return start(new Subscription(queue, consumers, () -> {
+            Message first = poll(queue);
+            if (first != null) {
+                List<Message> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                deliver(queue, batch, listener::onMessageBatch);
+            }
+        }));
+    }
+
+    /**
+     * Number of messages waiting in a queue, not counting requeued messages still in their
+     * redelivery delay.
+     */
+    public int getMessageCount(String queueName) {
+        return broker.queue(queueName).size();
+    }
+
+    /**
+     * Stop this transport's consumers and release the broker.
+     */
+    @Override
+    public void close() {
+        subscriptions.forEach(Subscription::stop);
+        subscriptions.clear();
+        broker.release();
+    }
+
+    private Lifecycle start(Subscription subscription) {
+        subscriptions.add(subscription);
+        subscription.start();
+        return subscription;
+    }
+
+    private static Message poll(LoopbackBroker.LoopbackQueue queue) {
+        try {
+            return queue.poll(POLL_MS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void deliver(LoopbackBroker.LoopbackQueue queue, List<Message> messages, Consumer<List<Message>> listener) {
+        for (Message message : messages) {
+            message.getMessageProperties().setDeliveryTag(broker.nextDeliveryTag());
+        }
+        try {
+            listener.accept(messages);
+        } catch (RuntimeException ex) {
+            if (causedBy(ex, ImmediateAcknowledgeAmqpException.class)) {
+                return;
+            }
+            if (causedBy(ex, AmqpRejectAndDontRequeueException.class)) {
+                messages.forEach(message -> broker.deadLetter(queue, message));
+                return;
+            }
+            failureLog.warn("requeue:" + queue.name, "Zula: Loopback listener for {} failed, requeueing {} message(s) - {}",
+                    queue.name, messages.size(), ex.toString());
+            List<Message> requeue = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                MessageProperties properties = message.getMessageProperties();
+                Object count = properties.getHeader(DELIVERY_COUNT);
+                long deliveries = (count instanceof Number number ? number.longValue() : 0) + 1;
+                properties.setHeader(DELIVERY_COUNT, deliveries);
+                properties.setRedelivered(true);
+                if (deliveries >= deliveryLimit) {
+                    failureLog.warn("limit:" + queue.name, "Zula: Loopback message on {} reached the delivery limit of {}; dead-lettering it",
+                            queue.name, deliveryLimit);
+                    broker.deadLetter(queue, message);
+                } else {
+                    requeue.add(message);
+                }
+            }
+            broker.requeue(queue, requeue, redeliveryDelayMs);
+        }
+    }
+
+    private static boolean causedBy(Throwable ex, Class<? extends Throwable> type) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Subscription implements Lifecycle {
+        private final LoopbackBroker.LoopbackQueue queue;
+        private final int consumers;
+        private final Runnable receive;
+        private final List<Thread> threads = new ArrayList<>();
+        // each start() gets its own token, so consumers of an earlier start never resume
+        private volatile AtomicBoolean active = new AtomicBoolean();
+
+        private Subscription(LoopbackBroker.LoopbackQueue queue, int consumers, Runnable receive) {
+            this.queue = queue;
+            this.consumers = Math.max(1, consumers);
+            this.receive = receive;
+        }
+
+        @Override
+        public synchronized void start() {
+            if (active.get()) {
+                return;
+            }
+            AtomicBoolean token = new AtomicBoolean(true);
+            active = token;
+            threads.clear();
+            for (int i = 0; i < consumers; i++) {
+                Thread thread = new Thread(() -> {
+                    while (token.get() && !Thread.currentThread().isInterrupted()) {
+                        receive.run();
+                    }
+                }, "zula-loopback-" + queue.name + "-" + i);
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+        }
+
+        /**
+         * Consumers finish the delivery they are in and exit within one poll interval; this waits
+         * for them (up to {@code STOP_TIMEOUT_MS}), unless called from one of them.
+         */
+        @Override
+        public synchronized void stop() {
+            active.set(false);
+            for (Thread thread : threads) {
+                if (thread == Thread.currentThread()) {
+                    continue;
+                }
+                try {
+                    thread.join(STOP_TIMEOUT_MS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (thread.isAlive()) {
+                    log.warn("Zula: Loopback consumer {} did not finish its delivery within {} ms", thread.getName(), STOP_TIMEOUT_MS);
+                }
+            }
+        }
+
+        @Override
+        public boolean isRunning() {
+            return active.get();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.zula.queue.core;
+
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.io.IOException;
+
+/**
+ * LZ4 block helpers for {@link PayloadCompression}, kept in their own class so lz4-java is
+ * only loaded when an LZ4 body is actually produced or received.
+ */
+final class Lz4Blocks {
+
+    private static final int LENGTH_PREFIX = 4;
+    private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+
+    private Lz4Blocks() {
+    }
+
+    static int maxCompressedLength(int length) {
+        return LENGTH_PREFIX + FACTORY.fastCompressor().maxCompressedLength(length);
+    }
+
+    /**
+     * Write the length prefix and compressed block into {@code dest}, which must hold
+     * {@link #maxCompressedLength(int)} bytes, and return the number of bytes written.
+     */
+    static int compress(byte[] body, byte[] dest) {
+        int length = body.length;
+        dest[0] = (byte) (length >>> 24);
+        dest[1] = (byte) (length >>> 16);
+        dest[2] = (byte) (length >>> 8);
+        dest[3] = (byte) length;
+        return LENGTH_PREFIX + FACTORY.fastCompressor().compress(body, 0, length, dest, LENGTH_PREFIX, dest.length - LENGTH_PREFIX);
+    }
+
+    /**
+     * Decompress a body whose length prefix is at most {@code maxLength}; the prefix is checked
+     * before anything is allocated.
+     */
+    static byte[] decompress(byte[] body, int maxLength) throws IOException {
+        if (body.length < LENGTH_PREFIX) {
+            throw new IOException("Body is not in LZ4 block format");
+        }
+        int length = (body[0] & 0xff) << 24 | (body[1] & 0xff) << 16 | (body[2] & 0xff) << 8 | (body[3] & 0xff);
+        if (length < 0) {
+            throw new IOException("Invalid LZ4 length prefix " + length);
+        }
+        if (length > maxLength) {
+            throw new IOException("LZ4 body declares " + length + " bytes, more than the " + maxLength + " allowed");
+        }
+        byte[] out = new byte[length];
+        try {
+            int written = FACTORY.safeDecompressor().decompress(body, LENGTH_PREFIX, body.length - LENGTH_PREFIX, out, 0, length);
+            if (written != length) {
+                throw new IOException("LZ4 body decompressed to " + written + " bytes, expected " + length);
+            }
+            return out;
+        } catch (LZ4Exception ex) {
+            throw new IOException("Corrupt LZ4 body", ex);
+        }
+    }
+}
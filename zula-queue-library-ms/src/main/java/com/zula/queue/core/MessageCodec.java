@@ -0,0 +1,32 @@
+package com.zula.queue.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Encodes message objects to AMQP bodies and back. The codec's content type is written to
+ * every published message so consumers can pick the matching codec from
+ * {@link MessageCodecRegistry} without any configuration of their own.
+ *
+ * Declare a {@code MessageCodec} bean to add a codec next to the built-in JSON, Smile and CBOR ones.
+ */
+public interface MessageCodec {
+
+    /** Name used in {@link ZulaPublish#codec()} and {@code zula.queue.codec.*}, e.g. "smile". */
+    String getName();
+
+    /** MIME type recorded in the AMQP content-type property. */
+    String getContentType();
+
+    byte[] encode(Object message) throws IOException;
+
+    <T> T decode(byte[] body, Class<T> type) throws IOException;
+
+    /**
+     * Decode from a stream, e.g. a claim-checked body read back from a {@link PayloadStore}.
+     * Override to avoid buffering the whole body first.
+     */
+    default <T> T decode(InputStream body, Class<T> type) throws IOException {
+        return decode(body.readAllBytes(), type);
+    }
+}
@@ -0,0 +1,147 @@
+package com.zula.queue.core;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zula.queue.config.QueueProperties;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Known {@link MessageCodec}s, looked up by name on the publish side and by content type on
+ * the consume side, plus the {@link PayloadCompression} applied to encoded bodies. JSON is
+ * always available; Smile and CBOR are registered when jackson-dataformat-smile /
+ * jackson-dataformat-cbor are on the classpath.
+ *
+ * Publishers pick a codec from {@code zula.queue.codec.types.<message-type>}, then
+ * {@link ZulaPublish#codec()}, then {@code zula.queue.codec.default-codec}. Consumers decode
+ * whatever the content type says and fall back to JSON for messages without one, so
+ * producers and consumers can be upgraded independently.
+ */
+public class MessageCodecRegistry {
+
+    public static final String JSON = "json";
+    public static final String SMILE = "smile";
+    public static final String CBOR = "cbor";
+
+    private final Map<String, MessageCodec> byName = new ConcurrentHashMap<>();
+    private final Map<String, MessageCodec> byContentType = new ConcurrentHashMap<>();
+    private final MessageCodec json;
+    private final QueueProperties.Codec settings;
+    private final PayloadCompression compression;
+
+    public MessageCodecRegistry(ObjectMapper objectMapper, QueueProperties properties) {
+        this(objectMapper, properties, List.of());
+    }
+
+    public MessageCodecRegistry(ObjectMapper objectMapper, QueueProperties properties, Collection<MessageCodec> customCodecs) {
+        this.settings = properties.getCodec();
+        this.compression = new PayloadCompression(properties.getCompression());
+        this.json = new JacksonMessageCodec(JSON, "application/json", objectMapper);
+        register(json);
+        registerJackson(SMILE, "application/x-jackson-smile", "com.fasterxml.jackson.dataformat.smile.SmileFactory", objectMapper);
+        registerJackson(CBOR, "application/cbor", "com.fasterxml.jackson.dataformat.cbor.CBORFactory", objectMapper);
+        customCodecs.forEach(this::register);
+        checkConfigured("zula.queue.codec.default-codec", settings.getDefaultCodec());
+        settings.getTypes().forEach((type, name) -> checkConfigured("zula.queue.codec.types." + type, name));
+    }
+
+    public void register(MessageCodec codec) {
+        byName.put(codec.getName().toLowerCase(Locale.ROOT), codec);
+        byContentType.put(codec.getContentType().toLowerCase(Locale.ROOT), codec);
+    }
+
+    public MessageCodec getJson() {
+        return json;
+    }
+
+    public PayloadCompression getCompression() {
+        return compression;
+    }
+
+    public MessageCodec getByName(String name) {
+        MessageCodec codec = byName.get(name.toLowerCase(Locale.ROOT));
+        if (codec == null) {
+            throw new IllegalStateException("Unknown message codec '" + name + "'; registered codecs: " + byName.keySet());
+        }
+        return codec;
+    }
+
+    /**
+     * Codec to publish a message with.
+     */
+    public MessageCodec forPublish(MessageDescriptor descriptor, String messageType) {
+        String name = settings.getTypes().get(messageType);
+        if (!StringUtils.hasText(name)) {
+            name = descriptor.getCodec();
+        }
+        if (!StringUtils.hasText(name)) {
+            name = settings.getDefaultCodec();
+        }
+        return !StringUtils.hasText(name) || JSON.equalsIgnoreCase(name) ? json : getByName(name);
+    }
+
+    /**
+     * Codec for a received content type; JSON when the type is missing or unknown.
+     */
+    public MessageCodec forContentType(String contentType) {
+        if (contentType == null) {
+            return json;
+        }
+        int params = contentType.indexOf(';');
+        String mimeType = (params >= 0 ? contentType.substring(0, params) : contentType).trim().toLowerCase(Locale.ROOT);
+        return byContentType.getOrDefault(mimeType, json);
+    }
+
+    /**
+     * JSON bytes for the outbox and inbox payload columns, reusing {@code body} when it already is JSON.
+     */
+    public byte[] toJson(MessageCodec codec, byte[] body, Object message) throws IOException {
+        return codec == json ? body : json.encode(message);
+    }
+
+    /**
+     * Bytes for the outbox and inbox payload columns. A compressed JSON body is stored as is (see
+     * {@link PayloadCompression#toStoredPayload}) when {@code store-compressed} is on; anything
+     * else is stored as JSON text.
+     *
+     * @param algorithm compression algorithm of {@code compressed}, or null if the body was not compressed
+     */
+    public byte[] toStoredPayload(MessageCodec codec, byte[] body, Object message, String algorithm, byte[] compressed) throws IOException {
+        if (algorithm != null && codec == json && compression.isStoreCompressed()) {
+            return PayloadCompression.toStoredPayload(algorithm, compressed).getBytes(StandardCharsets.US_ASCII);
+        }
+        return toJson(codec, body, message);
+    }
+
+    /**
+     * Fail at startup, rather than on the first publish, when a configured codec is not registered,
+     * e.g. {@code smile} without jackson-dataformat-smile on the classpath.
+     */
+    private void checkConfigured(String property, String name) {
+        if (StringUtils.hasText(name) && !byName.containsKey(name.toLowerCase(Locale.ROOT))) {
+            String hint = SMILE.equalsIgnoreCase(name) || CBOR.equalsIgnoreCase(name)
+                    ? "; add com.fasterxml.jackson.dataformat:jackson-dataformat-" + name.toLowerCase(Locale.ROOT) + " to the classpath"
+                    : "";
+            throw new IllegalStateException(property + " names unknown message codec '" + name
+                    + "'; registered codecs: " + byName.keySet() + hint);
+        }
+    }
+
+    private void registerJackson(String name, String contentType, String factoryClass, ObjectMapper objectMapper) {
+        ClassLoader classLoader = getClass().getClassLoader();
+        if (!ClassUtils.isPresent(factoryClass, classLoader)) {
+            return;
+        }
+        JsonFactory factory = (JsonFactory) BeanUtils.instantiateClass(ClassUtils.resolveClassName(factoryClass, classLoader));
+        register(new JacksonMessageCodec(name, contentType, objectMapper.copyWith(factory)));
+    }
+}
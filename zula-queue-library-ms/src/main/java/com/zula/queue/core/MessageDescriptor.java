@@ -0,0 +1,306 @@
+package com.zula.queue.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Everything the library needs to know about a message class, resolved once per class
+ * and cached in a {@link ClassValue}: the message type, the {@link ZulaPublish} defaults
+ * and fast request-id and partition-key accessors. Publishers, registries, consumers and the queue
+ * initializer all go through this instead of reading annotations and reflecting per call.
+ */
+public final class MessageDescriptor {
+
+    private static final String DEFAULT_ACTION = "process";
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, String.class);
+
+    /** Partition key property per message type, for callers that only have the JSON payload. */
+    private static final Map<String, String> PARTITION_KEY_PROPERTIES = new ConcurrentHashMap<>();
+
+    private static final ClassValue<MessageDescriptor> DESCRIPTORS = new ClassValue<>() {
+        @Override
+        protected MessageDescriptor computeValue(Class<?> type) {
+            return new MessageDescriptor(type);
+        }
+    };
+
+    private final Class<?> messageClass;
+    private final String messageType;
+    private final String publishService;
+    private final String publishAction;
+    private final String codec;
+    private final MethodHandle requestIdGetter;
+    private final MethodHandle requestIdSetter;
+    private final String partitionKeyProperty;
+    private final MethodHandle partitionKeyGetter;
+    private volatile Routing routing;
+
+    private MessageDescriptor(Class<?> messageClass) {
+        this.messageClass = messageClass;
+        this.messageType = resolveMessageType(messageClass);
+        ZulaPublish publish = messageClass.getAnnotation(ZulaPublish.class);
+        this.publishService = publish != null ? publish.service() : null;
+        this.publishAction = publish != null ? publish.action() : DEFAULT_ACTION;
+        this.codec = publish != null && !publish.codec().isEmpty() ? publish.codec() : null;
+        this.requestIdGetter = resolveRequestIdGetter(messageClass);
+        this.requestIdSetter = resolveRequestIdSetter(messageClass);
+        Object partitionKeyMember = resolvePartitionKeyMember(messageClass);
+        this.partitionKeyProperty = partitionKeyMember != null ? propertyName(partitionKeyMember) : null;
+        this.partitionKeyGetter = partitionKeyMember != null ? getterFor(partitionKeyMember) : null;
+        if (partitionKeyProperty != null) {
+            PARTITION_KEY_PROPERTIES.put(messageType, partitionKeyProperty);
+        }
+    }
+
+    public static MessageDescriptor of(Class<?> messageClass) {
+        return DESCRIPTORS.get(messageClass);
+    }
+
+    /**
+     * Derive a message type from a simple class name by dropping a trailing
+     * "Command" or "Message" and lower-casing the rest.
+     */
+    public static String messageTypeFromName(String simpleName) {
+        if (simpleName.endsWith("Command")) {
+            return simpleName.substring(0, simpleName.length() - "Command".length()).toLowerCase();
+        }
+        if (simpleName.endsWith("Message")) {
+            return simpleName.substring(0, simpleName.length() - "Message".length()).toLowerCase();
+        }
+        return simpleName.toLowerCase();
+    }
+
+    public Class<?> getMessageClass() {
+        return messageClass;
+    }
+
+    public String getMessageType() {
+        return messageType;
+    }
+
+    /** Target service from {@link ZulaPublish}, or null when the class is not annotated. */
+    public String getPublishService() {
+        return publishService;
+    }
+
+    public String getPublishAction() {
+        return publishAction;
+    }
+
+    /** Codec name from {@link ZulaPublish#codec()}, or null when not set. */
+    public String getCodec() {
+        return codec;
+    }
+
+    public String getExchangeName(QueueManager queueManager) {
+        return routing(queueManager).exchangeName;
+    }
+
+    public String getRoutingKey(QueueManager queueManager, String serviceName, String action) {
+        if (publishAction.equalsIgnoreCase(action) && serviceName.equalsIgnoreCase(publishService)) {
+            return routing(queueManager).defaultRoutingKey;
+        }
+        return queueManager.routingKey(messageType, serviceName, action);
+    }
+
+    /**
+     * Read the message's {@link ZulaPartitionKey} value as a string.
+     *
+     * @return the key, or null if the class has no partition key or the value is null
+     */
+    public String getPartitionKey(Object message) {
+        if (partitionKeyGetter == null || message == null) {
+            return null;
+        }
+        try {
+            Object value = partitionKeyGetter.invokeExact(message);
+            return value != null ? value.toString() : null;
+        } catch (Throwable ex) {
+            return null;
+        }
+    }
+
+    /**
+     * JSON property holding the partition key of a message type whose class has been seen,
+     * e.g. by the queue initializer or a publisher; null otherwise.
+     */
+    public static String partitionKeyProperty(String messageType) {
+        return PARTITION_KEY_PROPERTIES.get(messageType);
+    }
+
+    /**
+     * Read the message's request id via {@code getRequestId()} or a {@code requestId} field.
+     *
+     * @return the id, or null if the class has neither or the value is blank
+     */
+    public String getRequestId(Object message) {
+        if (requestIdGetter == null || message == null) {
+            return null;
+        }
+        try {
+            Object value = requestIdGetter.invokeExact(message);
+            if (value == null) {
+                return null;
+            }
+            String id = value.toString();
+            return id.isBlank() ? null : id;
+        } catch (Throwable ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Write a request id via {@code setRequestId(String)} or a String {@code requestId} field.
+     *
+     * @return true if the id was written
+     */
+    public boolean setRequestId(Object message, String requestId) {
+        if (requestIdSetter == null || message == null) {
+            return false;
+        }
+        try {
+            requestIdSetter.invokeExact(message, requestId);
+            return true;
+        } catch (Throwable ex) {
+            return false;
+        }
+    }
+
+    private Routing routing(QueueManager queueManager) {
+        Routing current = routing;
+        if (current == null || current.owner != queueManager) {
+            current = new Routing(queueManager,
+                    queueManager.generateExchangeName(messageType),
+                    publishService != null ? queueManager.routingKey(messageType, publishService, publishAction) : null);
+            routing = current;
+        }
+        return current;
+    }
+
+    private static String resolveMessageType(Class<?> clazz) {
+        ZulaCommand command = clazz.getAnnotation(ZulaCommand.class);
+        if (command != null && !command.commandType().isEmpty()) {
+            return command.commandType().toLowerCase();
+        }
+        ZulaMessage message = clazz.getAnnotation(ZulaMessage.class);
+        if (message != null && !message.messageType().isEmpty()) {
+            return message.messageType().toLowerCase();
+        }
+        return messageTypeFromName(clazz.getSimpleName());
+    }
+
+    private static MethodHandle resolveRequestIdGetter(Class<?> clazz) {
+        try {
+            Method getter = clazz.getMethod("getRequestId");
+            getter.trySetAccessible();
+            return MethodHandles.lookup().unreflect(getter).asType(GETTER_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException ignored) { }
+        Field field = requestIdField(clazz);
+        if (field == null) {
+            return null;
+        }
+        try {
+            return MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+        } catch (IllegalAccessException ignored) {
+            return null;
+        }
+    }
+
+    private static MethodHandle resolveRequestIdSetter(Class<?> clazz) {
+        try {
+            Method setter = clazz.getMethod("setRequestId", String.class);
+            setter.trySetAccessible();
+            return MethodHandles.lookup().unreflect(setter).asType(SETTER_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException ignored) { }
+        Field field = requestIdField(clazz);
+        if (field == null || field.getType() != String.class || Modifier.isFinal(field.getModifiers())) {
+            return null;
+        }
+        try {
+            return MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+        } catch (IllegalAccessException ignored) {
+            return null;
+        }
+    }
+
+    private static Object resolvePartitionKeyMember(Class<?> clazz) {
+        for (Method method : clazz.getMethods()) {
+            if (method.isAnnotationPresent(ZulaPartitionKey.class) && method.getParameterCount() == 0
+                    && method.getReturnType() != void.class && !Modifier.isStatic(method.getModifiers())) {
+                return method;
+            }
+        }
+        for (Class<?> type = clazz; type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (field.isAnnotationPresent(ZulaPartitionKey.class) && !Modifier.isStatic(field.getModifiers())) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * JSON name of a member: its {@link JsonProperty} name, otherwise the field or bean property name.
+     */
+    private static String propertyName(Object member) {
+        JsonProperty json = ((AnnotatedElement) member).getAnnotation(JsonProperty.class);
+        if (json != null && !json.value().isEmpty()) {
+            return json.value();
+        }
+        if (member instanceof Field field) {
+            return field.getName();
+        }
+        String name = ((Method) member).getName();
+        for (String prefix : new String[]{"get", "is"}) {
+            if (name.length() > prefix.length() && name.startsWith(prefix)) {
+                return Character.toLowerCase(name.charAt(prefix.length())) + name.substring(prefix.length() + 1);
+            }
+        }
+        return name;
+    }
+
+    private static MethodHandle getterFor(Object member) {
+        try {
+            if (member instanceof Field field) {
+                return field.trySetAccessible() ? MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE) : null;
+            }
+            Method method = (Method) member;
+            method.trySetAccessible();
+            return MethodHandles.lookup().unreflect(method).asType(GETTER_TYPE);
+        } catch (IllegalAccessException | SecurityException ex) {
+            return null;
+        }
+    }
+
+    private static Field requestIdField(Class<?> clazz) {
+        try {
+            Field field = clazz.getDeclaredField("requestId");
+            return !Modifier.isStatic(field.getModifiers()) && field.trySetAccessible() ? field : null;
+        } catch (NoSuchFieldException | SecurityException ignored) {
+            return null;
+        }
+    }
+
+    private static final class Routing {
+        private final QueueManager owner;
+        private final String exchangeName;
+        private final String defaultRoutingKey;
+
+        private Routing(QueueManager owner, String exchangeName, String defaultRoutingKey) {
+            this.owner = owner;
+            this.exchangeName = exchangeName;
+            this.defaultRoutingKey = defaultRoutingKey;
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package com.zula.queue.core;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.zula.queue.core.ZulaCommand;
-import org.springframework.amqp.core.Message;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
-import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 
-import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 /**
@@ -32,32 +39,93 @@ import java.util.function.Consumer;
  *       void handleResponse(AuthResponseMessage msg) { ... }
  *   }
  * </pre>
+ *
+ * Each message type is consumed once per service: handlers registered for a type that already
+ * has one join its {@link HandlerGroup}, and every delivery is decoded once and passed to all of
+ * them ({@code zula.queue.listener.parallel-fan-out} runs them in parallel). The delivery is
+ * acked once all handlers have succeeded; if one fails, the others still run and the delivery as
+ * a whole is retried, or rejected when no {@link DeliveryRetryHandler} is configured.
  */
 @Component
 public class MessageHandlerRegistry {
 
+    private static final Logger log = LoggerFactory.getLogger(MessageHandlerRegistry.class);
+
     private final QueueManager queueManager;
     private final ConnectionFactory connectionFactory;
-    private final ObjectMapper objectMapper;
+    private final MessageCodecRegistry codecs;
+    private final PayloadClaimCheck claimCheck;
+    private final DeliveryRetryHandler retryHandler;
     private final org.springframework.core.env.Environment environment;
     private final QueuePersistenceService queuePersistenceService;
+    private final QueueListenerContainerFactory containerFactory;
+    private final Map<String, HandlerGroup<?>> groups = new ConcurrentHashMap<>();
+    private volatile ExecutorService fanOutExecutor;
+
+    @org.springframework.beans.factory.annotation.Autowired(required = false)
+    private QueueMetrics metrics = QueueMetrics.NOOP;
+
+    public MessageHandlerRegistry(QueueManager queueManager,
+                                  ConnectionFactory connectionFactory,
+                                  ObjectMapper objectMapper,
+                                  org.springframework.core.env.Environment environment,
+                                  QueuePersistenceService queuePersistenceService) {
+        this(queueManager, connectionFactory, objectMapper, environment, queuePersistenceService,
+                new QueueListenerContainerFactory(connectionFactory, queueManager.getProperties(), queueManager.getTransport()));
+    }
 
     public MessageHandlerRegistry(QueueManager queueManager,
                                   ConnectionFactory connectionFactory,
                                   ObjectMapper objectMapper,
                                   org.springframework.core.env.Environment environment,
-                                  @org.springframework.beans.factory.annotation.Autowired(required = false) QueuePersistenceService queuePersistenceService) {
+                                  QueuePersistenceService queuePersistenceService,
+                                  QueueListenerContainerFactory containerFactory) {
+        this(queueManager, connectionFactory, environment, queuePersistenceService, containerFactory,
+                new MessageCodecRegistry(objectMapper != null ? objectMapper : new ObjectMapper(), queueManager.getProperties()));
+    }
+
+    public MessageHandlerRegistry(QueueManager queueManager,
+                                  ConnectionFactory connectionFactory,
+                                  org.springframework.core.env.Environment environment,
+                                  QueuePersistenceService queuePersistenceService,
+                                  QueueListenerContainerFactory containerFactory,
+                                  MessageCodecRegistry codecs) {
+        this(queueManager, connectionFactory, environment, queuePersistenceService, containerFactory, codecs, null);
+    }
+
+    public MessageHandlerRegistry(QueueManager queueManager,
+                                  ConnectionFactory connectionFactory,
+                                  org.springframework.core.env.Environment environment,
+                                  QueuePersistenceService queuePersistenceService,
+                                  QueueListenerContainerFactory containerFactory,
+                                  MessageCodecRegistry codecs,
+                                  PayloadClaimCheck claimCheck) {
+        this(queueManager, connectionFactory, environment, queuePersistenceService, containerFactory, codecs, claimCheck, null);
+    }
+
+    @org.springframework.beans.factory.annotation.Autowired
+    public MessageHandlerRegistry(QueueManager queueManager,
+                                  ConnectionFactory connectionFactory,
+                                  org.springframework.core.env.Environment environment,
+                                  @org.springframework.beans.factory.annotation.Autowired(required = false) QueuePersistenceService queuePersistenceService,
+                                  QueueListenerContainerFactory containerFactory,
+                                  MessageCodecRegistry codecs,
+                                  @org.springframework.beans.factory.annotation.Autowired(required = false) PayloadClaimCheck claimCheck,
+                                  @org.springframework.beans.factory.annotation.Autowired(required = false) DeliveryRetryHandler retryHandler) {
         this.queueManager = queueManager;
         this.connectionFactory = connectionFactory;
-        this.objectMapper = objectMapper != null ? objectMapper : new ObjectMapper();
         this.environment = environment;
         this.queuePersistenceService = queuePersistenceService;
+        this.containerFactory = containerFactory;
+        this.codecs = codecs;
+        this.claimCheck = claimCheck;
+        this.retryHandler = retryHandler;
     }
 
     public <T> void register(Class<T> messageClass, Consumer<T> handler) {
         Assert.notNull(messageClass, "messageClass must not be null");
         Assert.notNull(handler, "handler must not be null");
-        String messageType = deriveMessageType(messageClass);
+        String messageType = MessageDescriptor.of(messageClass).getMessageType();
         register(messageType, messageClass, handler);
     }
 
@@ -66,85 +134,107 @@ public class MessageHandlerRegistry {
         Assert.notNull(messageClass, "messageClass must not be null");
         Assert.notNull(handler, "handler must not be null");
 
+        HandlerGroup<T> group = joinGroup(messageType, messageType, messageClass, handler);
+        if (group.size() > 1) {
+            log.info("Zula: added handler {} for {}", group.size(), messageType);
+            return;
+        }
         String serviceName = environment.getProperty("spring.application.name", "unknown-service");
-        String queueName = queueManager.generateQueueName(serviceName, messageType);
 
         queueManager.createServiceQueue(serviceName, messageType);
-        System.out.println("Zula: registering handler for " + queueName);
-
-        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(connectionFactory);
-        container.setQueueNames(queueName);
-        container.setMessageListener((Message message) -> {
-            try {
-                byte[] body = message.getBody();
-                String rawPayload = new String(body, StandardCharsets.UTF_8);
-                T obj = objectMapper.readValue(body, messageClass);
-                String messageId = MessageMetadataHelper.extractMessageId(message, obj);
-                String sourceService = MessageMetadataHelper.extractSourceService(message);
-                recordInbox(messageId, messageType, sourceService, rawPayload);
-                handler.accept(obj);
-                markInboxProcessed(messageId);
-            } catch (Exception ex) {
-                System.err.println("Zula: Error processing message for " + queueName);
-                ex.printStackTrace();
-                String raw = new String(message.getBody(), StandardCharsets.UTF_8);
-                System.err.println("Raw message: " + raw);
+        for (String queueName : queueManager.getQueueNames(serviceName, messageType)) {
+            log.info("Zula: registering handler for {}", queueName);
+            if (retryHandler != null) {
+                retryHandler.declareQueues(queueName);
             }
-        });
-        container.start();
+            containerFactory.startContainer(queueName, messageType, new InboundMessageListener<>(
+                    queueName, messageType, messageClass, codecs, claimCheck, group, queuePersistenceService, retryHandler, metrics,
+                    queueManager.getProperties().getLogging()));
+        }
     }
 
-    private String deriveMessageType(String className) {
-        try {
-            Class<?> clazz = Class.forName(className);
-            return deriveMessageType(clazz);
-        } catch (ClassNotFoundException e) {
-            // fall through
-        }
-        if (className.endsWith("Message")) {
-            return className.substring(0, className.length() - 7).toLowerCase();
-        }
-        return className.toLowerCase();
+    /**
+     * Register a handler that receives messages in batches (see
+     * {@link QueueListenerContainerFactory#startBatchContainer}).
+     */
+    public <T> void registerBatch(Class<T> messageClass, Consumer<List<T>> handler) {
+        Assert.notNull(messageClass, "messageClass must not be null");
+        registerBatch(MessageDescriptor.of(messageClass).getMessageType(), messageClass, handler);
     }
 
-    private String deriveMessageType(Class<?> clazz) {
-        ZulaCommand commandAnnotation = clazz.getAnnotation(ZulaCommand.class);
-        if (commandAnnotation != null && !commandAnnotation.commandType().isEmpty()) {
-            return commandAnnotation.commandType().toLowerCase();
-        }
-        ZulaMessage annotation = clazz.getAnnotation(ZulaMessage.class);
-        if (annotation != null && !annotation.messageType().isEmpty()) {
-            return annotation.messageType().toLowerCase();
+    public <T> void registerBatch(String messageType, Class<T> messageClass, Consumer<List<T>> handler) {
+        Assert.hasText(messageType, "messageType must not be empty");
+        Assert.notNull(messageClass, "messageClass must not be null");
+        Assert.notNull(handler, "handler must not be null");
+
+        HandlerGroup<List<T>> group = joinGroup("batch:" + messageType, messageType, messageClass, handler);
+        if (group.size() > 1) {
+            log.info("Zula: added batch handler {} for {}", group.size(), messageType);
+            return;
         }
-        String simpleName = clazz.getSimpleName();
-        if (simpleName.endsWith("Command")) {
-            return simpleName.substring(0, simpleName.length() - "Command".length()).toLowerCase();
+        String serviceName = environment.getProperty("spring.application.name", "unknown-service");
+
+        queueManager.createServiceQueue(serviceName, messageType);
+        for (String queueName : queueManager.getQueueNames(serviceName, messageType)) {
+            log.info("Zula: registering batch handler for {}", queueName);
+            if (retryHandler != null) {
+                retryHandler.declareQueues(queueName);
+            }
+            containerFactory.startBatchContainer(queueName, messageType, new InboundBatchListener<>(
+                    queueName, messageType, messageClass, codecs, claimCheck, group, queuePersistenceService, retryHandler, metrics,
+                    queueManager.getProperties().getLogging()));
         }
-        if (simpleName.endsWith("Message")) {
-            return simpleName.substring(0, simpleName.length() - 7).toLowerCase();
+    }
+
+    /**
+     * Add a handler to the group for {@code key}, creating the group on first registration.
+     * All handlers of a group must take the same message class, since deliveries are decoded once.
+     */
+    @SuppressWarnings("unchecked")
+    private <H> HandlerGroup<H> joinGroup(String key, String messageType, Class<?> messageClass, Consumer<H> handler) {
+        synchronized (groups) {
+            HandlerGroup<H> group = (HandlerGroup<H>) groups.computeIfAbsent(key,
+                    k -> new HandlerGroup<>(messageClass, fanOutExecutor()));
+            if (group.getMessageClass() != messageClass) {
+                throw new IllegalStateException("Handlers for message type " + messageType + " must all take "
+                        + group.getMessageClass().getName() + ", not " + messageClass.getName());
+            }
+            group.add(handler);
+            if (group.size() == 2 && retryHandler == null) {
+                log.warn("Zula: Several handlers share {} but zula.queue.retry is not enabled; "
+                        + "a failure in one handler rejects the message for all of them", messageType);
+            }
+            return group;
         }
-        return simpleName.toLowerCase();
     }
 
-    private void recordInbox(String messageId, String messageType, String sourceService, String payload) {
-        if (queuePersistenceService == null) {
-            return;
+    private ExecutorService fanOutExecutor() {
+        if (!containerFactory.getListenerSettings().isParallelFanOut()) {
+            return null;
         }
-        try {
-            queuePersistenceService.recordInboxReceived(messageId, messageType, sourceService, payload);
-        } catch (Exception ex) {
-            System.out.println("Zula: Could not persist inbox message " + messageId + " - " + ex.getMessage());
+        if (fanOutExecutor == null) {
+            // bounded: when every thread is busy and the queue is full, the listener thread runs the handler itself
+            com.zula.queue.config.QueueProperties.Listener settings = containerFactory.getListenerSettings();
+            int size = Math.max(1, settings.getFanOutThreads());
+            AtomicInteger threads = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(Math.max(1, settings.getFanOutQueueCapacity())),
+                    task -> {
+                        Thread thread = new Thread(task, "zula-fan-out-" + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            fanOutExecutor = executor;
         }
+        return fanOutExecutor;
     }
 
-    private void markInboxProcessed(String messageId) {
-        if (queuePersistenceService == null) {
-            return;
-        }
-        try {
-            queuePersistenceService.markInboxProcessed(messageId);
-        } catch (Exception ex) {
-            System.out.println("Zula: Could not mark inbox message " + messageId + " as processed - " + ex.getMessage());
+    @PreDestroy
+    public void close() {
+        if (fanOutExecutor != null) {
+            fanOutExecutor.shutdown();
         }
     }
 }
@@ -53,21 +53,6 @@ public final class MessageMetadataHelper {
         if (payload == null) {
             return null;
         }
-        try {
-            java.lang.reflect.Method getter = payload.getClass().getMethod("getRequestId");
-            Object value = getter.invoke(payload);
-            if (value != null) {
-                return value.toString();
-            }
-        } catch (Exception ignored) { }
-        try {
-            java.lang.reflect.Field field = payload.getClass().getDeclaredField("requestId");
-            field.setAccessible(true);
-            Object value = field.get(payload);
-            if (value != null) {
-                return value.toString();
-            }
-        } catch (Exception ignored) { }
-        return null;
+        return MessageDescriptor.of(payload.getClass()).getRequestId(payload);
     }
 }
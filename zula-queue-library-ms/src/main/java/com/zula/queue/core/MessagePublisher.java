@@ -1,38 +1,102 @@
 package com.zula.queue.core;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zula.queue.config.QueueProperties;
+import com.zula.database.entity.MessageOutbox;
+import org.jdbi.v3.core.Handle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConversionException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.beans.factory.annotation.Value;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
 @Component
 public class MessagePublisher {
 
-    private final RabbitTemplate rabbitTemplate;
+    private static final Logger log = LoggerFactory.getLogger(MessagePublisher.class);
+    private final RateLimitedLogger failureLog;
+
+    private final MessageTransport transport;
     private final QueueManager queueManager;
+    private final QueueProperties properties;
+    private final Semaphore inFlight;
+    private final MessageCodecRegistry codecs;
 
     @Autowired(required = false)
     private QueuePersistenceService queuePersistenceService;
 
+    @Autowired(required = false)
+    private PayloadClaimCheck claimCheck;
+
+    @Autowired(required = false)
+    private QueueMetrics metrics = QueueMetrics.NOOP;
+
     @Value("${spring.application.name:unknown-service}")
     private String serviceName;
 
-    @Autowired
     public MessagePublisher(QueueManager queueManager, RabbitTemplate rabbitTemplate) {
+        this(queueManager, rabbitTemplate, new QueueProperties());
+    }
+
+    public MessagePublisher(QueueManager queueManager, RabbitTemplate rabbitTemplate, QueueProperties properties) {
+        this(queueManager, rabbitTemplate, properties, new ObjectMapper().findAndRegisterModules());
+    }
+
+    public MessagePublisher(QueueManager queueManager,
+                            RabbitTemplate rabbitTemplate,
+                            QueueProperties properties,
+                            ObjectMapper objectMapper) {
+        this(queueManager, rabbitTemplate, properties, new MessageCodecRegistry(objectMapper, properties));
+    }
+
+    public MessagePublisher(QueueManager queueManager,
+                            RabbitTemplate rabbitTemplate,
+                            QueueProperties properties,
+                            MessageCodecRegistry codecs) {
+        this(queueManager, new RabbitMessageTransport(rabbitTemplate), properties, codecs);
+    }
+
+    @Autowired
+    public MessagePublisher(QueueManager queueManager,
+                            MessageTransport transport,
+                            QueueProperties properties,
+                            MessageCodecRegistry codecs) {
         this.queueManager = queueManager;
-        this.rabbitTemplate = rabbitTemplate;
+        this.transport = transport;
+        this.properties = properties;
+        this.codecs = codecs;
+        this.failureLog = new RateLimitedLogger(log, properties.getLogging());
+        int maxInFlight = properties.getPublisher().getMaxInFlight();
+        this.inFlight = maxInFlight > 0 ? new Semaphore(maxInFlight) : null;
     }
 
     /**
      * Publish using defaults declared on the message class via @ZulaPublish.
      */
     public <T> void publish(T message) {
-        ZulaPublish publish = message.getClass().getAnnotation(ZulaPublish.class);
-        if (publish == null) {
+        MessageDescriptor descriptor = MessageDescriptor.of(message.getClass());
+        if (descriptor.getPublishService() == null) {
             throw new IllegalArgumentException("Message class " + message.getClass().getName()
                     + " is missing @ZulaPublish(service=...) to infer destination");
         }
-        publishToService(publish.service(), deriveMessageType(message), publish.action(), message);
+        publishToService(descriptor.getPublishService(), descriptor.getMessageType(), descriptor.getPublishAction(), message);
     }
 
     public <T> void publishToService(String serviceName, T message) {
@@ -46,83 +110,524 @@ public class MessagePublisher {
     }
 
     public <T> void publishToService(String serviceName, String messageType, String action, T message) {
-        String messageId = ensureRequestId(message);
-        String exchange = queueManager.generateExchangeName(messageType);
-        String routingKey = messageType.toLowerCase() + "." + action.toLowerCase();
+        MessageDescriptor descriptor = MessageDescriptor.of(message.getClass());
+        String messageId = ensureRequestId(descriptor, message);
+        if (isRelayMode()) {
+            // relay mode: the outbox row is the only write; OutboxRelay publishes it
+            long persistStarted = metrics.start();
+            queuePersistenceService.enqueueOutbox(message, messageType, serviceName, messageId,
+                    routingKey(descriptor, serviceName, messageType, action), partitionKey(descriptor, message, messageId));
+            metrics.record(QueueMetrics.Stage.PERSIST, messageType, persistStarted);
+            return;
+        }
+        send(descriptor, serviceName, messageType, action, message, messageId, null);
+    }
+
+    /**
+     * Publish using the @ZulaPublish defaults and complete the returned future when the broker
+     * confirms the message. Requires {@code spring.rabbitmq.publisher-confirm-type=correlated};
+     * set {@code spring.rabbitmq.template.mandatory=true} to also detect unroutable messages.
+     */
+    public <T> CompletableFuture<PublishReceipt> publishAsync(T message) {
+        MessageDescriptor descriptor = MessageDescriptor.of(message.getClass());
+        if (descriptor.getPublishService() == null) {
+            throw new IllegalArgumentException("Message class " + message.getClass().getName()
+                    + " is missing @ZulaPublish(service=...) to infer destination");
+        }
+        return publishAsync(descriptor.getPublishService(), descriptor.getMessageType(), descriptor.getPublishAction(), message);
+    }
+
+    public <T> CompletableFuture<PublishReceipt> publishAsync(String serviceName, T message) {
+        return publishAsync(serviceName, deriveMessageType(message), "process", message);
+    }
+
+    public <T> CompletableFuture<PublishReceipt> publishAsync(String serviceName, String action, T message) {
+        return publishAsync(serviceName, deriveMessageType(message), action, message);
+    }
+
+    /**
+     * Asynchronous variant of {@link #publishToService(String, String, String, Object)}. Many
+     * messages can be in flight at once; when {@code zula.queue.publisher.max-in-flight}
+     * unconfirmed messages are outstanding, this call blocks until a confirm frees a slot.
+     */
+    public <T> CompletableFuture<PublishReceipt> publishAsync(String serviceName, String messageType, String action, T message) {
+        MessageDescriptor descriptor = MessageDescriptor.of(message.getClass());
+        String messageId = ensureRequestId(descriptor, message);
+        if (isRelayMode()) {
+            long persistStarted = metrics.start();
+            queuePersistenceService.enqueueOutbox(message, messageType, serviceName, messageId,
+                    routingKey(descriptor, serviceName, messageType, action), partitionKey(descriptor, message, messageId));
+            metrics.record(QueueMetrics.Stage.PERSIST, messageType, persistStarted);
+            return CompletableFuture.completedFuture(
+                    new PublishReceipt(messageId, PublishReceipt.Status.QUEUED, null, null));
+        }
+        if (transport.getConfirms() != MessageTransport.Confirms.CORRELATED) {
+            throw new IllegalStateException("publishAsync requires correlated publisher confirms "
+                    + "(spring.rabbitmq.publisher-confirm-type=correlated)");
+        }
+        try {
+            acquireInFlight();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(ex);
+        }
+        CorrelationData correlation = new CorrelationData(messageId);
+        metrics.inFlight(true, messageType, 1);
+        long started = metrics.start();
+        Message sent;
+        try {
+            sent = send(descriptor, serviceName, messageType, action, message, messageId, correlation);
+        } catch (RuntimeException ex) {
+            releaseInFlight();
+            metrics.inFlight(true, messageType, -1);
+            return CompletableFuture.failedFuture(ex);
+        }
+        return correlation.getFuture()
+                .orTimeout(properties.getPublisher().getConfirmTimeoutMs(), TimeUnit.MILLISECONDS)
+                .handle((confirm, ex) -> {
+                    releaseInFlight();
+                    metrics.inFlight(true, messageType, -1);
+                    metrics.record(QueueMetrics.Stage.CONFIRM, messageType, started);
+                    if (ex != null) {
+                        metrics.error(QueueMetrics.Stage.CONFIRM, messageType);
+                        discardClaimCheck(sent);
+                        throw ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(ex);
+                    }
+                    if (!confirm.isAck()) {
+                        metrics.error(QueueMetrics.Stage.CONFIRM, messageType);
+                        discardClaimCheck(sent);
+                        return new PublishReceipt(messageId, PublishReceipt.Status.NACKED, confirm.getReason(), null);
+                    }
+                    if (correlation.getReturned() != null) {
+                        discardClaimCheck(sent);
+                        return new PublishReceipt(messageId, PublishReceipt.Status.RETURNED,
+                                correlation.getReturned().getReplyText(), correlation.getReturned());
+                    }
+                    return new PublishReceipt(messageId, PublishReceipt.Status.ACKED, null, null);
+                });
+    }
+
+    /**
+     * @return the message as sent
+     */
+    private <T> Message send(MessageDescriptor descriptor,
+                          String serviceName,
+                          String messageType,
+                          String action,
+                          T message,
+                          String messageId,
+                          CorrelationData correlation) {
+        long started = metrics.start();
+        String exchange = descriptor.getMessageType().equals(messageType)
+                ? descriptor.getExchangeName(queueManager)
+                : queueManager.generateExchangeName(messageType);
+        String routingKey = queueManager.partitionRoutingKey(routingKey(descriptor, serviceName, messageType, action),
+                messageType, partitionKey(descriptor, message, messageId));
 
         queueManager.createServiceQueue(serviceName, messageType);
+        metrics.record(QueueMetrics.Stage.RESOLVE, messageType, started);
 
-        persistOutbox(messageId, messageType, serviceName, message);
+        // serialize once: for JSON the same bytes become the outbox payload and the AMQP body
+        long encodeStarted = metrics.start();
+        Encoded encoded = encode(codecs.forPublish(descriptor, messageType), message);
+        metrics.record(QueueMetrics.Stage.ENCODE, messageType, encodeStarted);
 
-        rabbitTemplate.convertAndSend(exchange, routingKey, message, msg -> {
-            msg.getMessageProperties().setHeader("x-source-service", this.serviceName);
-            msg.getMessageProperties().setHeader("x-message-id", messageId);
-            msg.getMessageProperties().setHeader("x-message-type", messageType);
-            return msg;
-        });
+        long persistStarted = metrics.start();
+        persistOutbox(messageId, messageType, serviceName, encoded, message);
+        metrics.record(QueueMetrics.Stage.PERSIST, messageType, persistStarted);
 
-        System.out.println("Zula: Published " + messageType + " " + action + " to " + serviceName);
+        // a claim-checked body is stored here, before the transport opens a channel
+        Message amqpMessage = toAmqpMessage(encoded, message, messageId, messageType);
+        long sendStarted = metrics.start();
+        try {
+            transport.send(exchange, routingKey, amqpMessage, correlation);
+        } catch (RuntimeException ex) {
+            metrics.error(QueueMetrics.Stage.SEND, messageType);
+            discardClaimCheck(amqpMessage);
+            throw ex;
+        }
+        metrics.record(QueueMetrics.Stage.SEND, messageType, sendStarted);
+
+        log.debug("Zula: Published {} {} to {}", messageType, action, serviceName);
+        return amqpMessage;
     }
 
-    private <T> String deriveMessageType(T message) {
-        Class<?> clazz = message.getClass();
-        ZulaCommand command = clazz.getAnnotation(ZulaCommand.class);
-        if (command != null && !command.commandType().isEmpty()) {
-            return command.commandType().toLowerCase();
+    /**
+     * Publish a batch of messages using each message's @ZulaPublish defaults.
+     *
+     * @see #publishAllToService(String, String, Collection)
+     */
+    public <T> BulkPublishResult publishAll(Collection<T> messages) {
+        return publishAllInternal(null, null, messages);
+    }
+
+    public <T> BulkPublishResult publishAllToService(String serviceName, Collection<T> messages) {
+        return publishAllInternal(serviceName, "process", messages);
+    }
+
+    /**
+     * Publish a batch of messages to one service. Routing and topology are resolved once per
+     * message type, outbox rows are written in a single batch, and all messages are sent on one
+     * channel inside {@link MessageTransport#invoke} with their confirms awaited together.
+     */
+    public <T> BulkPublishResult publishAllToService(String serviceName, String action, Collection<T> messages) {
+        return publishAllInternal(serviceName, action, messages);
+    }
+
+    private <T> BulkPublishResult publishAllInternal(String targetService, String targetAction, Collection<T> messages) {
+        List<BulkEntry> entries = new ArrayList<>(messages.size());
+        Set<String> declared = new HashSet<>();
+        for (T message : messages) {
+            MessageDescriptor descriptor = MessageDescriptor.of(message.getClass());
+            String serviceName = targetService != null ? targetService : descriptor.getPublishService();
+            if (serviceName == null) {
+                throw new IllegalArgumentException("Message class " + message.getClass().getName()
+                        + " is missing @ZulaPublish(service=...) to infer destination");
+            }
+            String action = targetAction != null ? targetAction : descriptor.getPublishAction();
+            String messageType = descriptor.getMessageType();
+            if (declared.add(serviceName + "|" + messageType)) {
+                queueManager.createServiceQueue(serviceName, messageType);
+            }
+            String messageId = ensureRequestId(descriptor, message);
+            Encoded encoded = encode(codecs.forPublish(descriptor, messageType), message);
+            String routingKey = descriptor.getRoutingKey(queueManager, serviceName, action);
+            String partitionKey = partitionKey(descriptor, message, messageId);
+            entries.add(new BulkEntry(message, encoded, messageId, messageType, serviceName,
+                    descriptor.getExchangeName(queueManager), routingKey, partitionKey,
+                    queueManager.partitionRoutingKey(routingKey, messageType, partitionKey)));
         }
-        ZulaMessage annotation = clazz.getAnnotation(ZulaMessage.class);
-        if (annotation != null && !annotation.messageType().isEmpty()) {
-            return annotation.messageType().toLowerCase();
+        if (entries.isEmpty()) {
+            return new BulkPublishResult(List.of());
         }
-        String className = clazz.getSimpleName();
-        if (className.endsWith("Message")) {
-            return className.substring(0, className.length() - 7).toLowerCase();
+
+        if (isRelayMode()) {
+            persistOutboxBatch(entries, true);
+            List<PublishReceipt> queued = new ArrayList<>(entries.size());
+            for (BulkEntry entry : entries) {
+                queued.add(new PublishReceipt(entry.messageId, PublishReceipt.Status.QUEUED, null, null));
+            }
+            return new BulkPublishResult(queued);
         }
-        return className.toLowerCase();
+
+        persistOutboxBatch(entries, false);
+        List<PublishReceipt> receipts = sendBatch(entries);
+        BulkPublishResult result = new BulkPublishResult(receipts);
+        log.debug("Zula: Published batch of {} messages - {}", entries.size(), result);
+        return result;
     }
 
-    private void persistOutbox(String messageId, String messageType, String targetService, Object message) {
+    private List<PublishReceipt> sendBatch(List<BulkEntry> entries) {
+        MessageTransport.Confirms confirms = transport.getConfirms();
+        boolean correlated = confirms == MessageTransport.Confirms.CORRELATED;
+        boolean simple = confirms == MessageTransport.Confirms.SIMPLE;
+        long timeoutMs = properties.getPublisher().getConfirmTimeoutMs();
+
+        // claim-checked bodies are stored before the channel is opened
+        List<Message> amqpMessages = new ArrayList<>(entries.size());
+        for (BulkEntry entry : entries) {
+            amqpMessages.add(toAmqpMessage(entry.encoded, entry.message, entry.messageId, entry.messageType));
+        }
+        List<PublishReceipt> receipts;
+        try {
+            receipts = sendBatch(entries, amqpMessages, correlated, simple, timeoutMs);
+        } catch (RuntimeException ex) {
+            amqpMessages.forEach(this::discardClaimCheck);
+            throw ex;
+        }
+        for (int i = 0; i < receipts.size(); i++) {
+            if (receipts.get(i).getStatus() != PublishReceipt.Status.ACKED
+                    && receipts.get(i).getStatus() != PublishReceipt.Status.UNCONFIRMED) {
+                discardClaimCheck(amqpMessages.get(i));
+            }
+        }
+        return receipts;
+    }
+
+    private List<PublishReceipt> sendBatch(List<BulkEntry> entries, List<Message> amqpMessages,
+                                           boolean correlated, boolean simple, long timeoutMs) {
+        return transport.invoke(channel -> {
+            PublishReceipt[] receipts = new PublishReceipt[entries.size()];
+            CorrelationData[] correlations = new CorrelationData[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                BulkEntry entry = entries.get(i);
+                CorrelationData correlation = correlated ? new CorrelationData(entry.messageId) : null;
+                long sendStarted = metrics.start();
+                try {
+                    channel.send(entry.exchange, entry.routingKey, amqpMessages.get(i), correlation);
+                    metrics.record(QueueMetrics.Stage.SEND, entry.messageType, sendStarted);
+                    correlations[i] = correlation;
+                } catch (RuntimeException ex) {
+                    metrics.error(QueueMetrics.Stage.SEND, entry.messageType);
+                    receipts[i] = new PublishReceipt(entry.messageId, PublishReceipt.Status.FAILED, ex.getMessage(), null);
+                }
+            }
+
+            if (simple) {
+                boolean confirmed;
+                try {
+                    confirmed = channel.waitForConfirms(timeoutMs);
+                } catch (RuntimeException ex) {
+                    confirmed = false;
+                }
+                for (int i = 0; i < receipts.length; i++) {
+                    if (receipts[i] == null) {
+                        receipts[i] = new PublishReceipt(entries.get(i).messageId,
+                                confirmed ? PublishReceipt.Status.ACKED : PublishReceipt.Status.NACKED, null, null);
+                    }
+                }
+            } else if (correlated) {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+                for (int i = 0; i < receipts.length; i++) {
+                    if (receipts[i] == null) {
+                        receipts[i] = awaitConfirm(entries.get(i).messageId, correlations[i], deadline);
+                    }
+                }
+            } else {
+                for (int i = 0; i < receipts.length; i++) {
+                    if (receipts[i] == null) {
+                        receipts[i] = new PublishReceipt(entries.get(i).messageId, PublishReceipt.Status.UNCONFIRMED, null, null);
+                    }
+                }
+            }
+            return List.of(receipts);
+        });
+    }
+
+    private PublishReceipt awaitConfirm(String messageId, CorrelationData correlation, long deadlineNanos) {
+        try {
+            long remaining = Math.max(0, deadlineNanos - System.nanoTime());
+            CorrelationData.Confirm confirm = correlation.getFuture().get(remaining, TimeUnit.NANOSECONDS);
+            if (!confirm.isAck()) {
+                return new PublishReceipt(messageId, PublishReceipt.Status.NACKED, confirm.getReason(), null);
+            }
+            if (correlation.getReturned() != null) {
+                return new PublishReceipt(messageId, PublishReceipt.Status.RETURNED,
+                        correlation.getReturned().getReplyText(), correlation.getReturned());
+            }
+            return new PublishReceipt(messageId, PublishReceipt.Status.ACKED, null, null);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new PublishReceipt(messageId, PublishReceipt.Status.FAILED, "interrupted", null);
+        } catch (Exception ex) {
+            return new PublishReceipt(messageId, PublishReceipt.Status.FAILED, "no confirm: " + ex, null);
+        }
+    }
+
+    private void persistOutboxBatch(List<BulkEntry> entries, boolean pending) {
         if (queuePersistenceService == null) {
             return;
         }
+        if (pending) {
+            // relay mode: the rows are the only record of the messages, so failures propagate
+            List<PendingOutbox> rows = new ArrayList<>(entries.size());
+            for (BulkEntry entry : entries) {
+                rows.add(new PendingOutbox(queuePersistenceService.outboxRowFromPayload(storedPayload(entry.encoded, entry.message),
+                        entry.messageType, entry.serviceName, entry.messageId, true), entry.baseRoutingKey, entry.partitionKey));
+            }
+            queuePersistenceService.insertPendingOutboxBatch(rows);
+            return;
+        }
+        List<MessageOutbox> rows = new ArrayList<>(entries.size());
+        for (BulkEntry entry : entries) {
+            rows.add(queuePersistenceService.outboxRowFromPayload(storedPayload(entry.encoded, entry.message),
+                    entry.messageType, entry.serviceName, entry.messageId, false));
+        }
         try {
-            queuePersistenceService.persistOutbox(message, messageType, targetService, messageId);
+            queuePersistenceService.insertOutboxBatch(rows);
         } catch (Exception ex) {
-            System.out.println("Zula: Could not persist outbox message " + messageId + " - " + ex.getMessage());
+            failureLog.warn("outbox", "Zula: Could not persist outbox batch of {} messages - {}", rows.size(), ex.getMessage());
         }
     }
 
-    private <T> String ensureRequestId(T message) {
+    private Encoded encode(MessageCodec codec, Object message) {
         try {
-            java.lang.reflect.Method getter = null;
-            try {
-                getter = message.getClass().getMethod("getRequestId");
-            } catch (NoSuchMethodException ignored) { }
-
-            Object current = getter != null ? getter.invoke(message) : null;
-            if (current != null && current.toString().trim().length() > 0) {
-                return current.toString();
-            }
+            byte[] body = codec.encode(message);
+            return new Encoded(codec, body, codecs.getCompression().compress(body));
+        } catch (IOException ex) {
+            throw new MessageConversionException("Failed to encode " + message.getClass().getName() + " with " + codec.getName(), ex);
+        }
+    }
+
+    /**
+     * The outbox stores JSON whatever the wire codec, so the relay and operators can read it;
+     * with {@code store-compressed} a compressed JSON body is stored in its compressed form.
+     */
+    private String storedPayload(Encoded encoded, Object message) {
+        try {
+            String algorithm = encoded.compressed != null ? codecs.getCompression().getAlgorithm() : null;
+            return new String(codecs.toStoredPayload(encoded.codec, encoded.body, message, algorithm, encoded.compressed),
+                    StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new MessageConversionException("Failed to encode " + message.getClass().getName() + " as JSON", ex);
+        }
+    }
 
-            String newId = java.util.UUID.randomUUID().toString();
+    /**
+     * Wrap an already encoded body in an AMQP message with the codec's content type, the
+     * compression algorithm if any, the {@code __TypeId__} header the JSON converter would set,
+     * and the Zula headers. Oversized bodies are swapped for a claim-check reference.
+     */
+    private Message toAmqpMessage(Encoded encoded, Object message, String messageId, String messageType) {
+        MessageProperties props = new MessageProperties();
+        props.setContentType(encoded.codec.getContentType());
+        String charset = encoded.codec == codecs.getJson() ? StandardCharsets.UTF_8.name() : null;
+        byte[] body = encoded.body;
+        if (encoded.compressed != null) {
+            body = encoded.compressed;
+            props.setContentEncoding(codecs.getCompression().contentEncoding(charset));
+        } else if (charset != null) {
+            props.setContentEncoding(charset);
+        }
+        metrics.payloadSize(true, messageType, body.length);
+        if (claimCheck != null && claimCheck.applies(body)) {
+            claimCheck.checkIn(messageId, body, props);
+            body = new byte[0];
+        }
+        props.setContentLength(body.length);
+        props.setHeader("__TypeId__", message.getClass().getName());
+        props.setHeader("x-source-service", this.serviceName);
+        props.setHeader("x-message-id", messageId);
+        props.setHeader("x-message-type", messageType);
+        return new Message(body, props);
+    }
 
-            try {
-                java.lang.reflect.Method setter = message.getClass().getMethod("setRequestId", String.class);
-                setter.invoke(message, newId);
-                return newId;
-            } catch (NoSuchMethodException ignored) { }
+    private void discardClaimCheck(Message message) {
+        String reference = PayloadClaimCheck.referenceOf(message);
+        if (reference != null && claimCheck != null) {
+            claimCheck.discard(reference);
+        }
+    }
 
-            try {
-                java.lang.reflect.Field field = message.getClass().getDeclaredField("requestId");
-                field.setAccessible(true);
-                field.set(message, newId);
-                return newId;
-            } catch (NoSuchFieldException ignored) { }
+    /**
+     * Write the message to the outbox using the caller's JDBI handle so it commits atomically
+     * with the caller's own changes. Nothing is sent here; the outbox relay publishes the row
+     * after the transaction commits.
+     */
+    public <T> void publishInTransaction(Handle handle, String serviceName, T message) {
+        publishInTransaction(handle, serviceName, deriveMessageType(message), message);
+    }
 
-            return newId;
+    public <T> void publishInTransaction(Handle handle, String serviceName, String messageType, T message) {
+        publishInTransaction(handle, serviceName, messageType, "process", message);
+    }
+
+    public <T> void publishInTransaction(Handle handle, String serviceName, String messageType, String action, T message) {
+        if (queuePersistenceService == null) {
+            throw new IllegalStateException("Transactional publishing requires a QueuePersistenceService (Jdbi + DatabaseManager)");
+        }
+        MessageDescriptor descriptor = MessageDescriptor.of(message.getClass());
+        String messageId = ensureRequestId(descriptor, message);
+        queuePersistenceService.enqueueOutbox(handle, message, messageType, serviceName, messageId,
+                routingKey(descriptor, serviceName, messageType, action), partitionKey(descriptor, message, messageId));
+    }
+
+    private boolean isRelayMode() {
+        return properties.getOutbox().getRelay().isEnabled() && queuePersistenceService != null;
+    }
+
+    private void acquireInFlight() throws InterruptedException {
+        if (inFlight != null) {
+            inFlight.acquire();
+        }
+    }
+
+    private void releaseInFlight() {
+        if (inFlight != null) {
+            inFlight.release();
+        }
+    }
+
+    private <T> String deriveMessageType(T message) {
+        return MessageDescriptor.of(message.getClass()).getMessageType();
+    }
+
+    private void persistOutbox(String messageId, String messageType, String targetService,
+                               Encoded encoded, Object message) {
+        if (queuePersistenceService == null) {
+            return;
+        }
+        String payload = storedPayload(encoded, message);
+        if (queuePersistenceService.isGroupCommitEnabled() && !properties.getOutbox().isAwaitDurable()) {
+            queuePersistenceService.persistOutboxPayloadAsync(payload, messageType, targetService, messageId)
+                    .whenComplete((id, ex) -> {
+                        if (ex != null) {
+                            failureLog.warn("outbox", "Zula: Could not persist outbox message {} - {}", messageId, ex.getMessage());
+                        }
+                    });
+            return;
+        }
+        try {
+            queuePersistenceService.persistOutboxPayload(payload, messageType, targetService, messageId);
         } catch (Exception ex) {
-            // best-effort; ignore errors
+            failureLog.warn("outbox", "Zula: Could not persist outbox message {} - {}", messageId, ex.getMessage());
+        }
+    }
+
+    private String ensureRequestId(MessageDescriptor descriptor, Object message) {
+        String current = descriptor.getRequestId(message);
+        if (current != null) {
+            return current;
+        }
+        String newId = java.util.UUID.randomUUID().toString();
+        descriptor.setRequestId(message, newId);
+        return newId;
+    }
+
+    /**
+     * Routing key for the action before partitioning; the outbox relay stores it with the row.
+     */
+    private String routingKey(MessageDescriptor descriptor, String serviceName, String messageType, String action) {
+        return descriptor.getMessageType().equals(messageType)
+                ? descriptor.getRoutingKey(queueManager, serviceName, action)
+                : queueManager.routingKey(messageType, serviceName, action);
+    }
+
+    /**
+     * The message's {@link ZulaPartitionKey}; messages without one are spread by message id.
+     */
+    private static String partitionKey(MessageDescriptor descriptor, Object message, String messageId) {
+        String key = descriptor.getPartitionKey(message);
+        return key != null ? key : messageId;
+    }
+
+    private static final class BulkEntry {
+        private final Object message;
+        private final Encoded encoded;
+        private final String messageId;
+        private final String messageType;
+        private final String serviceName;
+        private final String exchange;
+        private final String baseRoutingKey;
+        private final String partitionKey;
+        private final String routingKey;
+
+        private BulkEntry(Object message, Encoded encoded, String messageId, String messageType, String serviceName,
+                          String exchange, String baseRoutingKey, String partitionKey, String routingKey) {
+            this.message = message;
+            this.encoded = encoded;
+            this.messageId = messageId;
+            this.messageType = messageType;
+            this.serviceName = serviceName;
+            this.exchange = exchange;
+            this.baseRoutingKey = baseRoutingKey;
+            this.partitionKey = partitionKey;
+            this.routingKey = routingKey;
+        }
+    }
+
+    /**
+     * A message encoded with its codec, plus the compressed body when it crossed the threshold.
+     */
+    private static final class Encoded {
+        private final MessageCodec codec;
+        private final byte[] body;
+        private final byte[] compressed;
+
+        private Encoded(MessageCodec codec, byte[] body, byte[] compressed) {
+            this.codec = codec;
+            this.body = body;
+            this.compressed = compressed;
         }
-        return java.util.UUID.randomUUID().toString();
     }
 }
@@ -0,0 +1,97 @@
+package com.zula.queue.core;
+
+import org.springframework.amqp.core.BatchMessageListener;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Exchange;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.context.Lifecycle;
+
+import java.util.function.Function;
+
+/**
+ * What the library needs from a message broker: sending, declaring topology and, optionally,
+ * consuming. {@link MessagePublisher}, {@link QueueManager}, {@link OutboxRelay},
+ * {@link DeliveryRetryHandler} and {@link QueueListenerContainerFactory} go through this
+ * interface instead of {@code RabbitTemplate}/{@code RabbitAdmin} directly.
+ *
+ * Selected with {@code zula.queue.transport}: {@link RabbitMessageTransport} (default) or
+ * {@link LoopbackTransport}, an in-memory broker for local runs, integration tests and load tests.
+ * Messages, exchanges, queues and bindings are the Spring AMQP types in both cases.
+ */
+public interface MessageTransport {
+
+    enum Confirms {
+        /** Sends are not confirmed. */
+        NONE,
+        /** {@link Channel#waitForConfirms} confirms everything sent on a channel. */
+        SIMPLE,
+        /** Each send's {@link CorrelationData} future completes with its confirm. */
+        CORRELATED
+    }
+
+    Confirms getConfirms();
+
+    /**
+     * Send a message; with {@link Confirms#CORRELATED} the correlation's future completes once
+     * the broker confirms it. The empty exchange routes to the queue named by the routing key.
+     */
+    void send(String exchange, String routingKey, Message message, CorrelationData correlation);
+
+    /**
+     * Run {@code action} with a channel that stays the same for all its sends, so they can be
+     * confirmed together.
+     */
+    <T> T invoke(Function<Channel, T> action);
+
+    void declareExchange(Exchange exchange);
+
+    void declareQueue(Queue queue);
+
+    void declareBinding(Binding binding);
+
+    void removeBinding(Binding binding);
+
+    /**
+     * Run {@code action} whenever the connection is re-established, to restore topology.
+     */
+    void onReconnect(Runnable action);
+
+    /**
+     * Deliver messages from a queue to {@code listener} on {@code consumers} threads, acking each
+     * message when the listener returns. Returns null when the transport leaves consuming to
+     * Rabbit listener containers.
+     */
+    default Lifecycle subscribe(String queueName, MessageListener listener, int consumers) {
+        return null;
+    }
+
+    /**
+     * Batch variant of {@link #subscribe}: each call of {@code listener} gets up to {@code batchSize}
+     * messages. Returns null when the transport leaves consuming to Rabbit listener containers.
+     */
+    default Lifecycle subscribeBatch(String queueName, BatchMessageListener listener, int consumers, int batchSize) {
+        return null;
+    }
+
+    /**
+     * Something to send with: the transport itself or a {@link Channel}.
+     */
+    @FunctionalInterface
+    interface Sender {
+
+        void send(String exchange, String routingKey, Message message, CorrelationData correlation);
+    }
+
+    interface Channel extends Sender {
+
+        /**
+         * Wait until everything sent on this channel is confirmed.
+         *
+         * @return false if any message was nacked
+         */
+        boolean waitForConfirms(long timeoutMs);
+    }
+}
@@ -0,0 +1,110 @@
+package com.zula.queue.core;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link QueueMetrics} backed by Micrometer. Meters are tagged with {@code service} and
+ * {@code type} and created once per message type, so recording is a map lookup plus the
+ * meter update:
+ * <ul>
+ *   <li>{@code zula.publish} / {@code zula.consume} timers, tagged by {@code stage}</li>
+ *   <li>{@code zula.publish.errors} / {@code zula.consume.errors} counters, tagged by {@code stage}</li>
+ *   <li>{@code zula.publish.payload} / {@code zula.consume.payload} size summaries in bytes</li>
+ *   <li>{@code zula.publish.in-flight} / {@code zula.consume.in-flight} gauges</li>
+ * </ul>
+ * Enable percentile histograms through {@code management.metrics.distribution.*} as for any meter.
+ */
+public class MicrometerQueueMetrics implements QueueMetrics {
+
+    private static final String UNKNOWN_TYPE = "unknown";
+
+    private final MeterRegistry registry;
+    private final String serviceName;
+    private final Map<String, TypeMeters> byType = new ConcurrentHashMap<>();
+
+    public MicrometerQueueMetrics(MeterRegistry registry, String serviceName) {
+        this.registry = registry;
+        this.serviceName = serviceName;
+    }
+
+    @Override
+    public long start() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void record(Stage stage, String messageType, long startNanos) {
+        meters(messageType).timers[stage.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void error(Stage stage, String messageType) {
+        meters(messageType).errors[stage.ordinal()].increment();
+    }
+
+    @Override
+    public void payloadSize(boolean outbound, String messageType, int bytes) {
+        TypeMeters meters = meters(messageType);
+        (outbound ? meters.publishedSize : meters.consumedSize).record(bytes);
+    }
+
+    @Override
+    public void inFlight(boolean outbound, String messageType, int delta) {
+        TypeMeters meters = meters(messageType);
+        (outbound ? meters.publishing : meters.consuming).addAndGet(delta);
+    }
+
+    private TypeMeters meters(String messageType) {
+        String type = messageType != null ? messageType : UNKNOWN_TYPE;
+        TypeMeters meters = byType.get(type);
+        return meters != null ? meters : byType.computeIfAbsent(type, TypeMeters::new);
+    }
+
+    private static String prefix(boolean outbound) {
+        return outbound ? "zula.publish" : "zula.consume";
+    }
+
+    private final class TypeMeters {
+        private final Timer[] timers = new Timer[Stage.values().length];
+        private final Counter[] errors = new Counter[Stage.values().length];
+        private final DistributionSummary publishedSize;
+        private final DistributionSummary consumedSize;
+        private final AtomicInteger publishing = new AtomicInteger();
+        private final AtomicInteger consuming = new AtomicInteger();
+
+        private TypeMeters(String type) {
+            for (Stage stage : Stage.values()) {
+                timers[stage.ordinal()] = Timer.builder(prefix(stage.isOutbound()))
+                        .tags("service", serviceName, "type", type, "stage", stage.getTag())
+                        .register(registry);
+                errors[stage.ordinal()] = Counter.builder(prefix(stage.isOutbound()) + ".errors")
+                        .tags("service", serviceName, "type", type, "stage", stage.getTag())
+                        .register(registry);
+            }
+            publishedSize = payloadSummary(true, type);
+            consumedSize = payloadSummary(false, type);
+            Gauge.builder(prefix(true) + ".in-flight", publishing, AtomicInteger::get)
+                    .tags("service", serviceName, "type", type)
+                    .register(registry);
+            Gauge.builder(prefix(false) + ".in-flight", consuming, AtomicInteger::get)
+                    .tags("service", serviceName, "type", type)
+                    .register(registry);
+        }
+
+        private DistributionSummary payloadSummary(boolean outbound, String type) {
+            return DistributionSummary.builder(prefix(outbound) + ".payload")
+                    .baseUnit("bytes")
+                    .tags("service", serviceName, "type", type)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.zula.queue.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zula.database.entity.MessageOutbox;
+import com.zula.queue.config.QueueProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes outbox rows written in relay mode. Each relay thread repeatedly leases a batch
+ * of PENDING rows with {@code FOR UPDATE SKIP LOCKED} in a short transaction, publishes them
+ * to the routing key stored on each row, waits for broker confirms and then marks the
+ * confirmed rows SENT in a second transaction; unconfirmed rows are retried later through
+ * their {@code retry_count}. No transaction is open while publishing, and because claims skip
+ * locked and leased rows, several threads and several nodes can drain the same outbox table
+ * in parallel. The table needs the columns of {@code db/zula-queue/outbox-relay.sql}.
+ *
+ * Publisher confirms should be enabled ({@code spring.rabbitmq.publisher-confirm-type=correlated}
+ * or {@code simple}); without them a row counts as sent once the broker accepted the write.
+ */
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+    private final RateLimitedLogger failureLog;
+
+    private static final String DEFAULT_ACTION = "process";
+    private static final ObjectMapper PAYLOAD_READER = new ObjectMapper();
+
+    private final QueuePersistenceService queuePersistenceService;
+    private final MessageTransport transport;
+    private final QueueManager queueManager;
+    private final QueueProperties.Relay properties;
+    private final String serviceName;
+    private final PayloadCompression compression;
+    private final PayloadClaimCheck claimCheck;
+    private final List<Thread> workers = new ArrayList<>();
+
+    @org.springframework.beans.factory.annotation.Autowired(required = false)
+    private QueueMetrics metrics = QueueMetrics.NOOP;
+    private volatile boolean running;
+
+    public OutboxRelay(QueuePersistenceService queuePersistenceService,
+                       RabbitTemplate rabbitTemplate,
+                       QueueManager queueManager,
+                       QueueProperties properties,
+                       String serviceName) {
+        this(queuePersistenceService, rabbitTemplate, queueManager, properties, serviceName, null);
+    }
+
+    public OutboxRelay(QueuePersistenceService queuePersistenceService,
+                       RabbitTemplate rabbitTemplate,
+                       QueueManager queueManager,
+                       QueueProperties properties,
+                       String serviceName,
+                       PayloadClaimCheck claimCheck) {
+        this(queuePersistenceService, new RabbitMessageTransport(rabbitTemplate), queueManager, properties, serviceName, claimCheck);
+    }
+
+    public OutboxRelay(QueuePersistenceService queuePersistenceService,
+                       MessageTransport transport,
+                       QueueManager queueManager,
+                       QueueProperties properties,
+                       String serviceName,
+                       PayloadClaimCheck claimCheck) {
+        this.queuePersistenceService = queuePersistenceService;
+        this.transport = transport;
+        this.queueManager = queueManager;
+        this.properties = properties.getOutbox().getRelay();
+        this.serviceName = serviceName;
+        this.compression = new PayloadCompression(properties.getCompression());
+        this.claimCheck = claimCheck;
+        this.failureLog = new RateLimitedLogger(log, properties.getLogging());
+    }
+
+    @PostConstruct
+    public void start() {
+        if (queuePersistenceService == null) {
+            log.warn("Zula: Outbox relay enabled but no QueuePersistenceService is available; relay not started");
+            return;
+        }
+        queuePersistenceService.checkRelaySchema();
+        if (properties.getLeaseMs() <= properties.getConfirmTimeoutMs()) {
+            log.warn("Zula: Outbox relay lease-ms ({}) should exceed confirm-timeout-ms ({}); rows may be published twice",
+                    properties.getLeaseMs(), properties.getConfirmTimeoutMs());
+        }
+        if (transport.getConfirms() == MessageTransport.Confirms.NONE) {
+            log.warn("Zula: Outbox relay running without publisher confirms; rows are marked SENT once written to the channel");
+        }
+        running = true;
+        for (int i = 0; i < Math.max(1, properties.getThreads()); i++) {
+            Thread worker = new Thread(this::runLoop, "zula-outbox-relay-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("Zula: Outbox relay started with {} thread(s)", workers.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        // no interrupt: let an in-flight round record its outcome
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.clear();
+    }
+
+    /**
+     * Run a single relay round on the calling thread.
+     *
+     * @return the number of rows claimed
+     */
+    public int relayOnce() {
+        return queuePersistenceService.relayPendingOutbox(
+                properties.getBatchSize(),
+                Duration.ofMillis(properties.getRetryDelayMs()),
+                Duration.ofMillis(properties.getLeaseMs()),
+                properties.getMaxRetries(),
+                this::publishBatch);
+    }
+
+    private void runLoop() {
+        while (running) {
+            int claimed = 0;
+            try {
+                claimed = relayOnce();
+            } catch (Exception ex) {
+                failureLog.warn("round", "Zula: Outbox relay round failed - {}", ex.getMessage());
+            }
+            if (claimed == 0) {
+                try {
+                    Thread.sleep(properties.getPollIntervalMs());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Publish claimed rows and return the message ids the broker confirmed. Messages are built,
+     * and oversized bodies checked in, before anything is sent; the stored bodies of rows that
+     * end up unconfirmed are discarded, since the retry checks the body in again.
+     */
+    private List<String> publishBatch(List<PendingOutbox> rows) {
+        List<Outgoing> outgoing = new ArrayList<>(rows.size());
+        for (PendingOutbox row : rows) {
+            try {
+                outgoing.add(new Outgoing(row, toAmqpMessage(row.getRow())));
+            } catch (Exception ex) {
+                failureLog.warn("publish", "Zula: Outbox relay could not prepare {} - {}", row.getMessageId(), ex.getMessage());
+            }
+        }
+        List<String> confirmed;
+        MessageTransport.Confirms confirms = transport.getConfirms();
+        if (confirms == MessageTransport.Confirms.CORRELATED) {
+            confirmed = publishWithCorrelatedConfirms(outgoing);
+        } else if (confirms == MessageTransport.Confirms.SIMPLE) {
+            confirmed = publishWithSimpleConfirms(outgoing);
+        } else {
+            confirmed = new ArrayList<>(outgoing.size());
+            for (Outgoing message : outgoing) {
+                try {
+                    send(transport::send, message, null);
+                    confirmed.add(message.row.getMessageId());
+                } catch (Exception ex) {
+                    failureLog.warn("publish", "Zula: Outbox relay could not publish {} - {}", message.row.getMessageId(), ex.getMessage());
+                }
+            }
+        }
+        if (claimCheck != null && confirmed.size() < outgoing.size()) {
+            Set<String> sent = new HashSet<>(confirmed);
+            for (Outgoing message : outgoing) {
+                String reference = PayloadClaimCheck.referenceOf(message.message);
+                if (reference != null && !sent.contains(message.row.getMessageId())) {
+                    claimCheck.discard(reference);
+                }
+            }
+        }
+        return confirmed;
+    }
+
+    private List<String> publishWithCorrelatedConfirms(List<Outgoing> outgoing) {
+        List<CorrelationData> pending = new ArrayList<>(outgoing.size());
+        for (Outgoing message : outgoing) {
+            CorrelationData correlation = new CorrelationData(message.row.getMessageId());
+            try {
+                send(transport::send, message, correlation);
+                pending.add(correlation);
+            } catch (Exception ex) {
+                failureLog.warn("publish", "Zula: Outbox relay could not publish {} - {}", message.row.getMessageId(), ex.getMessage());
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getConfirmTimeoutMs());
+        List<String> confirmed = new ArrayList<>(pending.size());
+        for (CorrelationData correlation : pending) {
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                CorrelationData.Confirm confirm = correlation.getFuture().get(remaining, TimeUnit.NANOSECONDS);
+                if (confirm.isAck() && correlation.getReturned() == null) {
+                    confirmed.add(correlation.getId());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception ex) {
+                failureLog.warn("confirm", "Zula: Outbox relay got no confirm for {} - {}", correlation.getId(), ex.getMessage());
+            }
+        }
+        return confirmed;
+    }
+
+    private List<String> publishWithSimpleConfirms(List<Outgoing> outgoing) {
+        try {
+            return transport.invoke(channel -> {
+                List<String> written = new ArrayList<>(outgoing.size());
+                for (Outgoing message : outgoing) {
+                    send(channel, message, null);
+                    written.add(message.row.getMessageId());
+                }
+                if (!channel.waitForConfirms(properties.getConfirmTimeoutMs())) {
+                    throw new IllegalStateException("broker nacked part of the batch");
+                }
+                return written;
+            });
+        } catch (Exception ex) {
+            failureLog.warn("confirm", "Zula: Outbox relay batch of {} was not confirmed - {}", outgoing.size(), ex.getMessage());
+            return List.of();
+        }
+    }
+
+    private void send(MessageTransport.Sender sender,
+                      Outgoing outgoing,
+                      CorrelationData correlation) {
+        MessageOutbox row = outgoing.row.getRow();
+        String messageType = row.getMessageType();
+        queueManager.createServiceQueue(row.getTargetService(), messageType);
+        String exchange = queueManager.generateExchangeName(messageType);
+        // rows written before the routing_key column existed were always sent to the default action
+        String routingKey = outgoing.row.getRoutingKey() != null
+                ? outgoing.row.getRoutingKey()
+                : queueManager.routingKey(messageType, row.getTargetService(), DEFAULT_ACTION);
+        if (queueManager.isPartitioned(messageType)) {
+            String partitionKey = outgoing.row.getPartitionKey() != null ? outgoing.row.getPartitionKey() : partitionKey(row);
+            routingKey = queueManager.partitionRoutingKey(routingKey, messageType, partitionKey);
+        }
+        long started = metrics.start();
+        try {
+            sender.send(exchange, routingKey, outgoing.message, correlation);
+        } catch (RuntimeException ex) {
+            metrics.error(QueueMetrics.Stage.SEND, messageType);
+            throw ex;
+        }
+        metrics.record(QueueMetrics.Stage.SEND, messageType, started);
+    }
+
+    /**
+     * Partition key of a row written without one (before the partition_key column existed),
+     * read back from its JSON payload. Falls back to the message id when the message class has
+     * not been loaded in this application (see {@link MessageDescriptor#partitionKeyProperty})
+     * or the payload has no key.
+     */
+    private String partitionKey(MessageOutbox row) {
+        String property = MessageDescriptor.partitionKeyProperty(row.getMessageType());
+        String payload = row.getPayload();
+        if (property == null || payload == null) {
+            return row.getMessageId();
+        }
+        try {
+            String stored = PayloadCompression.storedAlgorithm(payload);
+            JsonNode json = stored != null
+                    ? PAYLOAD_READER.readTree(compression.decompress(PayloadCompression.storedBody(payload, stored), stored))
+                    : PAYLOAD_READER.readTree(payload);
+            JsonNode key = json.get(property);
+            return key != null && !key.isNull() ? key.asText() : row.getMessageId();
+        } catch (IOException ex) {
+            return row.getMessageId();
+        }
+    }
+
+    private Message toAmqpMessage(MessageOutbox row) {
+        String payload = row.getPayload() != null ? row.getPayload() : "";
+        String charset = StandardCharsets.UTF_8.name();
+        byte[] body;
+        String contentEncoding;
+        String stored = PayloadCompression.storedAlgorithm(payload);
+        if (stored != null) {
+            // stored compressed by the publisher: send the compressed bytes as they are
+            body = PayloadCompression.storedBody(payload, stored);
+            contentEncoding = stored + ":" + charset;
+        } else {
+            body = payload.getBytes(StandardCharsets.UTF_8);
+            byte[] compressed = compression.compress(body);
+            contentEncoding = compressed != null ? compression.contentEncoding(charset) : charset;
+            body = compressed != null ? compressed : body;
+        }
+        Message message = MessageBuilder.withBody(body)
+                .setContentType(MessageProperties.CONTENT_TYPE_JSON)
+                .setContentEncoding(contentEncoding)
+                .setDeliveryMode(MessageDeliveryMode.PERSISTENT)
+                .setHeader(MessageMetadataHelper.HEADER_SOURCE_SERVICE, serviceName)
+                .setHeader(MessageMetadataHelper.HEADER_MESSAGE_ID, row.getMessageId())
+                .setHeader(MessageMetadataHelper.HEADER_MESSAGE_TYPE, row.getMessageType())
+                .build();
+        if (claimCheck != null && claimCheck.applies(body)) {
+            claimCheck.checkIn(row.getMessageId(), body, message.getMessageProperties());
+            return new Message(new byte[0], message.getMessageProperties());
+        }
+        return message;
+    }
+
+    private static final class Outgoing {
+        private final PendingOutbox row;
+        private final Message message;
+
+        private Outgoing(PendingOutbox row, Message message) {
+            this.row = row;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.zula.queue.core;
+
+import com.zula.queue.config.QueueProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claim-check for oversized bodies. Encoded (and possibly compressed) bodies of at least
+ * {@code zula.queue.claim-check.threshold-bytes} are written to the {@link PayloadStore}, and the
+ * message carries only an {@code x-payload-ref} header with an empty body. Consumers stream the
+ * body back from the store when they decode the message.
+ *
+ * Consumers never delete stored bodies: with legacy routing several queues receive the same
+ * reference, retries and dead-lettered copies carry it too, and the inbox keeps pointing at it.
+ * Bodies expire instead; a background sweep deletes those older than
+ * {@code zula.queue.claim-check.ttl-ms}. Producers delete a body right away only when its message
+ * was never published.
+ */
+public class PayloadClaimCheck {
+
+    private static final Logger log = LoggerFactory.getLogger(PayloadClaimCheck.class);
+    private static final RateLimitedLogger failureLog = new RateLimitedLogger(log);
+
+    public static final String HEADER_PAYLOAD_REF = "x-payload-ref";
+    public static final String HEADER_PAYLOAD_SIZE = "x-payload-size";
+
+    private static final String STORED_PREFIX = "claim-check;";
+
+    private final PayloadStore store;
+    private final int thresholdBytes;
+    private final long ttlMs;
+    private final long sweepIntervalMs;
+    private ScheduledExecutorService sweeper;
+
+    public PayloadClaimCheck(PayloadStore store, QueueProperties.ClaimCheck settings) {
+        this.store = store;
+        this.thresholdBytes = settings.getThresholdBytes();
+        this.ttlMs = settings.getTtlMs();
+        this.sweepIntervalMs = settings.getSweepIntervalMs();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (sweepIntervalMs <= 0 || ttlMs <= 0) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "zula-claim-check-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    /**
+     * Delete the bodies stored longer ago than the TTL. Every node may sweep; deletes are idempotent.
+     *
+     * @return the number of bodies deleted
+     */
+    public int sweep() {
+        try {
+            int deleted = store.deleteStoredBefore(Instant.now().minusMillis(ttlMs));
+            if (deleted > 0) {
+                log.debug("Zula: Deleted {} expired claim-check payload(s)", deleted);
+            }
+            return deleted;
+        } catch (Exception ex) {
+            failureLog.warn("sweep", "Zula: Could not delete expired claim-check payloads - {}", ex.getMessage());
+            return 0;
+        }
+    }
+
+    public boolean applies(byte[] body) {
+        return body.length >= thresholdBytes;
+    }
+
+    /**
+     * Store a body and stamp the reference headers on the outgoing message properties.
+     *
+     * @return the reference
+     */
+    public String checkIn(String messageId, byte[] body, MessageProperties props) {
+        try {
+            String reference = store.store(messageId, body);
+            props.setHeader(HEADER_PAYLOAD_REF, reference);
+            props.setHeader(HEADER_PAYLOAD_SIZE, body.length);
+            return reference;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not store claim-check payload for message " + messageId, ex);
+        }
+    }
+
+    /**
+     * The payload reference of a claim-checked message, or null when the body travelled inline.
+     */
+    public static String referenceOf(Message message) {
+        Object header = message.getMessageProperties().getHeaders().get(HEADER_PAYLOAD_REF);
+        return header != null ? header.toString() : null;
+    }
+
+    public InputStream open(String reference) throws IOException {
+        return store.open(reference);
+    }
+
+    /**
+     * Delete the stored body of a message that was never published, e.g. because the send failed
+     * or the broker did not confirm it. Failures are logged, not thrown; the sweep removes the body later.
+     */
+    public void discard(String reference) {
+        try {
+            store.delete(reference);
+        } catch (Exception ex) {
+            failureLog.warn("delete", "Zula: Could not delete claim-check payload {} - {}", reference, ex.getMessage());
+        }
+    }
+
+    /**
+     * What the inbox records for a claim-checked message instead of the body, e.g.
+     * {@code claim-check;<reference>}.
+     */
+    public static byte[] toStoredPayload(String reference) {
+        return (STORED_PREFIX + reference).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,393 @@
+package com.zula.queue.core;
+
+import com.zula.queue.config.QueueProperties;
+import org.springframework.util.ClassUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Threshold-based body compression. Bodies of at least {@code zula.queue.compression.threshold-bytes}
+ * are compressed with GZIP or LZ4 and the algorithm is recorded in the AMQP content-encoding using
+ * Spring AMQP's {@code <algorithm>:<charset>} convention, so Spring's decompressing post-processors
+ * can read GZIP bodies too. Consumers always decompress, whatever the local settings, but never
+ * past {@code max-decompressed-bytes}: declared lengths are checked before allocating and
+ * inflation stops once the limit is crossed.
+ *
+ * Deflaters, inflaters and scratch buffers are pooled rather than allocated per message. LZ4 needs
+ * {@code org.lz4:lz4-java}; its bodies are the original length (4 bytes, big-endian) followed by
+ * one LZ4 block.
+ */
+public class PayloadCompression {
+
+    public static final String GZIP = "gzip";
+    public static final String LZ4 = "lz4";
+
+    private static final String STORED_SUFFIX = ";base64,";
+    private static final boolean LZ4_PRESENT = ClassUtils.isPresent("net.jpountz.lz4.LZ4Factory", PayloadCompression.class.getClassLoader());
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int GZIP_TRAILER = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int SCRATCH_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_SCRATCH = 4 * 1024 * 1024;
+    /** Deflate cannot expand a stream by more than about 1032:1. */
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    private final boolean enabled;
+    private final String algorithm;
+    private final int thresholdBytes;
+    private final boolean storeCompressed;
+    private final int maxDecompressedBytes;
+    private final BlockingQueue<Workspace> pool = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors() * 2);
+
+    public PayloadCompression(QueueProperties.Compression settings) {
+        this.enabled = settings.isEnabled();
+        this.algorithm = settings.getAlgorithm().toLowerCase(Locale.ROOT);
+        this.thresholdBytes = settings.getThresholdBytes();
+        this.storeCompressed = settings.isStoreCompressed();
+        this.maxDecompressedBytes = settings.getMaxDecompressedBytes();
+        if (maxDecompressedBytes <= 0) {
+            throw new IllegalStateException("zula.queue.compression.max-decompressed-bytes must be positive");
+        }
+        if (enabled && !GZIP.equals(algorithm) && !LZ4.equals(algorithm)) {
+            throw new IllegalStateException("Unsupported compression algorithm '" + settings.getAlgorithm() + "'; use gzip or lz4");
+        }
+        if (enabled && LZ4.equals(algorithm) && !LZ4_PRESENT) {
+            throw new IllegalStateException("zula.queue.compression.algorithm=lz4 requires org.lz4:lz4-java on the classpath");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public boolean isStoreCompressed() {
+        return storeCompressed;
+    }
+
+    /**
+     * Compress a body with the configured algorithm.
+     *
+     * @return the compressed body, or null when compression is off or the body is below the threshold
+     */
+    public byte[] compress(byte[] body) {
+        if (!enabled || body.length < thresholdBytes) {
+            return null;
+        }
+        return LZ4.equals(algorithm) ? lz4(body) : gzip(body);
+    }
+
+    /**
+     * Decompress a body according to its algorithm (see {@link #algorithmOf(String)}); a null
+     * algorithm returns the body unchanged.
+     */
+    public byte[] decompress(byte[] body, String algorithm) throws IOException {
+        if (algorithm == null) {
+            return body;
+        }
+        if (GZIP.equals(algorithm)) {
+            return gunzip(body);
+        }
+        if (!LZ4_PRESENT) {
+            throw new IOException("Received an lz4 body but org.lz4:lz4-java is not on the classpath");
+        }
+        return Lz4Blocks.decompress(body, maxDecompressedBytes);
+    }
+
+    /**
+     * Streaming variant of {@link #decompress(byte[], String)} for bodies read from a {@link PayloadStore}.
+     */
+    public InputStream decompress(InputStream body, String algorithm) throws IOException {
+        if (algorithm == null) {
+            return body;
+        }
+        if (GZIP.equals(algorithm)) {
+            return new LimitedInputStream(new GZIPInputStream(body, SCRATCH_SIZE), maxDecompressedBytes);
+        }
+        return new ByteArrayInputStream(decompress(body.readAllBytes(), algorithm));
+    }
+
+    /**
+     * AMQP content-encoding for a compressed body, keeping the original charset when there is one.
+     */
+    public String contentEncoding(String charset) {
+        return charset != null ? algorithm + ":" + charset : algorithm;
+    }
+
+    /**
+     * The compression algorithm named by an AMQP content-encoding such as {@code gzip:UTF-8},
+     * or null when the body is not compressed.
+     */
+    public static String algorithmOf(String contentEncoding) {
+        if (contentEncoding == null) {
+            return null;
+        }
+        int colon = contentEncoding.indexOf(':');
+        String algorithm = (colon >= 0 ? contentEncoding.substring(0, colon) : contentEncoding).trim().toLowerCase(Locale.ROOT);
+        return GZIP.equals(algorithm) || LZ4.equals(algorithm) ? algorithm : null;
+    }
+
+    /**
+     * Text form of a compressed body for the outbox and inbox payload columns, e.g. {@code gzip;base64,H4sI...}.
+     * Plain JSON payloads can never start with this prefix.
+     */
+    public static String toStoredPayload(String algorithm, byte[] compressed) {
+        return algorithm + STORED_SUFFIX + Base64.getEncoder().encodeToString(compressed);
+    }
+
+    /**
+     * The algorithm of a payload written by {@link #toStoredPayload}, or null for a plain payload.
+     */
+    public static String storedAlgorithm(String payload) {
+        for (String algorithm : new String[] {GZIP, LZ4}) {
+            if (payload.startsWith(algorithm + STORED_SUFFIX)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    public static byte[] storedBody(String payload, String algorithm) {
+        return Base64.getDecoder().decode(payload.substring(algorithm.length() + STORED_SUFFIX.length()));
+    }
+
+    private byte[] gzip(byte[] body) {
+        Workspace ws = borrow();
+        try {
+            Deflater deflater = ws.deflater();
+            deflater.setInput(body);
+            deflater.finish();
+            byte[] out = ws.scratch;
+            System.arraycopy(GZIP_HEADER, 0, out, 0, GZIP_HEADER.length);
+            int pos = GZIP_HEADER.length;
+            while (!deflater.finished()) {
+                if (pos == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                pos += deflater.deflate(out, pos, out.length - pos);
+            }
+            if (pos + GZIP_TRAILER > out.length) {
+                out = Arrays.copyOf(out, pos + GZIP_TRAILER);
+            }
+            ws.crc.reset();
+            ws.crc.update(body);
+            writeIntLE(out, pos, (int) ws.crc.getValue());
+            writeIntLE(out, pos + 4, body.length);
+            ws.keep(out);
+            return Arrays.copyOf(out, pos + GZIP_TRAILER);
+        } finally {
+            release(ws);
+        }
+    }
+
+    private byte[] lz4(byte[] body) {
+        Workspace ws = borrow();
+        try {
+            int maxLength = Lz4Blocks.maxCompressedLength(body.length);
+            byte[] out = ws.scratch.length >= maxLength ? ws.scratch : new byte[maxLength];
+            int length = Lz4Blocks.compress(body, out);
+            ws.keep(out);
+            return Arrays.copyOf(out, length);
+        } finally {
+            release(ws);
+        }
+    }
+
+    private byte[] gunzip(byte[] body) throws IOException {
+        if (body.length < GZIP_HEADER.length + GZIP_TRAILER || body[0] != 0x1f || body[1] != (byte) 0x8b || body[2] != Deflater.DEFLATED) {
+            throw new IOException("Body is not in GZIP format");
+        }
+        int flags = body[3];
+        int pos = GZIP_HEADER.length;
+        if ((flags & FEXTRA) != 0) {
+            pos += 2 + ((body[pos] & 0xff) | (body[pos + 1] & 0xff) << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            pos = skipZeroTerminated(body, pos);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            pos = skipZeroTerminated(body, pos);
+        }
+        if ((flags & FHCRC) != 0) {
+            pos += 2;
+        }
+        int trailer = body.length - GZIP_TRAILER;
+        int expectedSize = readIntLE(body, trailer + 4);
+
+        Workspace ws = borrow();
+        try {
+            Inflater inflater = ws.inflater();
+            inflater.setInput(body, pos, trailer - pos);
+            // ISIZE is the size modulo 2^32 and comes from the sender, so it is only a starting
+            // capacity, capped by what the compressed length can produce and by the limit
+            long plausible = Math.min((long) body.length * MAX_DEFLATE_RATIO, maxDecompressedBytes);
+            byte[] out = new byte[expectedSize > 0 && expectedSize <= plausible ? expectedSize : (int) Math.min(SCRATCH_SIZE, plausible)];
+            // one byte of room past the limit tells a body of exactly the limit from a longer one
+            long capacityLimit = Math.min((long) maxDecompressedBytes + 1, Integer.MAX_VALUE - 8);
+            int written = 0;
+            while (!inflater.finished()) {
+                if (written == out.length) {
+                    if (out.length >= capacityLimit) {
+                        throw new IOException("GZIP body inflates to more than the " + maxDecompressedBytes + " bytes allowed");
+                    }
+                    out = Arrays.copyOf(out, (int) Math.min(Math.max(out.length * 2L, 1), capacityLimit));
+                }
+                int n = inflater.inflate(out, written, out.length - written);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated GZIP body");
+                }
+                written += n;
+            }
+            if (written > maxDecompressedBytes) {
+                throw new IOException("GZIP body inflates to more than the " + maxDecompressedBytes + " bytes allowed");
+            }
+            ws.crc.reset();
+            ws.crc.update(out, 0, written);
+            if ((int) ws.crc.getValue() != readIntLE(body, trailer)) {
+                throw new IOException("GZIP body failed its CRC check");
+            }
+            return written == out.length ? out : Arrays.copyOf(out, written);
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupt GZIP body", ex);
+        } finally {
+            release(ws);
+        }
+    }
+
+    private Workspace borrow() {
+        Workspace ws = pool.poll();
+        return ws != null ? ws : new Workspace();
+    }
+
+    private void release(Workspace ws) {
+        if (!pool.offer(ws)) {
+            ws.end();
+        }
+    }
+
+    private static int skipZeroTerminated(byte[] body, int pos) {
+        while (pos < body.length && body[pos] != 0) {
+            pos++;
+        }
+        return pos + 1;
+    }
+
+    private static void writeIntLE(byte[] buf, int pos, int value) {
+        buf[pos] = (byte) value;
+        buf[pos + 1] = (byte) (value >>> 8);
+        buf[pos + 2] = (byte) (value >>> 16);
+        buf[pos + 3] = (byte) (value >>> 24);
+    }
+
+    private static int readIntLE(byte[] buf, int pos) {
+        return (buf[pos] & 0xff) | (buf[pos + 1] & 0xff) << 8 | (buf[pos + 2] & 0xff) << 16 | (buf[pos + 3] & 0xff) << 24;
+    }
+
+    /**
+     * Fails once more than {@code limit} bytes have been read from a decompressing stream.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) throws IOException {
+            count += n;
+            if (count > limit) {
+                throw new IOException("Compressed body inflates to more than the " + limit + " bytes allowed");
+            }
+        }
+    }
+
+    /**
+     * Pooled per-call state: a raw deflater and inflater, a CRC and a scratch buffer that
+     * keeps its grown size up to {@link #MAX_POOLED_SCRATCH}.
+     */
+    private static final class Workspace {
+        private final CRC32 crc = new CRC32();
+        private Deflater deflater;
+        private Inflater inflater;
+        private byte[] scratch = new byte[SCRATCH_SIZE];
+
+        Deflater deflater() {
+            if (deflater == null) {
+                deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            } else {
+                deflater.reset();
+            }
+            return deflater;
+        }
+
+        Inflater inflater() {
+            if (inflater == null) {
+                inflater = new Inflater(true);
+            } else {
+                inflater.reset();
+            }
+            return inflater;
+        }
+
+        void keep(byte[] grown) {
+            if (grown.length <= MAX_POOLED_SCRATCH) {
+                scratch = grown;
+            }
+        }
+
+        void end() {
+            if (deflater != null) {
+                deflater.end();
+            }
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.zula.queue.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+
+/**
+ * Blob storage for claim-checked message bodies (see {@link PayloadClaimCheck}). Producers and
+ * consumers must point at the same store, e.g. a shared volume or a shared database table.
+ *
+ * Built-in implementations: {@link FileSystemPayloadStore} and {@link JdbiPayloadStore}. Declare
+ * a {@code PayloadStore} bean to use something else, such as an object store.
+ */
+public interface PayloadStore {
+
+    /**
+     * Store a body and return the reference that travels in the message instead.
+     */
+    String store(String messageId, byte[] body) throws IOException;
+
+    /**
+     * Open a stored body for reading. The caller closes the stream.
+     */
+    InputStream open(String reference) throws IOException;
+
+    void delete(String reference) throws IOException;
+
+    /**
+     * Delete the bodies stored before {@code cutoff}. Called by {@link PayloadClaimCheck}'s expiry
+     * sweep; a store that expires bodies itself, e.g. with an object store lifecycle rule, can keep
+     * the default.
+     *
+     * @return the number of bodies deleted
+     */
+    default int deleteStoredBefore(Instant cutoff) throws IOException {
+        return 0;
+    }
+}
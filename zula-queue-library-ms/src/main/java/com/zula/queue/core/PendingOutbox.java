@@ -0,0 +1,30 @@
+package com.zula.queue.core;
+
+import com.zula.database.entity.MessageOutbox;
+
+/**
+ * A PENDING outbox row together with the relay columns of {@code db/zula-queue/outbox-relay.sql},
+ * which the {@link MessageOutbox} entity does not map.
+ */
+public final class PendingOutbox {
+
+    private final MessageOutbox row;
+    private final String routingKey;
+    private final String partitionKey;
+
+    public PendingOutbox(MessageOutbox row, String routingKey, String partitionKey) {
+        this.row = row;
+        this.routingKey = routingKey;
+        this.partitionKey = partitionKey;
+    }
+
+    public MessageOutbox getRow() { return row; }
+
+    public String getMessageId() { return row.getMessageId(); }
+
+    /** Routing key resolved when the row was written; null for rows written without one. */
+    public String getRoutingKey() { return routingKey; }
+
+    /** Partition key read from the message when the row was written; null for rows written without one. */
+    public String getPartitionKey() { return partitionKey; }
+}
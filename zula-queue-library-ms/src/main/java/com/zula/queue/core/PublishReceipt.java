@@ -0,0 +1,54 @@
+package com.zula.queue.core;
+
+import org.springframework.amqp.core.ReturnedMessage;
+
+/**
+ * Outcome of an asynchronous publish, delivered once the broker has confirmed the message.
+ */
+public final class PublishReceipt {
+
+    public enum Status {
+        /** The broker accepted the message and routed it. */
+        ACKED,
+        /** The broker refused the message (e.g. an internal error or a rejected publish). */
+        NACKED,
+        /** The message was accepted but could not be routed to any queue. */
+        RETURNED,
+        /** The message was written to the outbox; the outbox relay will publish it. */
+        QUEUED,
+        /** The message was written to the channel but publisher confirms are not enabled. */
+        UNCONFIRMED,
+        /** The message could not be sent or its confirm did not arrive in time. */
+        FAILED
+    }
+
+    private final String messageId;
+    private final Status status;
+    private final String reason;
+    private final ReturnedMessage returned;
+
+    public PublishReceipt(String messageId, Status status, String reason, ReturnedMessage returned) {
+        this.messageId = messageId;
+        this.status = status;
+        this.reason = reason;
+        this.returned = returned;
+    }
+
+    public String getMessageId() { return messageId; }
+
+    public Status getStatus() { return status; }
+
+    /** Nack cause or return reply text, if any. */
+    public String getReason() { return reason; }
+
+    /** The returned message when {@link #getStatus()} is {@link Status#RETURNED}. */
+    public ReturnedMessage getReturned() { return returned; }
+
+    public boolean isAcked() { return status == Status.ACKED; }
+
+    @Override
+    public String toString() {
+        return "PublishReceipt{messageId=" + messageId + ", status=" + status
+                + (reason != null ? ", reason=" + reason : "") + "}";
+    }
+}
@@ -0,0 +1,206 @@
+package com.zula.queue.core;
+
+import com.zula.queue.config.QueueProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.BatchMessageListener;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.context.Lifecycle;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Builds the listener containers used by {@link MessageHandlerRegistry} and
+ * {@link BaseMessageConsumer}, applying the {@code zula.queue.listener} settings for
+ * the container's message type (consumer counts, prefetch, batch size and the
+ * consumer start/stop triggers). Containers of partitioned message types always run a
+ * single consumer on the calling thread so each partition is processed in order.
+ *
+ * With {@code zula.queue.listener.shared=true}, single-message handlers of types without their
+ * own {@code listener.types} entry share one {@link SharedListenerDispatcher} instead.
+ *
+ * When the {@link MessageTransport} consumes by itself (the loopback transport), queues are
+ * subscribed on the transport with the type's consumer count instead of a Rabbit container.
+ */
+public class QueueListenerContainerFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(QueueListenerContainerFactory.class);
+
+    private static final int DEFAULT_CONSUMER_BATCH_SIZE = 100;
+
+    private final ConnectionFactory connectionFactory;
+    private final QueueProperties properties;
+    private final MessageTransport transport;
+    private final ExecutorService virtualThreadExecutor;
+    private volatile SharedListenerDispatcher sharedDispatcher;
+
+    public QueueListenerContainerFactory(ConnectionFactory connectionFactory, QueueProperties properties) {
+        this(connectionFactory, properties, null);
+    }
+
+    public QueueListenerContainerFactory(ConnectionFactory connectionFactory, QueueProperties properties, MessageTransport transport) {
+        this.connectionFactory = connectionFactory;
+        this.properties = properties;
+        this.transport = transport;
+        this.virtualThreadExecutor = properties.getListener().isVirtualThreads()
+                ? VirtualThreadMessageListener.newVirtualThreadExecutor()
+                : null;
+        if (properties.getListener().isVirtualThreads() && virtualThreadExecutor == null) {
+            log.warn("Zula: zula.queue.listener.virtual-threads requires Java 21+; using consumer threads");
+        }
+    }
+
+    public QueueProperties.Listener getListenerSettings() {
+        return properties.getListener();
+    }
+
+    /**
+     * Create a configured but not yet started container for a queue.
+     */
+    public SimpleMessageListenerContainer createContainer(String queueName, String messageType) {
+        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(connectionFactory);
+        container.setQueueNames(queueName);
+        applySettings(container, properties.getListener().resolve(messageType));
+        if (isOrdered(messageType)) {
+            container.setConcurrentConsumers(1);
+            container.setMaxConcurrentConsumers(1);
+        }
+        return container;
+    }
+
+    /**
+     * Create, configure and start a container that hands deliveries to {@code listener}, or add
+     * the queue to the shared container (see {@link #usesSharedContainer}). In virtual-thread mode
+     * the listener runs on a virtual thread and the delivery is acked manually once it returns.
+     */
+    public Lifecycle startContainer(String queueName, String messageType, MessageListener listener) {
+        Lifecycle subscription = transport != null ? transport.subscribe(queueName, listener, consumersOf(messageType)) : null;
+        if (subscription != null) {
+            return subscription;
+        }
+        if (usesSharedContainer(messageType)) {
+            return sharedDispatcher().addQueue(queueName, messageType, listener);
+        }
+        SimpleMessageListenerContainer container = createContainer(queueName, messageType);
+        if (virtualThreadExecutor != null && !isOrdered(messageType)) {
+            Integer prefetch = properties.getListener().resolve(messageType).getPrefetchCount();
+            int maxInFlight = prefetch != null ? prefetch : AbstractMessageListenerContainer.DEFAULT_PREFETCH_COUNT;
+            container.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+            container.setMessageListener(new VirtualThreadMessageListener(listener, virtualThreadExecutor, maxInFlight,
+                    properties.getLogging()));
+        } else {
+            container.setMessageListener(listener);
+        }
+        container.start();
+        return container;
+    }
+
+    /**
+     * Create and start a container that delivers messages in batches of up to the type's
+     * {@code batch-size} (100 by default), or fewer once {@code receive-timeout-ms} passes
+     * without a new message. The whole batch is acked when the listener returns.
+     */
+    public Lifecycle startBatchContainer(String queueName, String messageType, BatchMessageListener listener) {
+        QueueProperties.ContainerSettings settings = properties.getListener().resolve(messageType);
+        Lifecycle subscription = transport != null
+                ? transport.subscribeBatch(queueName, listener, consumersOf(messageType),
+                        settings.getBatchSize() != null ? settings.getBatchSize() : DEFAULT_CONSUMER_BATCH_SIZE)
+                : null;
+        if (subscription != null) {
+            return subscription;
+        }
+        SimpleMessageListenerContainer container = createContainer(queueName, messageType);
+        if (settings.getBatchSize() == null) {
+            container.setBatchSize(DEFAULT_CONSUMER_BATCH_SIZE);
+        }
+        container.setConsumerBatchEnabled(true);
+        container.setDeBatchingEnabled(true);
+        container.setMessageListener(listener);
+        container.start();
+        return container;
+    }
+
+    /**
+     * Whether single-message handlers of a type go to the shared container: shared mode is on,
+     * virtual threads are off, the type has no {@code listener.types} entry and, for partitioned
+     * types, the shared container runs one consumer per queue.
+     */
+    public boolean usesSharedContainer(String messageType) {
+        QueueProperties.Listener listener = properties.getListener();
+        return listener.isShared()
+                && virtualThreadExecutor == null
+                && (messageType == null || !listener.getTypes().containsKey(messageType.toLowerCase()))
+                && (!isOrdered(messageType) || listener.getSharedConsumersPerQueue() <= 1);
+    }
+
+    private SharedListenerDispatcher sharedDispatcher() {
+        SharedListenerDispatcher dispatcher = sharedDispatcher;
+        if (dispatcher == null) {
+            synchronized (this) {
+                dispatcher = sharedDispatcher;
+                if (dispatcher == null) {
+                    QueueProperties.Listener listener = properties.getListener();
+                    dispatcher = new SharedListenerDispatcher(connectionFactory,
+                            listener.getSharedConsumersPerQueue(), listener.getPrefetchCount());
+                    sharedDispatcher = dispatcher;
+                }
+            }
+        }
+        return dispatcher;
+    }
+
+    private int consumersOf(String messageType) {
+        Integer consumers = properties.getListener().resolve(messageType).getConcurrentConsumers();
+        return isOrdered(messageType) || consumers == null ? 1 : consumers;
+    }
+
+    private boolean isOrdered(String messageType) {
+        return properties.getPartitioning().partitionsOf(messageType) > 1;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (sharedDispatcher != null) {
+            sharedDispatcher.stop();
+        }
+        if (virtualThreadExecutor != null) {
+            virtualThreadExecutor.shutdown();
+        }
+    }
+
+    private void applySettings(SimpleMessageListenerContainer container, QueueProperties.ContainerSettings settings) {
+        if (settings.getConcurrentConsumers() != null) {
+            container.setConcurrentConsumers(settings.getConcurrentConsumers());
+        }
+        if (settings.getMaxConcurrentConsumers() != null) {
+            int concurrent = settings.getConcurrentConsumers() != null ? settings.getConcurrentConsumers() : 1;
+            container.setMaxConcurrentConsumers(Math.max(concurrent, settings.getMaxConcurrentConsumers()));
+        }
+        if (settings.getPrefetchCount() != null) {
+            container.setPrefetchCount(settings.getPrefetchCount());
+        }
+        if (settings.getBatchSize() != null) {
+            container.setBatchSize(settings.getBatchSize());
+        }
+        if (settings.getConsecutiveActiveTrigger() != null) {
+            container.setConsecutiveActiveTrigger(settings.getConsecutiveActiveTrigger());
+        }
+        if (settings.getConsecutiveIdleTrigger() != null) {
+            container.setConsecutiveIdleTrigger(settings.getConsecutiveIdleTrigger());
+        }
+        if (settings.getStartConsumerMinIntervalMs() != null) {
+            container.setStartConsumerMinInterval(settings.getStartConsumerMinIntervalMs());
+        }
+        if (settings.getStopConsumerMinIntervalMs() != null) {
+            container.setStopConsumerMinInterval(settings.getStopConsumerMinIntervalMs());
+        }
+        if (settings.getReceiveTimeoutMs() != null) {
+            container.setReceiveTimeout(settings.getReceiveTimeoutMs());
+        }
+    }
+}
@@ -2,35 +2,73 @@ package com.zula.queue.core;
 
 import com.zula.queue.config.QueueProperties;
 import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 @Component
 public class QueueManager {
 
-    private final RabbitAdmin rabbitAdmin;
+    private static final Logger log = LoggerFactory.getLogger(QueueManager.class);
+
+    private final MessageTransport transport;
     private final QueueProperties properties;
-    private final Set<String> createdQueues = new HashSet<>();
-    private final Set<String> createdExchanges = new HashSet<>();
+    /**
+     * Topology declared on the current connection, keyed by "exchange:" / "queue:" name. A hit
+     * is a lock-free read. Concurrent first declarations of the same key collapse into a single
+     * broker call: the thread that registers the key runs it, outside any map lock, and the
+     * others wait for its outcome. The stored action replays the declaration when the
+     * connection is re-established.
+     */
+    private final ConcurrentMap<String, Declaration> declarations = new ConcurrentHashMap<>();
+
+    @Value("${spring.application.name:unknown-service}")
+    private String serviceName = "unknown-service";
 
-    @Autowired
     public QueueManager(RabbitAdmin rabbitAdmin, QueueProperties properties) {
-        this.rabbitAdmin = rabbitAdmin;
+        this(new RabbitMessageTransport(rabbitAdmin), properties);
+    }
+
+    @Autowired
+    public QueueManager(MessageTransport transport, QueueProperties properties) {
+        this.transport = transport;
         this.properties = properties;
     }
 
     @PostConstruct
     public void init() {
-        System.out.println("Zula Queue Manager initialized");
-        System.out.println("Auto-create queues: " + properties.isAutoCreateQueues());
+        transport.onReconnect(this::redeclareAll);
+        log.info("Zula Queue Manager initialized (auto-create queues: {}, routing mode: {})",
+                properties.isAutoCreateQueues(), properties.getRoutingMode());
+    }
+
+    /**
+     * The transport and settings this manager declares with, for collaborators built without
+     * their own (e.g. {@link MessageHandlerRegistry}'s shorter constructors).
+     */
+    MessageTransport getTransport() {
+        return transport;
+    }
+
+    QueueProperties getProperties() {
+        return properties;
     }
 
     public void createServiceQueue(String serviceName, String messageType) {
@@ -42,30 +80,258 @@ public class QueueManager {
         String exchangeName = generateExchangeName(messageType);
 
         createExchange(exchangeName);
-        createQueue(queueName, exchangeName);
+        int partitions = properties.getPartitioning().partitionsOf(messageType);
+        if (partitions > 1) {
+            if (serviceName.equalsIgnoreCase(this.serviceName)) {
+                unbindUnpartitionedQueue(queueName, exchangeName, serviceName, messageType);
+            }
+            for (int partition = 0; partition < partitions; partition++) {
+                createPartitionQueue(queueName, exchangeName, serviceName, messageType, partition);
+            }
+            return;
+        }
+        createQueue(queueName, exchangeName, serviceName, messageType);
+    }
+
+    /**
+     * Queues a service consumes a message type from: the partition queues of a partitioned
+     * type, otherwise the single service queue.
+     */
+    public List<String> getQueueNames(String serviceName, String messageType) {
+        String queueName = generateQueueName(serviceName, messageType);
+        int partitions = properties.getPartitioning().partitionsOf(messageType);
+        if (partitions == 1) {
+            return List.of(queueName);
+        }
+        List<String> names = new ArrayList<>(partitions);
+        for (int partition = 0; partition < partitions; partition++) {
+            names.add(queueName + ".p" + partition);
+        }
+        return names;
+    }
+
+    /**
+     * Append the partition segment for {@code partitionKey} to a routing key; the key is
+     * returned unchanged for types that are not partitioned.
+     */
+    public String partitionRoutingKey(String routingKey, String messageType, String partitionKey) {
+        int partitions = properties.getPartitioning().partitionsOf(messageType);
+        if (partitions == 1) {
+            return routingKey;
+        }
+        return routingKey + ".p" + partitionOf(partitionKey, partitions);
+    }
+
+    public boolean isPartitioned(String messageType) {
+        return properties.getPartitioning().partitionsOf(messageType) > 1;
+    }
+
+    /**
+     * Partition of a key: the murmur3 finalizer applied to {@link String#hashCode()}, modulo the
+     * partition count. Both are fixed by their specifications, so every publisher agrees.
+     */
+    public static int partitionOf(String partitionKey, int partitions) {
+        int h = partitionKey.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, partitions);
+    }
+
+    /**
+     * Routing key for a message of {@code messageType} addressed to {@code serviceName}; the
+     * service is only part of the key outside {@link QueueProperties.RoutingMode#LEGACY} mode.
+     */
+    public String routingKey(String messageType, String serviceName, String action) {
+        String type = messageType.toLowerCase();
+        if (properties.getRoutingMode() == QueueProperties.RoutingMode.LEGACY) {
+            return type + "." + action.toLowerCase();
+        }
+        return type + "." + serviceName.toLowerCase() + "." + action.toLowerCase();
     }
 
     private void createExchange(String exchangeName) {
-        if (!createdExchanges.contains(exchangeName)) {
+        declareOnce("exchange:" + exchangeName, () -> {
             TopicExchange exchange = new TopicExchange(exchangeName, true, false);
-            rabbitAdmin.declareExchange(exchange);
-            createdExchanges.add(exchangeName);
-            System.out.println("Zula: Created exchange: " + exchangeName);
-        }
+            transport.declareExchange(exchange);
+            log.info("Zula: Created exchange: {}", exchangeName);
+        });
     }
 
-    private void createQueue(String queueName, String exchangeName) {
-        if (!createdQueues.contains(queueName)) {
+    /**
+     * Declares the queue and its bindings for the current routing mode. Publishers also declare
+     * their targets' queues, so only the owning service (the queue's own application) removes
+     * bindings or binds {@code #}; other services only add the narrow binding they route with,
+     * which never undoes a migration the owner has made.
+     */
+    private void createQueue(String queueName, String exchangeName, String targetService, String messageType) {
+        declareOnce("queue:" + queueName, () -> {
             Queue queue = new Queue(queueName, true, false, false);
-            rabbitAdmin.declareQueue(queue);
+            transport.declareQueue(queue);
+
+            TopicExchange exchange = new TopicExchange(exchangeName);
+            QueueProperties.RoutingMode mode = properties.getRoutingMode();
+            String type = messageType.toLowerCase();
+            boolean owner = targetService.equalsIgnoreCase(this.serviceName);
+            Binding legacy = BindingBuilder.bind(queue).to(exchange).with(type + ".*");
+            if (mode == QueueProperties.RoutingMode.LEGACY) {
+                if (owner) {
+                    transport.declareBinding(BindingBuilder.bind(queue).to(exchange).with("#"));
+                } else {
+                    warnLegacyPublisher(queueName, targetService);
+                    transport.declareBinding(legacy);
+                }
+            } else {
+                transport.declareBinding(BindingBuilder.bind(queue).to(exchange).with(type + "." + targetService.toLowerCase() + ".#"));
+                if (owner) {
+                    transport.removeBinding(BindingBuilder.bind(queue).to(exchange).with("#"));
+                    if (mode == QueueProperties.RoutingMode.MIGRATION) {
+                        transport.declareBinding(legacy);
+                    } else {
+                        transport.removeBinding(legacy);
+                    }
+                }
+            }
+
+            log.info("Zula: Created queue: {}", queueName);
+        });
+    }
+
+    /**
+     * Declares one partition queue of a service. Each is a single-active-consumer queue so only
+     * one consumer across all nodes reads it at a time, which keeps per-key order. Bindings follow
+     * {@link #createQueue}'s routing-mode rules, with the partition segment appended.
+     */
+    private void createPartitionQueue(String queueName, String exchangeName, String targetService, String messageType, int partition) {
+        String partitionQueueName = queueName + ".p" + partition;
+        declareOnce("queue:" + partitionQueueName, () -> {
+            Queue queue = QueueBuilder.durable(partitionQueueName).singleActiveConsumer().build();
+            transport.declareQueue(queue);
+
+            TopicExchange exchange = new TopicExchange(exchangeName);
+            QueueProperties.RoutingMode mode = properties.getRoutingMode();
+            String type = messageType.toLowerCase();
+            String suffix = ".p" + partition;
+            boolean owner = targetService.equalsIgnoreCase(this.serviceName);
+            Binding legacy = BindingBuilder.bind(queue).to(exchange).with(type + ".*" + suffix);
+            if (mode == QueueProperties.RoutingMode.LEGACY) {
+                if (owner) {
+                    transport.declareBinding(BindingBuilder.bind(queue).to(exchange).with("#" + suffix));
+                } else {
+                    warnLegacyPublisher(partitionQueueName, targetService);
+                    transport.declareBinding(legacy);
+                }
+            } else {
+                transport.declareBinding(BindingBuilder.bind(queue).to(exchange).with(type + "." + targetService.toLowerCase() + ".#" + suffix));
+                if (owner) {
+                    transport.removeBinding(BindingBuilder.bind(queue).to(exchange).with("#" + suffix));
+                    if (mode == QueueProperties.RoutingMode.MIGRATION) {
+                        transport.declareBinding(legacy);
+                    } else {
+                        transport.removeBinding(legacy);
+                    }
+                }
+            }
+
+            log.info("Zula: Created partition queue: {}", partitionQueueName);
+        });
+    }
+
+    /**
+     * A LEGACY-mode service declaring another service's queue binds only its own routing keys,
+     * not {@code #}, which would re-add the catch-all binding a migrated owner has removed.
+     */
+    private void warnLegacyPublisher(String queueName, String targetService) {
+        log.warn("Zula: {} uses LEGACY routing for {}, owned by {}; binding only legacy routing keys instead of #. "
+                + "Move this service to MIGRATION routing", this.serviceName, queueName, targetService);
+    }
+
+    /**
+     * Removes the bindings of the queue a type used before it was partitioned: they would also
+     * match the partitioned routing keys and keep filling a queue nobody consumes. The queue
+     * itself, and anything still in it, is left for the operator to drain and delete.
+     */
+    private void unbindUnpartitionedQueue(String queueName, String exchangeName, String targetService, String messageType) {
+        declareOnce("unbind:" + queueName, () -> {
+            Queue queue = new Queue(queueName);
+            TopicExchange exchange = new TopicExchange(exchangeName);
+            String type = messageType.toLowerCase();
+            for (String pattern : List.of("#", type + ".*", type + "." + targetService.toLowerCase() + ".#")) {
+                try {
+                    transport.removeBinding(BindingBuilder.bind(queue).to(exchange).with(pattern));
+                } catch (RuntimeException ex) {
+                    // the queue never existed, e.g. a type partitioned from the start
+                    log.debug("Zula: Could not unbind {} from {} with {} - {}", queueName, exchangeName, pattern, ex.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Declares the retry queues of a service queue, one per backoff delay, and its dead-letter
+     * queue. A retry queue holds messages for its TTL and then dead-letters them back to
+     * {@code queueName} through the default exchange, so no bindings are involved. They are
+     * declared even with {@code auto-create-queues=false}: retries are opted into separately, and
+     * copies sent to a queue that does not exist would be dropped.
+     */
+    public void createRetryQueues(String queueName, Collection<Long> delaysMs, boolean deadLetter) {
+        for (long delayMs : delaysMs) {
+            String retryQueueName = generateRetryQueueName(queueName, delayMs);
+            declareOnce("queue:" + retryQueueName, () -> transport.declareQueue(QueueBuilder.durable(retryQueueName)
+                    .ttl((int) delayMs)
+                    .deadLetterExchange("")
+                    .deadLetterRoutingKey(queueName)
+                    .build()));
+        }
+        if (deadLetter) {
+            String deadLetterQueueName = generateDeadLetterQueueName(queueName);
+            declareOnce("queue:" + deadLetterQueueName, () -> transport.declareQueue(QueueBuilder.durable(deadLetterQueueName).build()));
+        }
+    }
+
+    public String generateRetryQueueName(String queueName, long delayMs) {
+        return queueName + ".retry." + delayMs;
+    }
 
-            Binding binding = BindingBuilder.bind(queue)
-                    .to(new TopicExchange(exchangeName))
-                    .with("#");
-            rabbitAdmin.declareBinding(binding);
+    public String generateDeadLetterQueueName(String queueName) {
+        return queueName + ".dlq";
+    }
+
+    private void declareOnce(String key, Runnable declaration) {
+        Declaration existing = declarations.get(key);
+        if (existing == null) {
+            Declaration created = new Declaration(declaration);
+            existing = declarations.putIfAbsent(key, created);
+            if (existing == null) {
+                created.task.run();
+                existing = created;
+            }
+        }
+        if (!existing.isDeclared()) {
+            existing.await(key, declarations);
+        }
+    }
 
-            createdQueues.add(queueName);
-            System.out.println("Zula: Created queue: " + queueName);
+    /**
+     * Replays every known declaration after the connection is (re)created, e.g. after a broker
+     * restart, so the cached fast path never points at topology that no longer exists.
+     */
+    private void redeclareAll() {
+        if (declarations.isEmpty()) {
+            return;
+        }
+        for (Declaration declaration : declarations.values()) {
+            if (!declaration.isDeclared()) {
+                // still running for the first time, or failed and about to be removed
+                continue;
+            }
+            try {
+                declaration.action.run();
+            } catch (Exception ex) {
+                log.warn("Zula: Could not redeclare topology after reconnect - {}", ex.getMessage());
+            }
         }
     }
 
@@ -79,4 +345,51 @@ public class QueueManager {
     public String generateExchangeName(String messageType) {
         return messageType.toLowerCase() + properties.getExchangeSuffix();
     }
+
+    /**
+     * A declaration and the outcome of its first run.
+     */
+    private static final class Declaration {
+        private final Runnable action;
+        private final FutureTask<Void> task;
+
+        private Declaration(Runnable action) {
+            this.action = action;
+            this.task = new FutureTask<>(action, null);
+        }
+
+        private boolean isDeclared() {
+            if (!task.isDone()) {
+                return false;
+            }
+            try {
+                task.get(); // done: returns at once
+                return true;
+            } catch (ExecutionException | CancellationException | InterruptedException ex) {
+                return false;
+            }
+        }
+
+        /**
+         * Wait for the first run; if it failed, forget the key so the next caller retries, and
+         * rethrow its exception.
+         */
+        private void await(String key, ConcurrentMap<String, Declaration> declarations) {
+            try {
+                task.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while " + key + " was being declared", ex);
+            } catch (ExecutionException ex) {
+                declarations.remove(key, this);
+                if (ex.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                if (ex.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw new IllegalStateException("Could not declare " + key, ex.getCause());
+            }
+        }
+    }
 }
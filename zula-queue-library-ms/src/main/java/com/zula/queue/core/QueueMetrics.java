@@ -0,0 +1,77 @@
+package com.zula.queue.core;
+
+/**
+ * Instrumentation hooks on the publish and consume paths. Callers take a start time with
+ * {@link #start()} and report it with {@link #record}; {@link #NOOP}, used when Micrometer or a
+ * {@code MeterRegistry} is missing or {@code zula.queue.metrics.enabled=false}, does nothing
+ * and allocates nothing. {@link MicrometerQueueMetrics} is the Micrometer implementation.
+ */
+public interface QueueMetrics {
+
+    QueueMetrics NOOP = new QueueMetrics() { };
+
+    /**
+     * Timed stage of a message's way through the library.
+     */
+    enum Stage {
+        /** Descriptor, exchange and routing-key resolution and topology declaration. */
+        RESOLVE(true, "resolve"),
+        /** Serializing (and compressing) the body. */
+        ENCODE(true, "encode"),
+        /** Writing the outbox row. */
+        PERSIST(true, "persist"),
+        /** Handing the message to the broker. */
+        SEND(true, "send"),
+        /** From send until the broker confirm arrives (publishAsync). */
+        CONFIRM(true, "confirm"),
+        /** Decompressing and deserializing a received body. */
+        DECODE(false, "decode"),
+        /** Writing the inbox row. */
+        INBOX(false, "inbox"),
+        /** Running the handler(s). */
+        HANDLER(false, "handler"),
+        /** Marking the inbox row processed. */
+        PROCESSED(false, "processed");
+
+        private final boolean outbound;
+        private final String tag;
+
+        Stage(boolean outbound, String tag) {
+            this.outbound = outbound;
+            this.tag = tag;
+        }
+
+        public boolean isOutbound() {
+            return outbound;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    /**
+     * Start time for a later {@link #record} call.
+     */
+    default long start() {
+        return 0L;
+    }
+
+    default void record(Stage stage, String messageType, long startNanos) {
+    }
+
+    default void error(Stage stage, String messageType) {
+    }
+
+    /**
+     * Size of a body as sent or received, after compression.
+     */
+    default void payloadSize(boolean outbound, String messageType, int bytes) {
+    }
+
+    /**
+     * Adjust the number of messages being published (awaiting confirm) or consumed.
+     */
+    default void inFlight(boolean outbound, String messageType, int delta) {
+    }
+}
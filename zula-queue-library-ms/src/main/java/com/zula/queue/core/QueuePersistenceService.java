@@ -6,44 +6,434 @@ import com.zula.database.core.DatabaseManager;
 import com.zula.database.dao.MessageDao;
 import com.zula.database.entity.MessageInbox;
 import com.zula.database.entity.MessageOutbox;
+import com.zula.queue.config.QueueProperties;
+import jakarta.annotation.PreDestroy;
+import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.mapper.reflect.BeanMapper;
+import org.jdbi.v3.core.statement.PreparedBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 
 /**
  * Persists inbound/outbound queue traffic into the service-specific queue schema.
  */
 public class QueuePersistenceService {
 
+    private static final Logger log = LoggerFactory.getLogger(QueuePersistenceService.class);
+    private final RateLimitedLogger failureLog;
+
+    private static final String STATUS_PENDING = "PENDING";
     private static final String STATUS_SENT = "SENT";
+    private static final String STATUS_FAILED = "FAILED";
     private static final String STATUS_RECEIVED = "RECEIVED";
     private static final String STATUS_PROCESSED = "PROCESSED";
 
+    /**
+     * Columns MessageDao.insertOutbox and MessageDao.insertInbox write, in one place for the
+     * batch statements below. Each is bound from the entity property of the same name in camel case.
+     */
+    static final List<String> OUTBOX_COLUMNS = List.of("message_id", "message_type", "target_service", "payload",
+            "status", "sent_at", "created_at", "updated_at", "retry_count");
+    static final List<String> INBOX_COLUMNS = List.of("message_id", "message_type", "source_service", "payload",
+            "status", "created_at", "updated_at", "processed_at");
+    /**
+     * Outbox columns of {@code db/zula-queue/outbox-relay.sql} written with a PENDING row.
+     */
+    static final List<String> RELAY_COLUMNS = List.of("routing_key", "partition_key");
+
     private final Jdbi jdbi;
     private final DatabaseManager databaseManager;
     private final ObjectMapper objectMapper;
     private final String queueSchema;
+    private final String insertOutboxSql;
+    private final String insertPendingOutboxSql;
+    private final String insertInboxSql;
+    private final String insertPipelinedInboxSql;
+    private final String updateInboxStatusSql;
+    private final String markInboxProcessedBatchSql;
+    private final String claimOutboxSql;
+    private final String markOutboxSentSql;
+    private final String markOutboxRetrySql;
+    private final String checkRelaySchemaSql;
+    private final GroupCommitWriter<MessageOutbox> outboxWriter;
+    private final GroupCommitWriter<InboxWrite> inboxWriter;
 
     public QueuePersistenceService(Jdbi jdbi,
                                    DatabaseManager databaseManager,
                                    ObjectMapper objectMapper,
                                    DatabaseProperties properties) {
+        this(jdbi, databaseManager, objectMapper, properties, new QueueProperties());
+    }
+
+    public QueuePersistenceService(Jdbi jdbi,
+                                   DatabaseManager databaseManager,
+                                   ObjectMapper objectMapper,
+                                   DatabaseProperties properties,
+                                   QueueProperties queueProperties) {
         this.jdbi = jdbi;
         this.databaseManager = databaseManager;
+        this.failureLog = new RateLimitedLogger(log, queueProperties.getLogging());
         this.objectMapper = objectMapper != null ? objectMapper : new ObjectMapper();
         this.queueSchema = databaseManager.generateQueueSchemaName();
+        this.insertOutboxSql = insertSql(queueSchema + ".message_outbox", OUTBOX_COLUMNS);
+        List<String> pendingColumns = new ArrayList<>(OUTBOX_COLUMNS);
+        pendingColumns.addAll(RELAY_COLUMNS);
+        this.insertPendingOutboxSql = insertSql(queueSchema + ".message_outbox", pendingColumns);
+        // A redelivered or retried message keeps its message id, so its row may exist already;
+        // skipping it keeps the rest of a batch insert from rolling back.
+        this.insertInboxSql = insertSql(queueSchema + ".message_inbox", INBOX_COLUMNS) + " ON CONFLICT (message_id) DO NOTHING";
+        // Pipelined inserts may carry a folded status update, which still applies to an existing row.
+        this.insertPipelinedInboxSql = insertSql(queueSchema + ".message_inbox", INBOX_COLUMNS)
+                + " ON CONFLICT (message_id) DO UPDATE SET status = EXCLUDED.status, processed_at = EXCLUDED.processed_at, "
+                + "updated_at = EXCLUDED.updated_at WHERE EXCLUDED.status <> '" + STATUS_RECEIVED + "'";
+        // Inbox equivalent of MessageDao.updateInboxStatus.
+        this.updateInboxStatusSql = "UPDATE " + queueSchema + ".message_inbox "
+                + "SET status = :status, processed_at = :processedAt, updated_at = :updatedAt "
+                + "WHERE message_id = :messageId";
+        this.markInboxProcessedBatchSql = "UPDATE " + queueSchema + ".message_inbox "
+                + "SET status = '" + STATUS_PROCESSED + "', processed_at = :now, updated_at = :now "
+                + "WHERE message_id IN (<messageIds>)";
+        // Relay queries: SKIP LOCKED lets several relay threads/nodes claim disjoint batches, and the
+        // lease keeps claimed rows away from other relays after the claim transaction has committed.
+        this.claimOutboxSql = "UPDATE " + queueSchema + ".message_outbox SET relay_lease_until = :leaseUntil "
+                + "WHERE message_id IN (SELECT message_id FROM " + queueSchema + ".message_outbox "
+                + "WHERE status = '" + STATUS_PENDING + "' AND (relay_lease_until IS NULL OR relay_lease_until < :now) "
+                + "AND (retry_count = 0 OR updated_at <= :retryBefore) "
+                + "ORDER BY created_at LIMIT :limit FOR UPDATE SKIP LOCKED) RETURNING *";
+        this.markOutboxSentSql = "UPDATE " + queueSchema + ".message_outbox "
+                + "SET status = '" + STATUS_SENT + "', sent_at = :now, updated_at = :now, relay_lease_until = NULL "
+                + "WHERE message_id IN (<messageIds>)";
+        this.markOutboxRetrySql = "UPDATE " + queueSchema + ".message_outbox "
+                + "SET retry_count = retry_count + 1, updated_at = :now, relay_lease_until = NULL, "
+                + "status = CASE WHEN retry_count + 1 >= :maxRetries THEN '" + STATUS_FAILED + "' ELSE '" + STATUS_PENDING + "' END "
+                + "WHERE message_id IN (<messageIds>)";
+        this.checkRelaySchemaSql = "SELECT routing_key, partition_key, relay_lease_until FROM " + queueSchema + ".message_outbox LIMIT 0";
 
         if (properties.isAutoCreateQueueSchema()) {
             databaseManager.createQueueSchemaAndTables();
+            initializeRelaySchema();
         }
+
+        QueueProperties.Outbox outbox = queueProperties.getOutbox();
+        this.outboxWriter = outbox.isGroupCommit()
+                ? new GroupCommitWriter<>("zula-outbox-writer", outbox.getCapacity(), outbox.getFlushSize(),
+                        Duration.ofMillis(outbox.getLingerMs()), this::insertOutboxBatch)
+                : null;
+
+        QueueProperties.Inbox inbox = queueProperties.getInbox();
+        this.inboxWriter = inbox.isPipelined()
+                ? new GroupCommitWriter<>("zula-inbox-writer", inbox.getCapacity(), inbox.getFlushSize(),
+                        Duration.ofMillis(inbox.getLingerMs()), this::writeInboxBatch)
+                : null;
     }
 
+    /**
+     * {@code INSERT INTO table (a_b, ...) VALUES (:aB, ...)} for the given columns.
+     */
+    static String insertSql(String table, List<String> columns) {
+        StringJoiner names = new StringJoiner(", ", " (", ")");
+        StringJoiner values = new StringJoiner(", ", " VALUES (", ")");
+        for (String column : columns) {
+            names.add(column);
+            StringBuilder property = new StringBuilder();
+            for (String part : column.split("_")) {
+                property.append(property.length() == 0 ? part : StringUtils.capitalize(part));
+            }
+            values.add(":" + property);
+        }
+        return "INSERT INTO " + table + names + values;
+    }
+
+    public boolean isGroupCommitEnabled() {
+        return outboxWriter != null;
+    }
+
+    public boolean isInboxPipelined() {
+        return inboxWriter != null;
+    }
+
+    /**
+     * Persist an outbox row and return once it is durable. In group-commit mode the row
+     * is written as part of the next batch and this call waits for that batch.
+     */
     public String persistOutbox(Object message,
                                 String messageType,
                                 String targetService,
                                 String messageId) {
-        String payload = toPayload(message);
+        return persistOutboxPayload(toPayload(message), messageType, targetService, messageId);
+    }
+
+    /**
+     * Same as {@link #persistOutbox(Object, String, String, String)} for a payload the caller
+     * has already serialized, so the publisher can reuse the bytes it sends to the broker.
+     */
+    public String persistOutboxPayload(String payload,
+                                       String messageType,
+                                       String targetService,
+                                       String messageId) {
+        MessageOutbox outbox = newOutbox(payload, messageType, targetService, messageId);
+        if (outboxWriter != null) {
+            try {
+                outboxWriter.submit(outbox).join();
+            } catch (CompletionException ex) {
+                throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+            }
+            return messageId;
+        }
+        jdbi.useExtension(MessageDao.class, dao -> dao.insertOutbox(outbox, queueSchema));
+        return messageId;
+    }
+
+    /**
+     * Queue an outbox row for the group-commit writer without waiting for it. The future
+     * completes with the message id once the row's batch has been committed. Without
+     * group commit the row is inserted immediately and an already completed future is returned.
+     */
+    public CompletableFuture<String> persistOutboxAsync(Object message,
+                                                        String messageType,
+                                                        String targetService,
+                                                        String messageId) {
+        return persistOutboxPayloadAsync(toPayload(message), messageType, targetService, messageId);
+    }
+
+    public CompletableFuture<String> persistOutboxPayloadAsync(String payload,
+                                                               String messageType,
+                                                               String targetService,
+                                                               String messageId) {
+        MessageOutbox outbox = newOutbox(payload, messageType, targetService, messageId);
+        if (outboxWriter == null) {
+            try {
+                jdbi.useExtension(MessageDao.class, dao -> dao.insertOutbox(outbox, queueSchema));
+                return CompletableFuture.completedFuture(messageId);
+            } catch (Exception ex) {
+                return CompletableFuture.failedFuture(ex);
+            }
+        }
+        return outboxWriter.submit(outbox).thenApply(ignored -> messageId);
+    }
+
+    /**
+     * Add the relay columns of {@code db/zula-queue/outbox-relay.sql} to the outbox table when
+     * they do not exist yet.
+     */
+    public void initializeRelaySchema() {
+        SchemaScripts.run(jdbi, "outbox-relay.sql", Map.of("schema", queueSchema));
+    }
+
+    /**
+     * Fail with a pointer to {@code db/zula-queue/outbox-relay.sql} when the outbox table lacks
+     * the relay columns.
+     */
+    public void checkRelaySchema() {
+        try {
+            jdbi.useHandle(handle -> handle.createQuery(checkRelaySchemaSql).mapToMap().list());
+        } catch (Exception ex) {
+            throw new IllegalStateException("Zula: " + queueSchema + ".message_outbox is missing the outbox relay columns; "
+                    + "add db/zula-queue/outbox-relay.sql to your migrations or enable auto-create-queue-schema", ex);
+        }
+    }
+
+    /**
+     * Insert a PENDING outbox row for the relay using the caller's handle, so the row
+     * commits or rolls back together with the caller's own transaction.
+     */
+    public String enqueueOutbox(Handle handle,
+                                Object message,
+                                String messageType,
+                                String targetService,
+                                String messageId) {
+        return enqueueOutbox(handle, message, messageType, targetService, messageId, null, null);
+    }
+
+    /**
+     * Same as {@link #enqueueOutbox(Handle, Object, String, String, String)}, recording the routing
+     * key and partition key the relay publishes the row with.
+     */
+    public String enqueueOutbox(Handle handle,
+                                Object message,
+                                String messageType,
+                                String targetService,
+                                String messageId,
+                                String routingKey,
+                                String partitionKey) {
+        MessageOutbox outbox = newPendingOutbox(toPayload(message), messageType, targetService, messageId);
+        insertPendingOutbox(handle, new PendingOutbox(outbox, routingKey, partitionKey));
+        return messageId;
+    }
+
+    /**
+     * Insert a PENDING outbox row for the relay in its own transaction.
+     */
+    public String enqueueOutbox(Object message,
+                                String messageType,
+                                String targetService,
+                                String messageId) {
+        return enqueueOutbox(message, messageType, targetService, messageId, null, null);
+    }
+
+    public String enqueueOutbox(Object message,
+                                String messageType,
+                                String targetService,
+                                String messageId,
+                                String routingKey,
+                                String partitionKey) {
+        MessageOutbox outbox = newPendingOutbox(toPayload(message), messageType, targetService, messageId);
+        jdbi.useHandle(handle -> insertPendingOutbox(handle, new PendingOutbox(outbox, routingKey, partitionKey)));
+        return messageId;
+    }
+
+    /**
+     * Claim up to {@code limit} pending outbox rows, hand them to {@code publisher} and record
+     * the outcome. The claim and the outcome are two short transactions and the publisher runs
+     * between them, outside any transaction: claimed rows carry a lease of {@code lease} that keeps
+     * other relays away while they are published, and rows whose outcome was never written (e.g.
+     * the node died) are claimed again once it expires. The publisher returns the message ids the
+     * broker confirmed; those are marked SENT in bulk and the rest have their retry count bumped,
+     * becoming FAILED once {@code maxRetries} is reached.
+     *
+     * @return the number of rows claimed
+     */
+    public int relayPendingOutbox(int limit,
+                                  Duration retryDelay,
+                                  Duration lease,
+                                  int maxRetries,
+                                  Function<List<PendingOutbox>, List<String>> publisher) {
+        List<PendingOutbox> rows = claimPendingOutbox(limit, retryDelay, lease);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        List<String> confirmed = publisher.apply(rows);
+        Set<String> confirmedIds = new HashSet<>(confirmed);
+        List<String> unconfirmed = new ArrayList<>();
+        for (PendingOutbox row : rows) {
+            if (!confirmedIds.contains(row.getMessageId())) {
+                unconfirmed.add(row.getMessageId());
+            }
+        }
+        completeOutbox(confirmed, unconfirmed, maxRetries);
+        return rows.size();
+    }
+
+    /**
+     * Lease up to {@code limit} pending rows that are not leased by another relay, oldest first.
+     */
+    public List<PendingOutbox> claimPendingOutbox(int limit, Duration retryDelay, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        RowMapper<MessageOutbox> outboxMapper = BeanMapper.of(MessageOutbox.class);
+        List<PendingOutbox> rows = jdbi.inTransaction(handle -> handle.createQuery(claimOutboxSql)
+                .bind("now", now)
+                .bind("leaseUntil", now.plus(lease))
+                .bind("retryBefore", now.minus(retryDelay))
+                .bind("limit", limit)
+                .map((rs, ctx) -> new PendingOutbox(outboxMapper.map(rs, ctx), rs.getString("routing_key"),
+                        rs.getString("partition_key")))
+                .list());
+        // RETURNING does not keep the subquery's order
+        List<PendingOutbox> ordered = new ArrayList<>(rows);
+        ordered.sort(Comparator.comparing(row -> row.getRow().getCreatedAt(), Comparator.nullsFirst(Comparator.naturalOrder())));
+        return ordered;
+    }
+
+    /**
+     * Mark relayed rows SENT, and bump the retry count of the rest, releasing their lease.
+     */
+    public void completeOutbox(List<String> confirmed, List<String> unconfirmed, int maxRetries) {
+        if (confirmed.isEmpty() && unconfirmed.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        jdbi.useTransaction(handle -> {
+            if (!confirmed.isEmpty()) {
+                handle.createUpdate(markOutboxSentSql)
+                        .bind("now", now)
+                        .bindList("messageIds", confirmed)
+                        .execute();
+            }
+            if (!unconfirmed.isEmpty()) {
+                handle.createUpdate(markOutboxRetrySql)
+                        .bind("now", now)
+                        .bind("maxRetries", maxRetries)
+                        .bindList("messageIds", unconfirmed)
+                        .execute();
+            }
+        });
+    }
+
+    /**
+     * Insert several outbox rows in one transaction using a single JDBC batch.
+     */
+    public void insertOutboxBatch(List<MessageOutbox> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbi.useTransaction(handle -> {
+            PreparedBatch batch = handle.prepareBatch(insertOutboxSql);
+            for (MessageOutbox row : rows) {
+                batch.bindBean(row).add();
+            }
+            batch.execute();
+        });
+    }
+
+    /**
+     * Insert several PENDING rows for the relay, with their routing and partition keys, in one JDBC batch.
+     */
+    public void insertPendingOutboxBatch(List<PendingOutbox> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbi.useTransaction(handle -> {
+            PreparedBatch batch = handle.prepareBatch(insertPendingOutboxSql);
+            for (PendingOutbox row : rows) {
+                batch.bindBean(row.getRow())
+                        .bind("routingKey", row.getRoutingKey())
+                        .bind("partitionKey", row.getPartitionKey())
+                        .add();
+            }
+            batch.execute();
+        });
+    }
+
+    private void insertPendingOutbox(Handle handle, PendingOutbox row) {
+        handle.createUpdate(insertPendingOutboxSql)
+                .bindBean(row.getRow())
+                .bind("routingKey", row.getRoutingKey())
+                .bind("partitionKey", row.getPartitionKey())
+                .execute();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (outboxWriter != null) {
+            outboxWriter.close();
+        }
+        if (inboxWriter != null) {
+            inboxWriter.close();
+        }
+    }
+
+    private MessageOutbox newOutbox(String payload,
+                                    String messageType,
+                                    String targetService,
+                                    String messageId) {
         LocalDateTime now = LocalDateTime.now();
 
         MessageOutbox outbox = new MessageOutbox();
@@ -56,15 +446,213 @@ public class QueuePersistenceService {
         outbox.setCreatedAt(now);
         outbox.setUpdatedAt(now);
         outbox.setRetryCount(0);
-
-        jdbi.useExtension(MessageDao.class, dao -> dao.insertOutbox(outbox, queueSchema));
-        return messageId;
+        return outbox;
     }
 
+    /**
+     * Record a received message. In pipelined mode the insert is queued for the inbox
+     * writer and this call returns immediately.
+     */
     public void recordInboxReceived(String messageId,
                                     String messageType,
                                     String sourceService,
                                     String payload) {
+        MessageInbox inbox = newInbox(messageId, messageType, sourceService, payload);
+        if (inboxWriter != null) {
+            inboxWriter.submit(InboxWrite.received(inbox));
+            return;
+        }
+        jdbi.useExtension(MessageDao.class, dao -> dao.insertInbox(inbox, queueSchema));
+    }
+
+    /**
+     * Record a received message from its raw UTF-8 body. In pipelined mode the body is
+     * decoded on the inbox writer thread, keeping the string off the consumer thread.
+     */
+    public void recordInboxReceived(String messageId,
+                                    String messageType,
+                                    String sourceService,
+                                    byte[] payload) {
+        if (inboxWriter != null) {
+            inboxWriter.submit(InboxWrite.received(newInbox(messageId, messageType, sourceService, null), payload));
+            return;
+        }
+        recordInboxReceived(messageId, messageType, sourceService, new String(payload, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Mark a message as processed. In pipelined mode the update is queued behind the
+     * message's insert; if both land in the same batch they are merged into one insert.
+     */
+    public void markInboxProcessed(String messageId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (inboxWriter != null) {
+            inboxWriter.submit(InboxWrite.processed(messageId, now));
+            return;
+        }
+        jdbi.useExtension(MessageDao.class,
+                dao -> dao.updateInboxStatus(messageId, STATUS_PROCESSED, now, now, queueSchema));
+    }
+
+    /**
+     * Set the status of a received message that was not processed, e.g. {@code RETRY_2} or
+     * {@code DEAD_LETTERED}. In pipelined mode the update is queued like {@link #markInboxProcessed}.
+     */
+    public void markInboxStatus(String messageId, String status) {
+        LocalDateTime now = LocalDateTime.now();
+        if (inboxWriter != null) {
+            inboxWriter.submit(InboxWrite.status(messageId, status, now));
+            return;
+        }
+        jdbi.useExtension(MessageDao.class,
+                dao -> dao.updateInboxStatus(messageId, status, null, now, queueSchema));
+    }
+
+    /**
+     * Build an inbox row without writing it, e.g. to collect rows for {@link #insertInboxBatch(List)}.
+     */
+    public MessageInbox inboxRow(String messageId,
+                                 String messageType,
+                                 String sourceService,
+                                 String payload) {
+        return newInbox(messageId, messageType, sourceService, payload);
+    }
+
+    /**
+     * Insert received inbox rows for a consumed batch in one transaction. Rows whose message id
+     * is already recorded, e.g. redelivered or retried copies, are skipped.
+     */
+    public void insertInboxBatch(List<MessageInbox> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbi.useTransaction(handle -> {
+            PreparedBatch batch = handle.prepareBatch(insertInboxSql);
+            for (MessageInbox row : rows) {
+                batch.bindBean(row).bindByType("processedAt", null, LocalDateTime.class).add();
+            }
+            batch.execute();
+        });
+    }
+
+    /**
+     * Mark a consumed batch as processed with a single UPDATE.
+     */
+    public void markInboxProcessedBatch(List<String> messageIds) {
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        jdbi.useHandle(handle -> handle.createUpdate(markInboxProcessedBatchSql)
+                .bind("now", now)
+                .bindList("messageIds", messageIds)
+                .execute());
+    }
+
+    /**
+     * Flush a batch of inbox writes in one transaction. Inserts are written before status
+     * updates, and a processed update whose insert is in the same batch is folded into
+     * that insert, so each message's writes keep their order. If the batch fails (for
+     * example on a duplicate redelivery) the writes are replayed one by one so a single
+     * bad row does not drop the rest.
+     */
+    private void writeInboxBatch(List<InboxWrite> writes) {
+        Map<String, InboxWrite> inserts = new LinkedHashMap<>();
+        List<InboxWrite> updates = new ArrayList<>();
+        for (InboxWrite write : writes) {
+            if (write.inbox != null) {
+                // a redelivery received in the same batch: the first insert wins, and the
+                // status updates of both deliveries fold into it in order. A row written by an
+                // earlier batch is kept by the insert's ON CONFLICT clause, so only real errors
+                // fall back to the writes one at a time below.
+                if (inserts.putIfAbsent(write.messageId, write) == null) {
+                    write.decodePayload();
+                }
+                continue;
+            }
+            InboxWrite pendingInsert = inserts.get(write.messageId);
+            if (pendingInsert != null) {
+                pendingInsert.markStatus(write.status, write.updatedAt);
+            } else {
+                updates.add(write);
+            }
+        }
+        try {
+            jdbi.useTransaction(handle -> {
+                if (!inserts.isEmpty()) {
+                    PreparedBatch batch = handle.prepareBatch(insertPipelinedInboxSql);
+                    for (InboxWrite insert : inserts.values()) {
+                        batch.bindBean(insert.inbox).bindByType("processedAt", insert.processedAt, LocalDateTime.class).add();
+                    }
+                    batch.execute();
+                }
+                if (!updates.isEmpty()) {
+                    PreparedBatch batch = handle.prepareBatch(updateInboxStatusSql);
+                    for (InboxWrite update : updates) {
+                        batch.bind("messageId", update.messageId)
+                                .bind("status", update.status)
+                                .bindByType("processedAt", update.processedAt, LocalDateTime.class)
+                                .bind("updatedAt", update.updatedAt)
+                                .add();
+                    }
+                    batch.execute();
+                }
+            });
+        } catch (Exception ex) {
+            failureLog.warn("inbox-batch", "Zula: Batched inbox write failed, retrying {} writes individually - {}", writes.size(), ex.getMessage());
+            writes.forEach(this::writeInboxIndividually);
+        }
+    }
+
+    private void writeInboxIndividually(InboxWrite write) {
+        try {
+            if (write.inbox != null) {
+                jdbi.useExtension(MessageDao.class, dao -> dao.insertInbox(write.inbox, queueSchema));
+            } else {
+                jdbi.useExtension(MessageDao.class, dao -> dao.updateInboxStatus(
+                        write.messageId, write.status, write.processedAt, write.updatedAt, queueSchema));
+            }
+        } catch (Exception ex) {
+            failureLog.warn("inbox-write", "Zula: Could not persist inbox write for {} - {}", write.messageId, ex.getMessage());
+        }
+    }
+
+    /**
+     * Build an outbox row without writing it, e.g. to collect rows for {@link #insertOutboxBatch(List)}.
+     * With {@code pending} the row is marked PENDING for the outbox relay instead of SENT.
+     */
+    public MessageOutbox outboxRow(Object message,
+                                   String messageType,
+                                   String targetService,
+                                   String messageId,
+                                   boolean pending) {
+        return outboxRowFromPayload(toPayload(message), messageType, targetService, messageId, pending);
+    }
+
+    public MessageOutbox outboxRowFromPayload(String payload,
+                                              String messageType,
+                                              String targetService,
+                                              String messageId,
+                                              boolean pending) {
+        return pending
+                ? newPendingOutbox(payload, messageType, targetService, messageId)
+                : newOutbox(payload, messageType, targetService, messageId);
+    }
+
+    private MessageOutbox newPendingOutbox(String payload,
+                                           String messageType,
+                                           String targetService,
+                                           String messageId) {
+        MessageOutbox outbox = newOutbox(payload, messageType, targetService, messageId);
+        outbox.setStatus(STATUS_PENDING);
+        outbox.setSentAt(null);
+        return outbox;
+    }
+
+    private MessageInbox newInbox(String messageId,
+                                  String messageType,
+                                  String sourceService,
+                                  String payload) {
         LocalDateTime now = LocalDateTime.now();
 
         MessageInbox inbox = new MessageInbox();
@@ -75,14 +663,7 @@ public class QueuePersistenceService {
         inbox.setStatus(STATUS_RECEIVED);
         inbox.setCreatedAt(now);
         inbox.setUpdatedAt(now);
-
-        jdbi.useExtension(MessageDao.class, dao -> dao.insertInbox(inbox, queueSchema));
-    }
-
-    public void markInboxProcessed(String messageId) {
-        LocalDateTime now = LocalDateTime.now();
-        jdbi.useExtension(MessageDao.class,
-                dao -> dao.updateInboxStatus(messageId, STATUS_PROCESSED, now, now, queueSchema));
+        return inbox;
     }
 
     private String toPayload(Object message) {
@@ -92,4 +673,58 @@ public class QueuePersistenceService {
             return message != null ? message.toString() : "";
         }
     }
+
+    /**
+     * One queued inbox write: either a received insert (carrying the row) or a
+     * processed status update for an earlier insert.
+     */
+    private static final class InboxWrite {
+        private final String messageId;
+        private final MessageInbox inbox;
+        private byte[] rawPayload;
+        private final String status;
+        private LocalDateTime processedAt;
+        private final LocalDateTime updatedAt;
+
+        private InboxWrite(String messageId, MessageInbox inbox, byte[] rawPayload, String status, LocalDateTime updatedAt) {
+            this.messageId = messageId;
+            this.inbox = inbox;
+            this.rawPayload = rawPayload;
+            this.status = status;
+            this.updatedAt = updatedAt;
+            this.processedAt = STATUS_PROCESSED.equals(status) ? updatedAt : null;
+        }
+
+        static InboxWrite received(MessageInbox inbox) {
+            return new InboxWrite(inbox.getMessageId(), inbox, null, null, null);
+        }
+
+        static InboxWrite received(MessageInbox inbox, byte[] rawPayload) {
+            return new InboxWrite(inbox.getMessageId(), inbox, rawPayload, null, null);
+        }
+
+        static InboxWrite processed(String messageId, LocalDateTime processedAt) {
+            return new InboxWrite(messageId, null, null, STATUS_PROCESSED, processedAt);
+        }
+
+        static InboxWrite status(String messageId, String status, LocalDateTime updatedAt) {
+            return new InboxWrite(messageId, null, null, status, updatedAt);
+        }
+
+        void decodePayload() {
+            if (rawPayload != null) {
+                inbox.setPayload(new String(rawPayload, StandardCharsets.UTF_8));
+                rawPayload = null;
+            }
+        }
+
+        /**
+         * Fold a later status update into this pending insert.
+         */
+        void markStatus(String status, LocalDateTime at) {
+            inbox.setStatus(status);
+            inbox.setUpdatedAt(at);
+            this.processedAt = STATUS_PROCESSED.equals(status) ? at : null;
+        }
+    }
 }
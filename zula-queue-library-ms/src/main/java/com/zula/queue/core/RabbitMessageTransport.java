@@ -0,0 +1,98 @@
+package com.zula.queue.core;
+
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Exchange;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionListener;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.function.Function;
+
+/**
+ * {@link MessageTransport} over RabbitMQ: sends with a {@link RabbitTemplate}, declares with a
+ * {@link RabbitAdmin}, and leaves consuming to the listener containers of
+ * {@link QueueListenerContainerFactory}. The confirm mode follows the connection factory's
+ * {@code spring.rabbitmq.publisher-confirm-type}.
+ */
+public class RabbitMessageTransport implements MessageTransport {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final RabbitAdmin rabbitAdmin;
+
+    public RabbitMessageTransport(RabbitTemplate rabbitTemplate) {
+        this(rabbitTemplate, new RabbitAdmin(rabbitTemplate));
+    }
+
+    public RabbitMessageTransport(RabbitAdmin rabbitAdmin) {
+        this(rabbitAdmin.getRabbitTemplate(), rabbitAdmin);
+    }
+
+    public RabbitMessageTransport(RabbitTemplate rabbitTemplate, RabbitAdmin rabbitAdmin) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.rabbitAdmin = rabbitAdmin;
+    }
+
+    @Override
+    public Confirms getConfirms() {
+        ConnectionFactory connectionFactory = rabbitTemplate.getConnectionFactory();
+        if (connectionFactory.isPublisherConfirms()) {
+            return Confirms.CORRELATED;
+        }
+        return connectionFactory.isSimplePublisherConfirms() ? Confirms.SIMPLE : Confirms.NONE;
+    }
+
+    @Override
+    public void send(String exchange, String routingKey, Message message, CorrelationData correlation) {
+        rabbitTemplate.send(exchange, routingKey, message, correlation);
+    }
+
+    @Override
+    public <T> T invoke(Function<Channel, T> action) {
+        return rabbitTemplate.invoke(operations -> action.apply(new Channel() {
+            @Override
+            public void send(String exchange, String routingKey, Message message, CorrelationData correlation) {
+                operations.send(exchange, routingKey, message, correlation);
+            }
+
+            @Override
+            public boolean waitForConfirms(long timeoutMs) {
+                return operations.waitForConfirms(timeoutMs);
+            }
+        }));
+    }
+
+    @Override
+    public void declareExchange(Exchange exchange) {
+        rabbitAdmin.declareExchange(exchange);
+    }
+
+    @Override
+    public void declareQueue(Queue queue) {
+        rabbitAdmin.declareQueue(queue);
+    }
+
+    @Override
+    public void declareBinding(Binding binding) {
+        rabbitAdmin.declareBinding(binding);
+    }
+
+    @Override
+    public void removeBinding(Binding binding) {
+        rabbitAdmin.removeBinding(binding);
+    }
+
+    @Override
+    public void onReconnect(Runnable action) {
+        rabbitTemplate.getConnectionFactory().addConnectionListener(new ConnectionListener() {
+            @Override
+            public void onCreate(Connection connection) {
+                action.run();
+            }
+        });
+    }
+}
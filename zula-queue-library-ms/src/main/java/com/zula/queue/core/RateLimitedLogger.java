@@ -0,0 +1,126 @@
+package com.zula.queue.core;
+
+import com.zula.queue.config.QueueProperties;
+import org.slf4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs repeated warnings and errors at most once per {@code zula.queue.logging.error-interval-ms}
+ * per key (typically a queue or message type plus the kind of failure). Events inside the
+ * interval are only counted, and the count is appended to the next message that gets through,
+ * so a burst of failures produces a few summarized lines instead of one line (and stack trace)
+ * per message.
+ *
+ * Also truncates payloads for logging according to {@code zula.queue.logging.*}. Each instance
+ * takes its settings from the bean that owns it; one created without settings uses the defaults.
+ */
+public final class RateLimitedLogger {
+
+    private final Logger logger;
+    private final long intervalMs;
+    private final boolean logPayloads;
+    private final int maxPayloadBytes;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    public RateLimitedLogger(Logger logger) {
+        this(logger, new QueueProperties.Logging());
+    }
+
+    public RateLimitedLogger(Logger logger, QueueProperties.Logging settings) {
+        this.logger = logger;
+        this.intervalMs = settings.getErrorIntervalMs();
+        this.logPayloads = settings.isLogPayloads();
+        this.maxPayloadBytes = settings.getMaxPayloadBytes();
+        if (maxPayloadBytes < 0) {
+            throw new IllegalStateException("zula.queue.logging.max-payload-bytes must not be negative");
+        }
+    }
+
+    /**
+     * A body for log output: cut to {@code max-payload-bytes}, at a UTF-8 character boundary, or
+     * only its size when {@code log-payloads} is off.
+     */
+    public String payload(byte[] body) {
+        if (body == null) {
+            return "<none>";
+        }
+        if (!logPayloads) {
+            return "<" + body.length + " bytes>";
+        }
+        if (body.length <= maxPayloadBytes) {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+        int max = maxPayloadBytes;
+        // do not split a multi-byte character: back off over continuation bytes (10xxxxxx)
+        while (max > 0 && (body[max] & 0xC0) == 0x80) {
+            max--;
+        }
+        return new String(body, 0, max, StandardCharsets.UTF_8) + "... <" + body.length + " bytes>";
+    }
+
+    public void warn(String key, String format, Object... args) {
+        if (!logger.isWarnEnabled()) {
+            return;
+        }
+        int suppressed = acquire(key);
+        if (suppressed >= 0) {
+            logger.warn(withSummary(format, suppressed), withSummary(args, suppressed));
+        }
+    }
+
+    public void error(String key, String format, Object... args) {
+        if (!logger.isErrorEnabled()) {
+            return;
+        }
+        int suppressed = acquire(key);
+        if (suppressed >= 0) {
+            logger.error(withSummary(format, suppressed), withSummary(args, suppressed));
+        }
+    }
+
+    /**
+     * @return the number of events suppressed since the last one logged, or -1 to suppress this one
+     */
+    private int acquire(String key) {
+        Window window = windows.computeIfAbsent(key, k -> new Window());
+        long now = System.currentTimeMillis();
+        long next = window.nextAllowed.get();
+        if (now >= next && window.nextAllowed.compareAndSet(next, now + intervalMs)) {
+            return window.suppressed.getAndSet(0);
+        }
+        window.suppressed.incrementAndGet();
+        return -1;
+    }
+
+    private static String withSummary(String format, int suppressed) {
+        return suppressed > 0 ? format + " ({} similar events suppressed)" : format;
+    }
+
+    /**
+     * Insert the suppressed count before a trailing Throwable, which SLF4J logs as the stack trace.
+     */
+    private static Object[] withSummary(Object[] args, int suppressed) {
+        if (suppressed == 0) {
+            return args;
+        }
+        Object[] extended = Arrays.copyOf(args, args.length + 1);
+        if (args.length > 0 && args[args.length - 1] instanceof Throwable) {
+            extended[args.length - 1] = suppressed;
+            extended[args.length] = args[args.length - 1];
+        } else {
+            extended[args.length] = suppressed;
+        }
+        return extended;
+    }
+
+    private static final class Window {
+        private final AtomicLong nextAllowed = new AtomicLong();
+        private final AtomicInteger suppressed = new AtomicInteger();
+    }
+}
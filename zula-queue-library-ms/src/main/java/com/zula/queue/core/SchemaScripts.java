@@ -0,0 +1,53 @@
+package com.zula.queue.core;
+
+import org.jdbi.v3.core.Jdbi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Runs the library's SQL scripts under {@code db/zula-queue/}. The scripts use Flyway-style
+ * {@code ${name}} placeholders and are idempotent, so services can either copy them into their
+ * own migrations or let the library run them at startup.
+ */
+final class SchemaScripts {
+
+    private static final String LOCATION = "db/zula-queue/";
+
+    private SchemaScripts() {
+    }
+
+    static void run(Jdbi jdbi, String script, Map<String, String> placeholders) {
+        String sql = load(script);
+        for (Map.Entry<String, String> placeholder : placeholders.entrySet()) {
+            sql = sql.replace("${" + placeholder.getKey() + "}", placeholder.getValue());
+        }
+        StringBuilder statements = new StringBuilder();
+        for (String line : sql.split("\n")) {
+            if (!line.trim().startsWith("--")) {
+                statements.append(line).append('\n');
+            }
+        }
+        jdbi.useTransaction(handle -> {
+            for (String statement : statements.toString().split(";")) {
+                if (!statement.isBlank()) {
+                    handle.execute(statement.trim());
+                }
+            }
+        });
+    }
+
+    private static String load(String script) {
+        try (InputStream in = SchemaScripts.class.getClassLoader().getResourceAsStream(LOCATION + script)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing schema script " + LOCATION + script);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not read schema script " + LOCATION + script, ex);
+        }
+    }
+}
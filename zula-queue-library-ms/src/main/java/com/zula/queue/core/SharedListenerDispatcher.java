@@ -0,0 +1,143 @@
+package com.zula.queue.core;
+
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.DirectMessageListenerContainer;
+import org.springframework.context.Lifecycle;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One {@link DirectMessageListenerContainer} consuming every queue of the service that does not
+ * need a dedicated container. Queues are added as handlers register, and each delivery is routed
+ * to its handler by consumer queue, falling back to the {@code x-message-type} header.
+ *
+ * A direct container has no consumer threads of its own: listeners run on the connection's
+ * consumer dispatch pool, so a service with many message types uses one bounded set of threads
+ * and one channel per queue consumer instead of a container with its own threads per type.
+ */
+final class SharedListenerDispatcher implements MessageListener {
+
+    private final DirectMessageListenerContainer container;
+    private final Map<String, List<Registration>> byQueue = new ConcurrentHashMap<>();
+    private final Map<String, String> queueByMessageType = new ConcurrentHashMap<>();
+    private final AtomicInteger turn = new AtomicInteger();
+
+    SharedListenerDispatcher(ConnectionFactory connectionFactory, int consumersPerQueue, Integer prefetchCount) {
+        this(new DirectMessageListenerContainer(connectionFactory));
+        container.setConsumersPerQueue(Math.max(1, consumersPerQueue));
+        if (prefetchCount != null) {
+            container.setPrefetchCount(prefetchCount);
+        }
+    }
+
+    SharedListenerDispatcher(DirectMessageListenerContainer container) {
+        this.container = container;
+        container.setMessageListener(this);
+    }
+
+    /**
+     * Route deliveries from {@code queueName} to {@code listener} and start consuming the queue.
+     * A queue added twice has its deliveries spread over both listeners, as two dedicated
+     * containers on one queue would compete for them. Stopping the returned handle removes only
+     * this listener; the queue is dropped from the container once its last listener is stopped.
+     */
+    Lifecycle addQueue(String queueName, String messageType, MessageListener listener) {
+        Registration registration = new Registration(queueName, messageType, listener);
+        registration.start();
+        return registration;
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        String queueName = message.getMessageProperties().getConsumerQueue();
+        List<Registration> registrations = queueName != null ? byQueue.get(queueName) : null;
+        if (registrations == null) {
+            Object messageType = message.getMessageProperties().getHeaders().get(MessageMetadataHelper.HEADER_MESSAGE_TYPE);
+            String typeQueue = messageType != null ? queueByMessageType.get(messageType.toString()) : null;
+            registrations = typeQueue != null ? byQueue.get(typeQueue) : null;
+        }
+        Registration registration = null;
+        if (registrations != null) {
+            Registration[] current = registrations.toArray(new Registration[0]);
+            registration = current.length > 0 ? current[Math.floorMod(turn.getAndIncrement(), current.length)] : null;
+        }
+        if (registration == null) {
+            throw new AmqpRejectAndDontRequeueException("No handler registered for queue " + queueName);
+        }
+        registration.listener.onMessage(message);
+    }
+
+    void stop() {
+        container.stop();
+    }
+
+    private synchronized void add(Registration registration) {
+        List<Registration> registrations = byQueue.computeIfAbsent(registration.queueName, k -> new CopyOnWriteArrayList<>());
+        registrations.add(registration);
+        queueByMessageType.putIfAbsent(registration.messageType, registration.queueName);
+        if (registrations.size() == 1) {
+            container.addQueueNames(registration.queueName);
+        }
+        if (!container.isRunning()) {
+            container.start();
+        }
+    }
+
+    private synchronized void remove(Registration registration) {
+        List<Registration> registrations = byQueue.get(registration.queueName);
+        if (registrations == null || !registrations.remove(registration) || !registrations.isEmpty()) {
+            return;
+        }
+        byQueue.remove(registration.queueName);
+        queueByMessageType.values().removeIf(registration.queueName::equals);
+        container.removeQueueNames(registration.queueName);
+    }
+
+    /**
+     * One listener's share of the container, returned to the caller in place of the container itself.
+     */
+    private final class Registration implements Lifecycle {
+        private final String queueName;
+        private final String messageType;
+        private final MessageListener listener;
+        private volatile boolean running;
+
+        private Registration(String queueName, String messageType, MessageListener listener) {
+            this.queueName = queueName;
+            this.messageType = messageType;
+            this.listener = listener;
+        }
+
+        @Override
+        public void start() {
+            synchronized (SharedListenerDispatcher.this) {
+                if (!running) {
+                    add(this);
+                    running = true;
+                }
+            }
+        }
+
+        @Override
+        public void stop() {
+            synchronized (SharedListenerDispatcher.this) {
+                if (running) {
+                    remove(this);
+                    running = false;
+                }
+            }
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.zula.queue.core;
+
+import com.rabbitmq.client.Channel;
+import com.zula.queue.config.QueueProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.ImmediateAcknowledgeAmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareMessageListener;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Hands each delivery to a virtual-thread executor instead of running the handler on the
+ * container's consumer thread, and acks the message when the handler finishes. A semaphore
+ * sized to the queue's prefetch caps the number of handlers in flight; once it is exhausted
+ * the consumer thread blocks, so the broker stops sending until handlers complete.
+ *
+ * A delivery whose handler throws is requeued, as Spring's container does, so a
+ * {@link DeliveryRetryHandler} that could not get its retry copy confirmed leaves the original
+ * on the queue. It is rejected without requeue only when the cause chain contains an
+ * {@link AmqpRejectAndDontRequeueException}, and acked for an {@link ImmediateAcknowledgeAmqpException}.
+ *
+ * The container must use {@code AcknowledgeMode.MANUAL}.
+ */
+public class VirtualThreadMessageListener implements ChannelAwareMessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadMessageListener.class);
+    private final RateLimitedLogger failureLog;
+
+    private final MessageListener delegate;
+    private final Executor executor;
+    private final Semaphore inFlight;
+
+    public VirtualThreadMessageListener(MessageListener delegate, Executor executor, int maxInFlight) {
+        this(delegate, executor, maxInFlight, new QueueProperties.Logging());
+    }
+
+    public VirtualThreadMessageListener(MessageListener delegate, Executor executor, int maxInFlight,
+                                        QueueProperties.Logging logging) {
+        this.delegate = delegate;
+        this.failureLog = new RateLimitedLogger(log, logging);
+        this.executor = executor;
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+    }
+
+    /**
+     * Create a virtual-thread-per-task executor, or return null when the JVM does not
+     * support virtual threads (the library is compiled for Java 17).
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) java.util.concurrent.Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, Channel channel) throws Exception {
+        inFlight.acquire();
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        try {
+            executor.execute(() -> handle(message, channel, deliveryTag));
+        } catch (RejectedExecutionException ex) {
+            inFlight.release();
+            throw ex;
+        }
+    }
+
+    private void handle(Message message, Channel channel, long deliveryTag) {
+        Exception failure = null;
+        try {
+            delegate.onMessage(message);
+        } catch (Exception ex) {
+            failure = ex;
+            String queueName = message.getMessageProperties().getConsumerQueue();
+            failureLog.error(queueName, "Zula: Virtual-thread handler failed for {}", queueName, ex);
+        } finally {
+            try {
+                if (failure == null || causedBy(failure, ImmediateAcknowledgeAmqpException.class)) {
+                    channel.basicAck(deliveryTag, false);
+                } else {
+                    channel.basicNack(deliveryTag, false, !causedBy(failure, AmqpRejectAndDontRequeueException.class));
+                }
+            } catch (Exception ex) {
+                failureLog.warn("ack", "Zula: Could not acknowledge delivery {} - {}", deliveryTag, ex.getMessage());
+            } finally {
+                inFlight.release();
+            }
+        }
+    }
+
+    private static boolean causedBy(Throwable ex, Class<? extends Throwable> type) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
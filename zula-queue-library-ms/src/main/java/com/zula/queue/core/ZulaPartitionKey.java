@@ -0,0 +1,17 @@
+package com.zula.queue.core;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the field or no-arg getter holding a message's partition key, e.g. an order id.
+ * For message types with {@code zula.queue.partitioning.types.<message-type>} partitions,
+ * messages with the same key always go to the same partition queue and are consumed in order.
+ * Keys are hashed by their string form, so use strings, numbers or UUIDs.
+ */
+@Target({ElementType.FIELD, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ZulaPartitionKey {
+}
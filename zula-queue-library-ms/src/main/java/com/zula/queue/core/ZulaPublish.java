@@ -17,4 +17,7 @@ public @interface ZulaPublish {
 
     /** Optional action/operation; defaults to "process". */
     String action() default "process";
+
+    /** Optional codec name (json, smile, cbor, ...); empty uses {@code zula.queue.codec.default-codec}. */
+    String codec() default "";
 }
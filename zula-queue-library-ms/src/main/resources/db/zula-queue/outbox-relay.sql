@@ -0,0 +1,10 @@
+-- Columns the outbox relay (zula.queue.outbox.relay.enabled=true) needs on the queue schema's message_outbox.
+-- ${schema} is the service's queue schema. Add this script to your migrations (Flyway placeholders use the
+-- same syntax); with database auto-create-queue-schema the library runs it at startup. It can be run repeatedly.
+-- routing_key: where the row is published, resolved when it was written.
+ALTER TABLE ${schema}.message_outbox ADD COLUMN IF NOT EXISTS routing_key VARCHAR(255);
+-- partition_key: the message's @ZulaPartitionKey (or its id), read when the row was written.
+ALTER TABLE ${schema}.message_outbox ADD COLUMN IF NOT EXISTS partition_key VARCHAR(255);
+-- relay_lease_until: set while a relay publishes the row outside its claim transaction; other relays skip it until then.
+ALTER TABLE ${schema}.message_outbox ADD COLUMN IF NOT EXISTS relay_lease_until TIMESTAMP;
+CREATE INDEX IF NOT EXISTS message_outbox_pending_idx ON ${schema}.message_outbox (created_at) WHERE status = 'PENDING';
@@ -0,0 +1,13 @@
+-- Claim-check payload table for JdbiPayloadStore (zula.queue.claim-check.store=jdbi).
+-- ${table} is zula.queue.claim-check.table and ${table_name} the same name without its schema.
+-- Add this script to your migrations (Flyway placeholders use the same syntax), or set
+-- zula.queue.claim-check.initialize-schema=true to run it at startup. It can be run repeatedly.
+CREATE TABLE IF NOT EXISTS ${table} (
+    reference VARCHAR(64) PRIMARY KEY,
+    message_id VARCHAR(255),
+    payload BYTEA NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+-- Bodies are usually compressed already. Storing them uncompressed lets ranged reads fetch only the chunks they need.
+ALTER TABLE ${table} ALTER COLUMN payload SET STORAGE EXTERNAL;
+CREATE INDEX IF NOT EXISTS ${table_name}_created_at_idx ON ${table} (created_at);
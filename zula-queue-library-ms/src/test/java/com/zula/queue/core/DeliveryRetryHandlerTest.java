@@ -0,0 +1,105 @@
+package com.zula.queue.core;
+
+import com.zula.queue.config.QueueProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DeliveryRetryHandlerTest {
+
+    private final MessageTransport transport = mock(MessageTransport.class);
+    private final QueueManager queueManager = mock(QueueManager.class);
+    private final QueueProperties.Retry settings = new QueueProperties.Retry();
+    private final List<String> copied = new CopyOnWriteArrayList<>();
+    private DeliveryRetryHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        settings.setConfirmTimeoutMs(200);
+        when(transport.getConfirms()).thenReturn(MessageTransport.Confirms.CORRELATED);
+        when(queueManager.generateRetryQueueName(anyString(), anyLong()))
+                .thenAnswer(invocation -> invocation.getArgument(0) + ".retry." + invocation.getArgument(1));
+        handler = new DeliveryRetryHandler(transport, queueManager, settings, null);
+    }
+
+    @Test
+    void nackedCopyFailsSoTheOriginalIsRequeued() {
+        confirmWith(false, null);
+
+        assertThatThrownBy(() -> handler.retryOrDeadLetter(message("m-1"), "zula.q", "m-1", new IllegalStateException()))
+                .isInstanceOf(AmqpException.class)
+                .hasMessageContaining("nacked");
+    }
+
+    @Test
+    void unconfirmedCopyFailsAfterTheTimeout() {
+        doAnswer(invocation -> null).when(transport).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+
+        assertThatThrownBy(() -> handler.retryOrDeadLetter(message("m-1"), "zula.q", "m-1", new IllegalStateException()))
+                .isInstanceOf(AmqpException.class)
+                .hasMessageContaining("No confirm");
+    }
+
+    @Test
+    void confirmedCopyGoesToTheRetryQueue() {
+        confirmWith(true, null);
+
+        handler.retryOrDeadLetter(message("m-1"), "zula.q", "m-1", new IllegalStateException());
+
+        assertThat(copied).containsExactly("zula.q.retry.1000:m-1");
+    }
+
+    @Test
+    void requeuedBatchOnlyCopiesMessagesNotCopiedBefore() {
+        confirmWith(true, "m-2");
+        List<Message> batch = List.of(message("m-1"), message("m-2"), message("m-3"));
+        List<String> ids = List.of("m-1", "m-2", "m-3");
+
+        assertThatThrownBy(() -> handler.retryOrDeadLetterAll(batch, "zula.q", ids, new IllegalStateException()))
+                .isInstanceOf(AmqpException.class);
+        assertThat(copied).containsExactly("zula.q.retry.1000:m-1", "zula.q.retry.1000:m-3");
+
+        confirmWith(true, null);
+        handler.retryOrDeadLetterAll(batch, "zula.q", ids, new IllegalStateException());
+
+        assertThat(copied).containsExactly("zula.q.retry.1000:m-1", "zula.q.retry.1000:m-3", "zula.q.retry.1000:m-2");
+    }
+
+    /**
+     * Confirm every copy with {@code ack}, except that sending {@code failingId} throws.
+     */
+    private void confirmWith(boolean ack, String failingId) {
+        doAnswer(invocation -> {
+            Message copy = invocation.getArgument(2);
+            String id = (String) copy.getMessageProperties().getHeaders().get(MessageMetadataHelper.HEADER_MESSAGE_ID);
+            if (id.equals(failingId)) {
+                throw new AmqpException("channel closed");
+            }
+            copied.add(invocation.getArgument(1) + ":" + id);
+            CorrelationData correlation = invocation.getArgument(3);
+            correlation.getFuture().complete(new CorrelationData.Confirm(ack, ack ? null : "nacked by test"));
+            return null;
+        }).when(transport).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+    }
+
+    private static Message message(String messageId) {
+        return MessageBuilder.withBody(new byte[] {1})
+                .setHeader(MessageMetadataHelper.HEADER_MESSAGE_ID, messageId)
+                .build();
+    }
+}
@@ -0,0 +1,47 @@
+package com.zula.queue.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileSystemPayloadStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storesAndReadsBody() throws IOException {
+        FileSystemPayloadStore store = new FileSystemPayloadStore(directory);
+
+        String reference = store.store("m-1", new byte[] {1, 2, 3});
+
+        try (InputStream in = store.open(reference)) {
+            assertThat(in.readAllBytes()).containsExactly(1, 2, 3);
+        }
+    }
+
+    @Test
+    void deleteStoredBeforeRemovesExpiredBodiesAndTemporaryFiles() throws IOException {
+        FileSystemPayloadStore store = new FileSystemPayloadStore(directory);
+        String old = store.store("m-old", new byte[] {1});
+        String recent = store.store("m-new", new byte[] {2});
+        Path leftover = Files.write(directory.resolve("00000000-0000-0000-0000-000000000000.bin.tmp"), new byte[] {3});
+        FileTime twoDaysAgo = FileTime.from(Instant.now().minusSeconds(2 * 24 * 3600));
+        Files.setLastModifiedTime(directory.resolve(old), twoDaysAgo);
+        Files.setLastModifiedTime(leftover, twoDaysAgo);
+
+        assertThat(store.deleteStoredBefore(Instant.now().minusSeconds(3600))).isEqualTo(2);
+
+        assertThat(directory.resolve(old)).doesNotExist();
+        assertThat(leftover).doesNotExist();
+        assertThat(directory.resolve(recent)).exists();
+    }
+}
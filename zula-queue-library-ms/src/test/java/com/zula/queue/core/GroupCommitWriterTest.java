@@ -0,0 +1,87 @@
+package com.zula.queue.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GroupCommitWriterTest {
+
+    @Test
+    void flushesItemsInBatchesAndCompletesTheirFutures() throws Exception {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        try (GroupCommitWriter<Integer> writer = new GroupCommitWriter<>("test-writer", 100, 10,
+                Duration.ofMillis(50), items -> batches.add(List.copyOf(items)))) {
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[25];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = writer.submit(i);
+            }
+            CompletableFuture.allOf(futures).get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(batches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(10));
+        assertThat(batches.stream().flatMap(List::stream)).hasSize(25);
+    }
+
+    @Test
+    void failedFlushFailsEveryFutureOfTheBatch() {
+        try (GroupCommitWriter<Integer> writer = new GroupCommitWriter<>("test-writer", 10, 10,
+                Duration.ofMillis(1), items -> {
+                    throw new IllegalStateException("database down");
+                })) {
+            assertThatThrownBy(() -> writer.submit(1).get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasRootCauseMessage("database down");
+        }
+    }
+
+    @Test
+    void closeFailsProducersBlockedOnAFullBuffer() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        GroupCommitWriter<Integer> writer = new GroupCommitWriter<>("test-writer", 1, 1, Duration.ZERO, items -> {
+            flushing.countDown();
+            await(release);
+        });
+        writer.submit(1);
+        assertThat(flushing.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Void> buffered = writer.submit(2);
+        CompletableFuture<CompletableFuture<Void>> blocked = CompletableFuture.supplyAsync(() -> writer.submit(3));
+        Thread.sleep(200);
+        assertThat(blocked).isNotDone();
+
+        Thread closer = new Thread(writer::close);
+        closer.start();
+
+        assertThatThrownBy(() -> blocked.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS))
+                .hasRootCauseInstanceOf(IllegalStateException.class);
+        release.countDown();
+        closer.join(TimeUnit.SECONDS.toMillis(5));
+        buffered.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void submitAfterCloseFails() {
+        GroupCommitWriter<Integer> writer = new GroupCommitWriter<>("test-writer", 1, 1, Duration.ZERO, items -> { });
+        writer.close();
+
+        assertThatThrownBy(() -> writer.submit(1).get(5, TimeUnit.SECONDS))
+                .hasRootCauseInstanceOf(IllegalStateException.class);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.zula.queue.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HandlerGroupTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void sequentialGroupRunsEveryHandlerWhenOneFails() {
+        List<String> seen = new CopyOnWriteArrayList<>();
+        HandlerGroup<String> group = new HandlerGroup<>(String.class, null);
+        group.add(message -> seen.add("first"));
+        group.add(message -> {
+            throw new IllegalStateException("second failed");
+        });
+        group.add(message -> seen.add("third"));
+
+        assertThatThrownBy(() -> group.accept("m"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("second failed");
+        assertThat(seen).containsExactly("first", "third");
+    }
+
+    @Test
+    void laterFailuresAreSuppressedIntoTheFirst() {
+        HandlerGroup<String> group = new HandlerGroup<>(String.class, null);
+        group.add(message -> {
+            throw new IllegalStateException("first failed");
+        });
+        group.add(message -> {
+            throw new IllegalArgumentException("second failed");
+        });
+
+        assertThatThrownBy(() -> group.accept("m"))
+                .hasMessage("first failed")
+                .satisfies(ex -> assertThat(ex.getSuppressed())
+                        .singleElement()
+                        .satisfies(suppressed -> assertThat(suppressed).hasMessage("second failed")));
+    }
+
+    @Test
+    void parallelGroupWaitsForEveryHandlerAndRethrows() {
+        List<String> seen = new CopyOnWriteArrayList<>();
+        HandlerGroup<String> group = new HandlerGroup<>(String.class, executor);
+        group.add(message -> seen.add("first"));
+        group.add(message -> {
+            throw new IllegalStateException("second failed");
+        });
+        group.add(message -> {
+            sleep(50);
+            seen.add("third");
+        });
+
+        assertThatThrownBy(() -> group.accept("m")).hasMessage("second failed");
+        assertThat(seen).containsExactlyInAnyOrder("first", "third");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
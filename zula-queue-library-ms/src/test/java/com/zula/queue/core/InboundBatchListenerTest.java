@@ -0,0 +1,51 @@
+package com.zula.queue.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zula.queue.config.QueueProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InboundBatchListenerTest {
+
+    private final MessageCodecRegistry codecs = new MessageCodecRegistry(new ObjectMapper(), new QueueProperties());
+
+    @Test
+    void undecodableMessageWithoutRetryHandlerRejectsTheBatchAfterHandlingTheRest() {
+        List<Integer> seen = new CopyOnWriteArrayList<>();
+        InboundBatchListener<Integer> listener = new InboundBatchListener<>("zula.test.queue", "test",
+                Integer.class, codecs, seen::addAll, null);
+
+        assertThatThrownBy(() -> listener.onMessageBatch(List.of(json("1"), json("{not json"), json("3"))))
+                .isInstanceOf(AmqpRejectAndDontRequeueException.class)
+                .hasMessageContaining("1 undeserializable");
+        assertThat(seen).containsExactly(1, 3);
+    }
+
+    @Test
+    void decodableBatchIsHandled() {
+        List<Integer> seen = new CopyOnWriteArrayList<>();
+        InboundBatchListener<Integer> listener = new InboundBatchListener<>("zula.test.queue", "test",
+                Integer.class, codecs, seen::addAll, null);
+
+        listener.onMessageBatch(List.of(json("1"), json("2")));
+
+        assertThat(seen).containsExactly(1, 2);
+    }
+
+    private static Message json(String body) {
+        return MessageBuilder.withBody(body.getBytes(StandardCharsets.UTF_8))
+                .setContentType(MessageProperties.CONTENT_TYPE_JSON)
+                .setContentEncoding("UTF-8")
+                .build();
+    }
+}
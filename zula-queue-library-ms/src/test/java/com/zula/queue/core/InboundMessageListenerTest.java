@@ -0,0 +1,77 @@
+package com.zula.queue.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zula.queue.config.QueueProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class InboundMessageListenerTest {
+
+    private final MessageCodecRegistry codecs = new MessageCodecRegistry(new ObjectMapper(), new QueueProperties());
+
+    @Test
+    void failingGroupWithoutRetryHandlerRejectsTheDelivery() {
+        List<String> seen = new CopyOnWriteArrayList<>();
+        HandlerGroup<String> group = new HandlerGroup<>(String.class, null);
+        group.add(message -> {
+            throw new IllegalStateException("boom");
+        });
+        group.add(seen::add);
+        InboundMessageListener<String> listener = new InboundMessageListener<>("zula.test.queue", "test",
+                String.class, codecs, group, null);
+
+        assertThatThrownBy(() -> listener.onMessage(json("\"hello\"")))
+                .isInstanceOf(AmqpRejectAndDontRequeueException.class)
+                .hasRootCauseMessage("boom");
+        assertThat(seen).containsExactly("hello");
+    }
+
+    @Test
+    void undecodableMessageWithoutRetryHandlerIsRejected() {
+        InboundMessageListener<Integer> listener = new InboundMessageListener<>("zula.test.queue", "test",
+                Integer.class, codecs, message -> { }, null);
+
+        assertThatThrownBy(() -> listener.onMessage(json("{not json")))
+                .isInstanceOf(AmqpRejectAndDontRequeueException.class);
+    }
+
+    @Test
+    void failingGroupIsRetriedOnceAsAWhole() {
+        DeliveryRetryHandler retryHandler = mock(DeliveryRetryHandler.class);
+        HandlerGroup<String> group = new HandlerGroup<>(String.class, null);
+        group.add(message -> {
+            throw new IllegalStateException("first");
+        });
+        group.add(message -> {
+            throw new IllegalStateException("second");
+        });
+        InboundMessageListener<String> listener = new InboundMessageListener<>("zula.test.queue", "test",
+                String.class, codecs, null, group, null, retryHandler);
+
+        listener.onMessage(json("\"hello\""));
+
+        verify(retryHandler, times(1)).retryOrDeadLetter(any(Message.class), eq("zula.test.queue"), any(), any(IllegalStateException.class));
+    }
+
+    private static Message json(String body) {
+        return MessageBuilder.withBody(body.getBytes(StandardCharsets.UTF_8))
+                .setContentType(MessageProperties.CONTENT_TYPE_JSON)
+                .setContentEncoding("UTF-8")
+                .build();
+    }
+}
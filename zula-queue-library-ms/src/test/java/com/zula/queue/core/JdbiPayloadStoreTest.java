@@ -0,0 +1,63 @@
+package com.zula.queue.core;
+
+import org.jdbi.v3.core.Jdbi;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JdbiPayloadStoreTest {
+
+    private final Jdbi jdbi = TestDatabase.jdbi();
+    private JdbiPayloadStore store;
+
+    @BeforeEach
+    void createTable() {
+        jdbi.useHandle(handle -> handle.execute("DROP TABLE IF EXISTS payload_store_test"));
+        store = new JdbiPayloadStore(jdbi, "payload_store_test", 1000);
+        store.initializeSchema();
+    }
+
+    @Test
+    void readsBodyBackInChunks() throws IOException {
+        byte[] body = new byte[10_500];
+        new Random(7).nextBytes(body);
+
+        String reference = store.store("m-1", body);
+
+        try (InputStream in = store.open(reference)) {
+            assertThat(in.readAllBytes()).isEqualTo(body);
+        }
+    }
+
+    @Test
+    void initializeSchemaCanRunAgain() {
+        store.initializeSchema();
+    }
+
+    @Test
+    void openingAMissingReferenceFails() {
+        assertThatThrownBy(() -> store.open("missing")).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void deleteStoredBeforeKeepsNewerBodies() throws IOException {
+        String old = store.store("m-old", new byte[] {1});
+        jdbi.useHandle(handle -> handle.execute(
+                "UPDATE payload_store_test SET created_at = created_at - INTERVAL '2 days' WHERE reference = ?", old));
+        String recent = store.store("m-new", new byte[] {2});
+
+        assertThat(store.deleteStoredBefore(Instant.now().minusSeconds(3600))).isEqualTo(1);
+
+        assertThatThrownBy(() -> store.open(old)).isInstanceOf(IOException.class);
+        try (InputStream in = store.open(recent)) {
+            assertThat(in.readAllBytes()).containsExactly(2);
+        }
+    }
+}
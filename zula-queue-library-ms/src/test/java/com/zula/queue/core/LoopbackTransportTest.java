@@ -0,0 +1,114 @@
+package com.zula.queue.core;
+
+import com.zula.queue.config.QueueProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.context.Lifecycle;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class LoopbackTransportTest {
+
+    private LoopbackTransport transport;
+
+    @AfterEach
+    void close() {
+        transport.close();
+    }
+
+    @Test
+    void failedMessageIsRedeliveredBeforeTheMessagesBehindIt() {
+        transport = new LoopbackTransport(settings(0, 20));
+        transport.declareQueue(new Queue("q"));
+        List<String> deliveries = new CopyOnWriteArrayList<>();
+        AtomicInteger failures = new AtomicInteger();
+
+        transport.send("", "q", message("a"), null);
+        transport.send("", "q", message("b"), null);
+        transport.subscribe("q", message -> {
+            String body = new String(message.getBody());
+            deliveries.add(body);
+            if (body.equals("a") && failures.getAndIncrement() == 0) {
+                throw new IllegalStateException("first attempt fails");
+            }
+        }, 1);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> deliveries.size() == 3);
+        assertThat(deliveries).containsExactly("a", "a", "b");
+    }
+
+    @Test
+    void messageIsDeadLetteredAtTheDeliveryLimit() {
+        transport = new LoopbackTransport(settings(1, 3));
+        transport.declareQueue(QueueBuilder.durable("q").deadLetterExchange("").deadLetterRoutingKey("q.dlq").build());
+        transport.declareQueue(new Queue("q.dlq"));
+        AtomicInteger deliveries = new AtomicInteger();
+
+        transport.send("", "q", message("poison"), null);
+        transport.subscribe("q", message -> {
+            deliveries.incrementAndGet();
+            throw new IllegalStateException("always fails");
+        }, 1);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> transport.getMessageCount("q.dlq") == 1);
+        assertThat(deliveries).hasValue(3);
+        assertThat(transport.getMessageCount("q")).isZero();
+    }
+
+    @Test
+    void expiredMessagesAreDeadLetteredFromTheHead() {
+        transport = new LoopbackTransport(settings(0, 20));
+        transport.declareQueue(QueueBuilder.durable("q.retry").ttl(50).deadLetterExchange("").deadLetterRoutingKey("q").build());
+        transport.declareQueue(new Queue("q"));
+
+        for (int i = 0; i < 100; i++) {
+            transport.send("", "q.retry", message("m-" + i), null);
+        }
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> transport.getMessageCount("q") == 100);
+        assertThat(transport.getMessageCount("q.retry")).isZero();
+    }
+
+    @Test
+    void restartedSubscriptionRunsOnlyItsOwnConsumers() {
+        transport = new LoopbackTransport(settings(0, 20));
+        transport.declareQueue(new Queue("q"));
+        List<String> deliveries = new CopyOnWriteArrayList<>();
+        Lifecycle subscription = transport.subscribe("q", message -> deliveries.add(new String(message.getBody())), 2);
+
+        subscription.stop();
+        assertThat(consumerThreads("q")).isZero();
+        subscription.start();
+        transport.send("", "q", message("a"), null);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> deliveries.size() == 1);
+        assertThat(consumerThreads("q")).isEqualTo(2);
+    }
+
+    private static long consumerThreads(String queueName) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.isAlive() && thread.getName().startsWith("zula-loopback-" + queueName + "-"))
+                .count();
+    }
+
+    private static QueueProperties.Loopback settings(long redeliveryDelayMs, int deliveryLimit) {
+        QueueProperties.Loopback settings = new QueueProperties.Loopback();
+        settings.setRedeliveryDelayMs(redeliveryDelayMs);
+        settings.setDeliveryLimit(deliveryLimit);
+        return settings;
+    }
+
+    private static Message message(String body) {
+        return MessageBuilder.withBody(body.getBytes()).build();
+    }
+}
@@ -0,0 +1,34 @@
+package com.zula.queue.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zula.queue.config.QueueProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageCodecRegistryTest {
+
+    @Test
+    void configuredBinaryCodecsAreRegistered() {
+        QueueProperties properties = new QueueProperties();
+        properties.getCodec().setDefaultCodec("cbor");
+        properties.getCodec().getTypes().put("telemetry", "smile");
+
+        MessageCodecRegistry codecs = new MessageCodecRegistry(new ObjectMapper(), properties);
+
+        assertThat(codecs.getByName("smile").getContentType()).isEqualTo("application/x-jackson-smile");
+        assertThat(codecs.getByName("cbor").getContentType()).isEqualTo("application/cbor");
+    }
+
+    @Test
+    void unknownConfiguredCodecFailsAtConstruction() {
+        QueueProperties properties = new QueueProperties();
+        properties.getCodec().getTypes().put("telemetry", "avro");
+
+        assertThatThrownBy(() -> new MessageCodecRegistry(new ObjectMapper(), properties))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("zula.queue.codec.types.telemetry")
+                .hasMessageContaining("avro");
+    }
+}
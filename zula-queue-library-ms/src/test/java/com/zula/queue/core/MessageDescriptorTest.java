@@ -0,0 +1,41 @@
+package com.zula.queue.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageDescriptorTest {
+
+    @Test
+    void partitionKeyPropertyUsesTheJsonName() {
+        MessageDescriptor descriptor = MessageDescriptor.of(RenamedKeyMessage.class);
+
+        assertThat(MessageDescriptor.partitionKeyProperty(descriptor.getMessageType())).isEqualTo("customer_id");
+        assertThat(descriptor.getPartitionKey(new RenamedKeyMessage("c-1"))).isEqualTo("c-1");
+    }
+
+    @Test
+    void partitionKeyPropertyDefaultsToTheBeanPropertyName() {
+        MessageDescriptor descriptor = MessageDescriptor.of(GetterKeyMessage.class);
+
+        assertThat(MessageDescriptor.partitionKeyProperty(descriptor.getMessageType())).isEqualTo("orderId");
+    }
+
+    static class RenamedKeyMessage {
+        @ZulaPartitionKey
+        @JsonProperty("customer_id")
+        private final String customerId;
+
+        RenamedKeyMessage(String customerId) {
+            this.customerId = customerId;
+        }
+    }
+
+    static class GetterKeyMessage {
+        @ZulaPartitionKey
+        public String getOrderId() {
+            return "o-1";
+        }
+    }
+}
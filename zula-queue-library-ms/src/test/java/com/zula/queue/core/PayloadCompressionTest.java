@@ -0,0 +1,75 @@
+package com.zula.queue.core;
+
+import com.zula.queue.config.QueueProperties;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PayloadCompressionTest {
+
+    private static final int LIMIT = 64 * 1024;
+
+    @Test
+    void bodiesWithinTheLimitRoundTrip() throws IOException {
+        byte[] body = new byte[LIMIT];
+        for (String algorithm : new String[] {PayloadCompression.GZIP, PayloadCompression.LZ4}) {
+            PayloadCompression compression = compression(algorithm);
+            assertThat(compression.decompress(compression.compress(body), algorithm)).isEqualTo(body);
+        }
+    }
+
+    @Test
+    void gzipInflationStopsAtTheLimit() throws IOException {
+        PayloadCompression compression = compression(PayloadCompression.GZIP);
+        byte[] bomb = gzip(new byte[LIMIT + 1]);
+
+        assertThatThrownBy(() -> compression.decompress(bomb, PayloadCompression.GZIP))
+                .isInstanceOf(IOException.class).hasMessageContaining("more than");
+        try (InputStream in = compression.decompress(new ByteArrayInputStream(bomb), PayloadCompression.GZIP)) {
+            assertThatThrownBy(in::readAllBytes).isInstanceOf(IOException.class).hasMessageContaining("more than");
+        }
+    }
+
+    @Test
+    void gzipSizeFieldIsNotTrustedForAllocation() throws IOException {
+        PayloadCompression compression = compression(PayloadCompression.GZIP);
+        byte[] body = gzip("{}".getBytes());
+        // claim an ISIZE of 2 GB in the trailer
+        body[body.length - 1] = 0x7f;
+
+        assertThat(compression.decompress(body, PayloadCompression.GZIP)).isEqualTo("{}".getBytes());
+    }
+
+    @Test
+    void lz4LengthPrefixIsCheckedBeforeAllocating() {
+        PayloadCompression compression = compression(PayloadCompression.LZ4);
+        byte[] body = {0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0};
+
+        assertThatThrownBy(() -> compression.decompress(body, PayloadCompression.LZ4))
+                .isInstanceOf(IOException.class).hasMessageContaining("allowed");
+    }
+
+    private static PayloadCompression compression(String algorithm) {
+        QueueProperties.Compression settings = new QueueProperties.Compression();
+        settings.setEnabled(true);
+        settings.setAlgorithm(algorithm);
+        settings.setThresholdBytes(0);
+        settings.setMaxDecompressedBytes(LIMIT);
+        return new PayloadCompression(settings);
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+}
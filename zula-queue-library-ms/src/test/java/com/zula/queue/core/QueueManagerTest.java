@@ -0,0 +1,172 @@
+package com.zula.queue.core;
+
+import com.zula.queue.config.QueueProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class QueueManagerTest {
+
+    private final MessageTransport transport = mock(MessageTransport.class);
+    private final AtomicReference<Runnable> onReconnect = new AtomicReference<>();
+    private QueueManager queueManager;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            onReconnect.set(invocation.getArgument(0));
+            return null;
+        }).when(transport).onReconnect(any());
+        queueManager = new QueueManager(transport, new QueueProperties());
+        queueManager.init();
+    }
+
+    @Test
+    void connectionOpenedByADeclarationCanReplayTopology() {
+        AtomicBoolean first = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            // the first broker call opens the connection, whose listener replays known topology
+            if (first.getAndSet(false)) {
+                onReconnect.get().run();
+            }
+            return null;
+        }).when(transport).declareExchange(any());
+
+        queueManager.createServiceQueue("billing", "orders");
+
+        verify(transport, times(1)).declareQueue(any(Queue.class));
+    }
+
+    @Test
+    void concurrentFirstDeclarationsReachTheBrokerOnce() throws Exception {
+        CountDownLatch declaring = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            declaring.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(transport).declareExchange(any());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> calls = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                calls.add(executor.submit(() -> queueManager.createServiceQueue("billing", "orders")));
+            }
+            assertThat(declaring.await(5, TimeUnit.SECONDS)).isTrue();
+            release.countDown();
+            for (Future<?> call : calls) {
+                call.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(transport, times(1)).declareExchange(any());
+        verify(transport, times(1)).declareQueue(any(Queue.class));
+    }
+
+    @Test
+    void failedDeclarationIsRetriedByTheNextCaller() {
+        doThrow(new AmqpConnectException(new RuntimeException("broker down")))
+                .doNothing()
+                .when(transport).declareExchange(any());
+
+        assertThatThrownBy(() -> queueManager.createServiceQueue("billing", "orders"))
+                .isInstanceOf(AmqpConnectException.class);
+        queueManager.createServiceQueue("billing", "orders");
+
+        verify(transport, times(2)).declareExchange(any());
+        verify(transport, times(1)).declareQueue(any(Queue.class));
+    }
+
+    @Test
+    void legacyPublisherDoesNotBindCatchAllOnAnotherServicesQueue() {
+        queueManager.createServiceQueue("billing", "orders");
+
+        assertThat(declaredBindingKeys()).containsExactly("orders.*");
+        verify(transport, never()).removeBinding(any());
+    }
+
+    @Test
+    void legacyOwnerBindsCatchAllOnItsOwnQueue() {
+        queueManager.createServiceQueue("unknown-service", "orders");
+
+        assertThat(declaredBindingKeys()).containsExactly("#");
+    }
+
+    @Test
+    void legacyOwnerBindsCatchAllOnItsPartitionQueues() {
+        partitioned(QueueProperties.RoutingMode.LEGACY).createServiceQueue("unknown-service", "orders");
+
+        assertThat(declaredBindingKeys()).containsExactly("#.p0", "#.p1");
+    }
+
+    @Test
+    void migratingOwnerSwapsTheCatchAllForLegacyKeysOnItsPartitionQueues() {
+        partitioned(QueueProperties.RoutingMode.MIGRATION).createServiceQueue("unknown-service", "orders");
+
+        assertThat(declaredBindingKeys()).containsExactly(
+                "orders.unknown-service.#.p0", "orders.*.p0", "orders.unknown-service.#.p1", "orders.*.p1");
+        assertThat(removedBindingKeys()).contains("#.p0", "#.p1");
+    }
+
+    @Test
+    void targetedOwnerRemovesCatchAllAndLegacyKeysFromItsPartitionQueues() {
+        partitioned(QueueProperties.RoutingMode.TARGETED).createServiceQueue("unknown-service", "orders");
+
+        assertThat(declaredBindingKeys()).containsExactly("orders.unknown-service.#.p0", "orders.unknown-service.#.p1");
+        assertThat(removedBindingKeys()).contains("#.p0", "orders.*.p0", "#.p1", "orders.*.p1");
+    }
+
+    @Test
+    void legacyPublisherBindsOnlyLegacyKeysOnAnotherServicesPartitionQueues() {
+        partitioned(QueueProperties.RoutingMode.LEGACY).createServiceQueue("billing", "orders");
+
+        assertThat(declaredBindingKeys()).containsExactly("orders.*.p0", "orders.*.p1");
+        verify(transport, never()).removeBinding(any());
+    }
+
+    private QueueManager partitioned(QueueProperties.RoutingMode mode) {
+        QueueProperties properties = new QueueProperties();
+        properties.setRoutingMode(mode);
+        properties.getPartitioning().getTypes().put("orders", 2);
+        return new QueueManager(transport, properties);
+    }
+
+    private List<String> declaredBindingKeys() {
+        ArgumentCaptor<Binding> bindings = ArgumentCaptor.forClass(Binding.class);
+        verify(transport, atLeast(0)).declareBinding(bindings.capture());
+        return bindings.getAllValues().stream().map(Binding::getRoutingKey).toList();
+    }
+
+    private List<String> removedBindingKeys() {
+        ArgumentCaptor<Binding> bindings = ArgumentCaptor.forClass(Binding.class);
+        verify(transport, atLeast(0)).removeBinding(bindings.capture());
+        return bindings.getAllValues().stream().map(Binding::getRoutingKey).toList();
+    }
+}
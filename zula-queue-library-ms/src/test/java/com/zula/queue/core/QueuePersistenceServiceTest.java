@@ -0,0 +1,218 @@
+package com.zula.queue.core;
+
+import com.zula.queue.config.QueueProperties;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class QueuePersistenceServiceTest {
+
+    private static final String SCHEMA = "persistence_test";
+
+    private final Jdbi jdbi = TestDatabase.jdbi();
+    private QueuePersistenceService service;
+
+    @BeforeEach
+    void createSchema() {
+        TestDatabase.createQueueSchema(SCHEMA);
+    }
+
+    @AfterEach
+    void close() {
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    @Test
+    void insertStatementsAreDerivedFromTheColumnLists() {
+        assertThat(QueuePersistenceService.insertSql("s.message_outbox", List.of("message_id", "retry_count")))
+                .isEqualTo("INSERT INTO s.message_outbox (message_id, retry_count) VALUES (:messageId, :retryCount)");
+    }
+
+    @Test
+    void groupCommitWritesEveryOutboxRow() throws Exception {
+        QueueProperties properties = new QueueProperties();
+        properties.getOutbox().setGroupCommit(true);
+        properties.getOutbox().setFlushSize(16);
+        service = TestDatabase.persistenceService(SCHEMA, properties);
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[100];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = service.persistOutboxPayloadAsync("{\"n\":" + i + "}", "orders", "billing", "m-" + i);
+        }
+        CompletableFuture.allOf(futures).get(10, TimeUnit.SECONDS);
+
+        assertThat(count("message_outbox", "status = 'SENT'")).isEqualTo(100);
+    }
+
+    @Test
+    void inboxBatchSkipsMessageIdsThatAreAlreadyRecorded() {
+        service = TestDatabase.persistenceService(SCHEMA, new QueueProperties());
+        service.insertInboxBatch(List.of(service.inboxRow("m-1", "orders", "shop", "{\"delivery\":1}")));
+
+        service.insertInboxBatch(List.of(
+                service.inboxRow("m-1", "orders", "shop", "{\"delivery\":2}"),
+                service.inboxRow("m-2", "orders", "shop", "{}")));
+        service.markInboxProcessedBatch(List.of("m-1", "m-2"));
+
+        assertThat(count("message_inbox", "status = 'PROCESSED'")).isEqualTo(2);
+        assertThat(row("m-1").get("payload").toString()).contains("\"delivery\":1");
+    }
+
+    @Test
+    void pipelinedInboxFoldsTheProcessedUpdateIntoTheInsert() {
+        service = TestDatabase.persistenceService(SCHEMA, pipelinedInbox(1000));
+
+        service.recordInboxReceived("m-1", "orders", "shop", "{}".getBytes(StandardCharsets.UTF_8));
+        service.markInboxProcessed("m-1");
+        service.recordInboxReceived("m-2", "orders", "shop", "{}".getBytes(StandardCharsets.UTF_8));
+        service.markInboxStatus("m-2", "RETRY_1");
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> count("message_inbox", "true") == 2);
+        Map<String, Object> processed = row("m-1");
+        assertThat(processed.get("status")).isEqualTo("PROCESSED");
+        assertThat(processed.get("processed_at")).isNotNull();
+        Map<String, Object> retried = row("m-2");
+        assertThat(retried.get("status")).isEqualTo("RETRY_1");
+        assertThat(retried.get("processed_at")).isNull();
+    }
+
+    @Test
+    void pipelinedInboxKeepsTheFirstInsertOfADuplicateMessageId() {
+        service = TestDatabase.persistenceService(SCHEMA, pipelinedInbox(1000));
+
+        service.recordInboxReceived("m-1", "orders", "shop", "{\"delivery\":1}".getBytes(StandardCharsets.UTF_8));
+        service.markInboxProcessed("m-1");
+        service.recordInboxReceived("m-1", "orders", "shop", "{\"delivery\":2}".getBytes(StandardCharsets.UTF_8));
+        service.recordInboxReceived("m-2", "orders", "shop", "{}".getBytes(StandardCharsets.UTF_8));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> count("message_inbox", "true") == 2);
+        Map<String, Object> first = row("m-1");
+        assertThat(first.get("status")).isEqualTo("PROCESSED");
+        assertThat(first.get("processed_at")).isNotNull();
+        assertThat(first.get("payload").toString()).contains("\"delivery\":1");
+    }
+
+    @Test
+    void pipelinedInboxBatchToleratesARowWrittenByAnEarlierBatch() {
+        service = TestDatabase.persistenceService(SCHEMA, pipelinedInbox(1000));
+        service.insertInboxBatch(List.of(service.inboxRow("m-1", "orders", "shop", "{\"delivery\":1}")));
+
+        service.recordInboxReceived("m-1", "orders", "shop", "{\"delivery\":2}".getBytes(StandardCharsets.UTF_8));
+        service.markInboxProcessed("m-1");
+        service.recordInboxReceived("m-2", "orders", "shop", "{}".getBytes(StandardCharsets.UTF_8));
+        service.recordInboxReceived("m-3", "orders", "shop", "{}".getBytes(StandardCharsets.UTF_8));
+        service.markInboxProcessed("m-3");
+
+        // the rows are written by the batch itself, not by a one-at-a-time replay after it failed
+        await().atMost(5, TimeUnit.SECONDS).until(() -> count("message_inbox", "true") == 3);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> "PROCESSED".equals(row("m-1").get("status")));
+        assertThat(row("m-1").get("payload").toString()).contains("\"delivery\":1");
+        assertThat(row("m-2").get("status")).isEqualTo("RECEIVED");
+        assertThat(row("m-3").get("status")).isEqualTo("PROCESSED");
+    }
+
+    @Test
+    void pipelinedInboxAppliesUpdatesForRowsWrittenEarlier() {
+        service = TestDatabase.persistenceService(SCHEMA, pipelinedInbox(1));
+
+        service.recordInboxReceived("m-1", "orders", "shop", "{}".getBytes(StandardCharsets.UTF_8));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> count("message_inbox", "true") == 1);
+        service.markInboxProcessed("m-1");
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> "PROCESSED".equals(row("m-1").get("status")));
+    }
+
+    @Test
+    void relayPublishesWithTheStoredKeysOutsideTheClaimTransaction() {
+        service = TestDatabase.persistenceService(SCHEMA, new QueueProperties());
+        service.initializeRelaySchema();
+        service.enqueueOutbox(Map.of("n", 1), "orders", "billing", "m-1", "orders.billing.refund", "customer-7");
+        service.enqueueOutbox(Map.of("n", 2), "orders", "billing", "m-2");
+
+        List<String> routingKeys = new ArrayList<>();
+        List<String> partitionKeys = new ArrayList<>();
+        int claimed = service.relayPendingOutbox(10, Duration.ZERO, Duration.ofMinutes(1), 3, rows -> {
+            // the claim has committed: another connection sees the lease
+            assertThat(count("message_outbox", "relay_lease_until IS NOT NULL")).isEqualTo(2);
+            rows.forEach(row -> routingKeys.add(row.getRoutingKey()));
+            rows.forEach(row -> partitionKeys.add(row.getPartitionKey()));
+            return List.of("m-1");
+        });
+
+        assertThat(claimed).isEqualTo(2);
+        assertThat(routingKeys).containsExactly("orders.billing.refund", null);
+        assertThat(partitionKeys).containsExactly("customer-7", null);
+        assertThat(outboxRow("m-1")).containsEntry("status", "SENT").containsEntry("relay_lease_until", null);
+        assertThat(outboxRow("m-2")).containsEntry("status", "PENDING").containsEntry("retry_count", 1)
+                .containsEntry("relay_lease_until", null);
+    }
+
+    @Test
+    void leasedRowsAreNotClaimedAgainUntilTheirOutcomeIsWritten() {
+        service = TestDatabase.persistenceService(SCHEMA, new QueueProperties());
+        service.initializeRelaySchema();
+        service.enqueueOutbox(Map.of("n", 1), "orders", "billing", "m-1", "orders.billing.process", null);
+
+        assertThat(service.claimPendingOutbox(10, Duration.ZERO, Duration.ofMinutes(1))).hasSize(1);
+        assertThat(service.claimPendingOutbox(10, Duration.ZERO, Duration.ofMinutes(1))).isEmpty();
+
+        service.completeOutbox(List.of(), List.of("m-1"), 2);
+        assertThat(service.claimPendingOutbox(10, Duration.ZERO, Duration.ofMinutes(1))).hasSize(1);
+        service.completeOutbox(List.of(), List.of("m-1"), 2);
+        assertThat(outboxRow("m-1")).containsEntry("status", "FAILED");
+        assertThat(service.claimPendingOutbox(10, Duration.ZERO, Duration.ofMinutes(1))).isEmpty();
+    }
+
+    @Test
+    void expiredLeasesAreClaimedAgain() {
+        service = TestDatabase.persistenceService(SCHEMA, new QueueProperties());
+        service.initializeRelaySchema();
+        service.insertPendingOutboxBatch(List.of(
+                new PendingOutbox(service.outboxRowFromPayload("{}", "orders", "billing", "m-1", true), "orders.billing.process", "m-1")));
+
+        assertThat(service.claimPendingOutbox(10, Duration.ZERO, Duration.ofMillis(-1))).hasSize(1);
+        assertThat(service.claimPendingOutbox(10, Duration.ZERO, Duration.ofMinutes(1)))
+                .extracting(PendingOutbox::getRoutingKey).containsExactly("orders.billing.process");
+    }
+
+    private static QueueProperties pipelinedInbox(long lingerMs) {
+        QueueProperties properties = new QueueProperties();
+        properties.getInbox().setPipelined(true);
+        properties.getInbox().setLingerMs(lingerMs);
+        return properties;
+    }
+
+    private int count(String table, String condition) {
+        return jdbi.withHandle(handle -> handle.createQuery("SELECT count(*) FROM " + SCHEMA + "." + table + " WHERE " + condition)
+                .mapTo(Integer.class)
+                .one());
+    }
+
+    private Map<String, Object> outboxRow(String messageId) {
+        return jdbi.withHandle(handle -> handle.createQuery("SELECT * FROM " + SCHEMA + ".message_outbox WHERE message_id = :id")
+                .bind("id", messageId)
+                .mapToMap()
+                .one());
+    }
+
+    private Map<String, Object> row(String messageId) {
+        return jdbi.withHandle(handle -> handle.createQuery("SELECT * FROM " + SCHEMA + ".message_inbox WHERE message_id = :id")
+                .bind("id", messageId)
+                .mapToMap()
+                .one());
+    }
+}
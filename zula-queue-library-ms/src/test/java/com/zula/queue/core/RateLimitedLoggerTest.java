@@ -0,0 +1,41 @@
+package com.zula.queue.core;
+
+import com.zula.queue.config.QueueProperties;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateLimitedLoggerTest {
+
+    @Test
+    void payloadIsCutAtACharacterBoundary() {
+        RateLimitedLogger logger = logger(true, 4);
+
+        // "a", e-acute and the euro sign are 1 + 2 + 3 bytes; byte 4 falls inside the euro sign
+        assertThat(logger.payload("a\u00e9\u20ac".getBytes(StandardCharsets.UTF_8))).isEqualTo("a\u00e9... <6 bytes>");
+        assertThat(logger.payload("abcd".getBytes(StandardCharsets.UTF_8))).isEqualTo("abcd");
+    }
+
+    @Test
+    void payloadsAreHiddenByDefault() {
+        assertThat(new RateLimitedLogger(LoggerFactory.getLogger(getClass())).payload(new byte[12])).isEqualTo("<12 bytes>");
+    }
+
+    @Test
+    void negativeLimitIsRejected() {
+        assertThatThrownBy(() -> logger(true, -1))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("max-payload-bytes");
+    }
+
+    private static RateLimitedLogger logger(boolean logPayloads, int maxPayloadBytes) {
+        QueueProperties.Logging settings = new QueueProperties.Logging();
+        settings.setLogPayloads(logPayloads);
+        settings.setMaxPayloadBytes(maxPayloadBytes);
+        return new RateLimitedLogger(LoggerFactory.getLogger(RateLimitedLoggerTest.class), settings);
+    }
+}
@@ -0,0 +1,65 @@
+package com.zula.queue.core;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.listener.DirectMessageListenerContainer;
+import org.springframework.context.Lifecycle;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class SharedListenerDispatcherTest {
+
+    private final DirectMessageListenerContainer container = mock(DirectMessageListenerContainer.class);
+    private final SharedListenerDispatcher dispatcher = new SharedListenerDispatcher(container);
+    private final List<String> received = new CopyOnWriteArrayList<>();
+
+    @Test
+    void stoppingOneHandleLeavesTheOtherQueuesConsumed() {
+        Lifecycle orders = dispatcher.addQueue("zula.test.orders", "orders", message -> received.add("orders"));
+        Lifecycle invoices = dispatcher.addQueue("zula.test.invoices", "invoices", message -> received.add("invoices"));
+
+        orders.stop();
+        dispatcher.onMessage(delivery("zula.test.invoices"));
+
+        assertThat(orders.isRunning()).isFalse();
+        assertThat(invoices.isRunning()).isTrue();
+        assertThat(received).containsExactly("invoices");
+        assertThatThrownBy(() -> dispatcher.onMessage(delivery("zula.test.orders")))
+                .isInstanceOf(AmqpRejectAndDontRequeueException.class);
+        verify(container).removeQueueNames("zula.test.orders");
+        verify(container, never()).stop();
+    }
+
+    @Test
+    void queueAddedTwiceSpreadsDeliveriesOverBothListeners() {
+        dispatcher.addQueue("zula.test.orders", "orders", message -> received.add("first"));
+        Lifecycle second = dispatcher.addQueue("zula.test.orders", "orders", message -> received.add("second"));
+
+        dispatcher.onMessage(delivery("zula.test.orders"));
+        dispatcher.onMessage(delivery("zula.test.orders"));
+        second.stop();
+        dispatcher.onMessage(delivery("zula.test.orders"));
+
+        assertThat(received).containsExactlyInAnyOrder("first", "second", "first");
+        assertThat(received.get(2)).isEqualTo("first");
+        verify(container, times(1)).addQueueNames("zula.test.orders");
+        verify(container, never()).removeQueueNames(any(String[].class));
+    }
+
+    private static Message delivery(String queueName) {
+        MessageProperties properties = new MessageProperties();
+        properties.setConsumerQueue(queueName);
+        return new Message(new byte[0], properties);
+    }
+}
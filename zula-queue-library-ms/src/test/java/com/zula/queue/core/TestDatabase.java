@@ -0,0 +1,67 @@
+package com.zula.queue.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zula.database.config.DatabaseProperties;
+import com.zula.database.core.DatabaseManager;
+import com.zula.queue.config.QueueProperties;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.jdbi.v3.core.Jdbi;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * One embedded PostgreSQL for the whole test run. Tests create their own tables, named after
+ * the test, so they do not see each other's rows.
+ */
+final class TestDatabase {
+
+    private static Jdbi jdbi;
+
+    private TestDatabase() {
+    }
+
+    static synchronized Jdbi jdbi() {
+        if (jdbi == null) {
+            try {
+                // embedded-postgres stops the server in its own shutdown hook
+                jdbi = Jdbi.create(EmbeddedPostgres.start().getPostgresDatabase());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return jdbi;
+    }
+
+    /**
+     * (Re)create a queue schema with the message_outbox and message_inbox tables the database
+     * library creates, so each test class starts empty.
+     */
+    static void createQueueSchema(String schema) {
+        jdbi().useHandle(handle -> {
+            handle.execute("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+            handle.execute("CREATE SCHEMA " + schema);
+            handle.execute("CREATE TABLE " + schema + ".message_outbox ("
+                    + "id BIGSERIAL PRIMARY KEY, message_id VARCHAR(255) NOT NULL UNIQUE, message_type VARCHAR(255), "
+                    + "target_service VARCHAR(255), payload TEXT, status VARCHAR(50), sent_at TIMESTAMP, "
+                    + "created_at TIMESTAMP, updated_at TIMESTAMP, retry_count INTEGER DEFAULT 0)");
+            handle.execute("CREATE TABLE " + schema + ".message_inbox ("
+                    + "id BIGSERIAL PRIMARY KEY, message_id VARCHAR(255) NOT NULL UNIQUE, message_type VARCHAR(255), "
+                    + "source_service VARCHAR(255), payload TEXT, status VARCHAR(50), "
+                    + "created_at TIMESTAMP, updated_at TIMESTAMP, processed_at TIMESTAMP)");
+        });
+    }
+
+    /**
+     * A persistence service on the embedded database, writing to {@code schema}.
+     */
+    static QueuePersistenceService persistenceService(String schema, QueueProperties properties) {
+        DatabaseManager databaseManager = mock(DatabaseManager.class);
+        when(databaseManager.generateQueueSchemaName()).thenReturn(schema);
+        return new QueuePersistenceService(jdbi(), databaseManager, new ObjectMapper(),
+                mock(DatabaseProperties.class), properties);
+    }
+}
@@ -0,0 +1,64 @@
+package com.zula.queue.core;
+
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.support.ListenerExecutionFailedException;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class VirtualThreadMessageListenerTest {
+
+    private final Channel channel = mock(Channel.class);
+
+    @Test
+    void handledDeliveryIsAcked() throws Exception {
+        VirtualThreadMessageListener listener = new VirtualThreadMessageListener(message -> { }, Runnable::run, 1);
+
+        listener.onMessage(delivery(7), channel);
+
+        verify(channel).basicAck(7, false);
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    void failedDeliveryIsRequeued() throws Exception {
+        VirtualThreadMessageListener listener = new VirtualThreadMessageListener(message -> {
+            // e.g. DeliveryRetryHandler when its retry copy was nacked by the broker
+            throw new AmqpException("retry copy not confirmed");
+        }, Runnable::run, 1);
+
+        listener.onMessage(delivery(7), channel);
+        // the permit was released, so a second delivery does not block
+        listener.onMessage(delivery(8), channel);
+
+        verify(channel).basicNack(7, false, true);
+        verify(channel).basicNack(8, false, true);
+    }
+
+    @Test
+    void rejectedDeliveryIsNotRequeued() throws Exception {
+        VirtualThreadMessageListener listener = new VirtualThreadMessageListener(message -> {
+            throw new ListenerExecutionFailedException("handler failed",
+                    new AmqpRejectAndDontRequeueException("undecodable"), message);
+        }, Runnable::run, 1);
+
+        listener.onMessage(delivery(7), channel);
+
+        verify(channel).basicNack(7, false, false);
+    }
+
+    private static Message delivery(long deliveryTag) {
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(deliveryTag);
+        properties.setConsumerQueue("zula.test.queue");
+        return new Message(new byte[0], properties);
+    }
+}
@@ -0,0 +1,95 @@
+package com.zula.queue.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.amqp.core.Message;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end latencies per message type, recorded once a delivery's listener has returned,
+ * i.e. after decoding, the handlers and the inbox write.
+ *
+ * The corrected histogram measures from the time the generator should have sent the message,
+ * so a stall anywhere (including in the generator or publisher) shows up in every message that
+ * was due during the stall, instead of in the single message that was waiting. This is the
+ * usual fix for coordinated omission with a fixed-rate load generator. The uncorrected
+ * histogram measures from the actual send and is reported next to it for comparison.
+ *
+ * Only messages due inside the measurement window are recorded.
+ */
+final class LatencyRecorder {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final Map<String, TypeLatency> byType = new LinkedHashMap<>();
+    private volatile long windowStart = Long.MAX_VALUE;
+    private volatile long windowEnd = Long.MAX_VALUE;
+
+    LatencyRecorder(Collection<String> messageTypes) {
+        for (String messageType : messageTypes) {
+            byType.put(messageType, new TypeLatency());
+        }
+    }
+
+    /**
+     * Start measuring messages due from {@code startNanos}; completions after {@code endNanos}
+     * still count as delivered but not towards the window's throughput.
+     */
+    void startWindow(long startNanos, long endNanos) {
+        windowEnd = endNanos;
+        windowStart = startNanos;
+    }
+
+    void record(Message message) {
+        Map<String, Object> headers = message.getMessageProperties().getHeaders();
+        Object intended = headers.get(StampingTransport.HEADER_INTENDED_NANOS);
+        Object sent = headers.get(StampingTransport.HEADER_SENT_NANOS);
+        Object messageType = headers.get("x-message-type");
+        TypeLatency latency = messageType != null ? byType.get(messageType.toString()) : null;
+        if (latency == null || !(intended instanceof Number) || !(sent instanceof Number)) {
+            return;
+        }
+        long now = System.nanoTime();
+        long intendedNanos = ((Number) intended).longValue();
+        if (intendedNanos < windowStart) {
+            return;
+        }
+        latency.corrected.recordValue(micros(now - intendedNanos));
+        latency.uncorrected.recordValue(micros(now - ((Number) sent).longValue()));
+        latency.completed.increment();
+        if (now <= windowEnd) {
+            latency.completedInWindow.increment();
+        }
+    }
+
+    private static long micros(long nanos) {
+        return Math.min(HIGHEST_TRACKABLE_MICROS, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    TypeLatency of(String messageType) {
+        return byType.get(messageType);
+    }
+
+    static final class TypeLatency {
+        final Recorder corrected = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        final Recorder uncorrected = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        final LongAdder completed = new LongAdder();
+        final LongAdder completedInWindow = new LongAdder();
+
+        /**
+         * Everything recorded so far, in microseconds; call once, at the end of the run.
+         */
+        Histogram correctedHistogram() {
+            return corrected.getIntervalHistogram();
+        }
+
+        Histogram uncorrectedHistogram() {
+            return uncorrected.getIntervalHistogram();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.zula.queue.loadtest;
+
+import com.zula.queue.core.CommandPublisher;
+import com.zula.queue.core.MessagePublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes one workload at a fixed rate. Each message has an intended send time on an even
+ * schedule; publisher threads take turns on that schedule and, when they fall behind, send
+ * immediately without skipping, so the backlog is visible in the corrected latencies.
+ */
+final class LoadGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+
+    /** Park until this close to the intended time, then spin, since parking overshoots by tens of microseconds. */
+    private static final long SPIN_NANOS = 20_000;
+
+    private final LoadTestProperties.Workload workload;
+    private final MessagePublisher messagePublisher;
+    private final CommandPublisher commandPublisher;
+    private final StampingTransport transport;
+    private final String serviceName;
+    private final String padding;
+    private final List<Thread> threads = new ArrayList<>();
+
+    final LongAdder sent = new LongAdder();
+    final LongAdder sentInWindow = new LongAdder();
+    final LongAdder failed = new LongAdder();
+
+    LoadGenerator(LoadTestProperties.Workload workload, MessagePublisher messagePublisher,
+                  CommandPublisher commandPublisher, StampingTransport transport, String serviceName) {
+        this.workload = workload;
+        this.messagePublisher = messagePublisher;
+        this.commandPublisher = commandPublisher;
+        this.transport = transport;
+        this.serviceName = serviceName;
+        this.padding = LoadMessage.padding(workload.getPayloadBytes());
+    }
+
+    /**
+     * Start publishing from {@code startNanos} until {@code endNanos}; messages due from
+     * {@code windowStartNanos} count as measured.
+     */
+    void start(long startNanos, long windowStartNanos, long endNanos) {
+        int publishers = Math.max(1, workload.getPublishers());
+        double periodNanos = 1_000_000_000d / Math.max(1, workload.getRate());
+        for (int i = 0; i < publishers; i++) {
+            int index = i;
+            Thread thread = new Thread(() -> run(index, publishers, periodNanos, startNanos, windowStartNanos, endNanos),
+                    "loadtest-" + workload.getMessageType() + "-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    void join() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private void run(int index, int publishers, double periodNanos, long startNanos, long windowStartNanos, long endNanos) {
+        for (long sequence = index; ; sequence += publishers) {
+            long intended = startNanos + (long) (sequence * periodNanos);
+            if (intended >= endNanos) {
+                return;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                if (wait > SPIN_NANOS) {
+                    LockSupport.parkNanos(wait - SPIN_NANOS);
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+            LoadMessage message = LoadMessage.of(sequence, padding);
+            transport.expect(message.getRequestId(), intended, System.nanoTime());
+            try {
+                publish(message);
+                sent.increment();
+                if (intended >= windowStartNanos) {
+                    sentInWindow.increment();
+                }
+            } catch (RuntimeException ex) {
+                transport.forget(message.getRequestId());
+                if (failed.sum() == 0) {
+                    log.warn("Publishing {} failed, further failures are only counted - {}", workload.getMessageType(), ex.toString());
+                }
+                failed.increment();
+            }
+        }
+    }
+
+    private void publish(LoadMessage message) {
+        if (workload.getKind() == LoadTestProperties.Kind.COMMAND) {
+            commandPublisher.sendCommandToService(serviceName, workload.getMessageType(), "process", message);
+        } else {
+            messagePublisher.publishToService(serviceName, workload.getMessageType(), "process", message);
+        }
+    }
+}
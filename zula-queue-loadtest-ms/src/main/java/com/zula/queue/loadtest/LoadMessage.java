@@ -0,0 +1,49 @@
+package com.zula.queue.loadtest;
+
+import com.zula.queue.core.ZulaMessage;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Message sent by every workload; the workload's message type is passed explicitly when
+ * publishing, and {@code data} pads the JSON body to the workload's payload size.
+ */
+@ZulaMessage(messageType = "load")
+public class LoadMessage {
+
+    private String requestId;
+    private long sequence;
+    private String data;
+
+    public LoadMessage() {
+    }
+
+    /**
+     * A message with a fresh random request id, padded with {@code data} (see {@link #padding}).
+     */
+    public static LoadMessage of(long sequence, String data) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LoadMessage message = new LoadMessage();
+        message.setRequestId(new UUID(random.nextLong(), random.nextLong()).toString());
+        message.setSequence(sequence);
+        message.setData(data);
+        return message;
+    }
+
+    /**
+     * Padding that brings the JSON body to roughly {@code payloadBytes}.
+     */
+    public static String padding(int payloadBytes) {
+        return "x".repeat(Math.max(0, payloadBytes - 90));
+    }
+
+    public String getRequestId() { return requestId; }
+    public void setRequestId(String requestId) { this.requestId = requestId; }
+
+    public long getSequence() { return sequence; }
+    public void setSequence(long sequence) { this.sequence = sequence; }
+
+    public String getData() { return data; }
+    public void setData(String data) { this.data = data; }
+}
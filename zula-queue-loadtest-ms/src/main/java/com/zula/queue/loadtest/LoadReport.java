@@ -0,0 +1,126 @@
+package com.zula.queue.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Results of one run (one persistence mode) and their text report. Latencies are recorded in
+ * microseconds and printed in milliseconds.
+ */
+final class LoadReport {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    final boolean persistence;
+    final String transport;
+    final int durationSeconds;
+    final List<TypeResult> types = new ArrayList<>();
+
+    LoadReport(boolean persistence, String transport, int durationSeconds) {
+        this.persistence = persistence;
+        this.transport = transport;
+        this.durationSeconds = durationSeconds;
+    }
+
+    static final class TypeResult {
+        final LoadTestProperties.Workload workload;
+        final long sentInWindow;
+        final long failed;
+        final long completed;
+        final long completedInWindow;
+        final Histogram corrected;
+        final Histogram uncorrected;
+
+        TypeResult(LoadTestProperties.Workload workload, long sentInWindow, long failed, long completed,
+                   long completedInWindow, Histogram corrected, Histogram uncorrected) {
+            this.workload = workload;
+            this.sentInWindow = sentInWindow;
+            this.failed = failed;
+            this.completed = completed;
+            this.completedInWindow = completedInWindow;
+            this.corrected = corrected;
+            this.uncorrected = uncorrected;
+        }
+    }
+
+    String mode() {
+        return persistence ? "on" : "off";
+    }
+
+    void print(PrintStream out) {
+        out.printf(Locale.ROOT, "%n== persistence %s, %s transport, %d s measured ==%n", mode(), transport, durationSeconds);
+        out.printf(Locale.ROOT, "%-20s %-7s %7s %9s %9s %9s %7s %7s %9s %9s %9s %9s %14s%n",
+                "type", "kind", "bytes", "target/s", "sent/s", "done/s", "missing", "failed",
+                "p50 ms", "p99 ms", "p99.9 ms", "max ms", "raw p99.9 ms");
+        for (TypeResult result : types) {
+            LoadTestProperties.Workload workload = result.workload;
+            out.printf(Locale.ROOT, "%-20s %-7s %7d %9d %9.0f %9.0f %7d %7d %9.3f %9.3f %9.3f %9.3f %14.3f%n",
+                    workload.getMessageType(), workload.getKind().name().toLowerCase(Locale.ROOT),
+                    workload.getPayloadBytes(), workload.getRate(),
+                    perSecond(result.sentInWindow), perSecond(result.completedInWindow),
+                    Math.max(0, result.sentInWindow - result.completed), result.failed,
+                    millis(result.corrected, 50), millis(result.corrected, 99), millis(result.corrected, 99.9),
+                    result.corrected.getMaxValue() / MICROS_PER_MILLI, millis(result.uncorrected, 99.9));
+        }
+    }
+
+    /**
+     * Per type: throughput and latency with persistence against without.
+     */
+    static void printOverhead(PrintStream out, LoadReport off, LoadReport on) {
+        out.printf(Locale.ROOT, "%n== persistence overhead (off -> on) ==%n");
+        out.printf(Locale.ROOT, "%-20s %-26s %-26s %-26s %-26s%n", "type", "done/s", "p50 ms", "p99 ms", "p99.9 ms");
+        for (TypeResult withOff : off.types) {
+            TypeResult withOn = on.types.stream()
+                    .filter(result -> result.workload.getMessageType().equals(withOff.workload.getMessageType()))
+                    .findFirst().orElse(null);
+            if (withOn == null) {
+                continue;
+            }
+            out.printf(Locale.ROOT, "%-20s %-26s %-26s %-26s %-26s%n", withOff.workload.getMessageType(),
+                    change(off.perSecond(withOff.completedInWindow), on.perSecond(withOn.completedInWindow), "%.0f"),
+                    change(millis(withOff.corrected, 50), millis(withOn.corrected, 50), "%.3f"),
+                    change(millis(withOff.corrected, 99), millis(withOn.corrected, 99), "%.3f"),
+                    change(millis(withOff.corrected, 99.9), millis(withOn.corrected, 99.9), "%.3f"));
+        }
+    }
+
+    /**
+     * Write each type's corrected and raw latency distributions as .hgrm files, which HdrHistogram's
+     * plotter and most latency tools read.
+     */
+    void writeHistograms(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (TypeResult result : types) {
+            String name = result.workload.getMessageType() + "-persistence-" + mode();
+            write(directory.resolve(name + ".hgrm"), result.corrected);
+            write(directory.resolve(name + "-raw.hgrm"), result.uncorrected);
+        }
+    }
+
+    private static void write(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, "UTF-8")) {
+            histogram.outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+    }
+
+    private double perSecond(long count) {
+        return durationSeconds > 0 ? (double) count / durationSeconds : 0;
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+    }
+
+    private static String change(double before, double after, String format) {
+        String percent = before > 0 ? String.format(Locale.ROOT, " (%+.1f%%)", (after - before) * 100 / before) : "";
+        return String.format(Locale.ROOT, format + " -> " + format, before, after) + percent;
+    }
+}
@@ -0,0 +1,225 @@
+package com.zula.queue.loadtest;
+
+import com.zula.queue.config.QueueAutoConfig;
+import com.zula.queue.config.QueueProperties;
+import com.zula.queue.core.CommandHandlerRegistry;
+import com.zula.queue.core.CommandPublisher;
+import com.zula.queue.core.LoopbackTransport;
+import com.zula.queue.core.MessageHandlerRegistry;
+import com.zula.queue.core.MessagePublisher;
+import com.zula.queue.core.MessageTransport;
+import com.zula.queue.core.QueueListenerContainerFactory;
+import com.zula.queue.core.RabbitMessageTransport;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.Banner;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.amqp.RabbitAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test: publish, route, consume, handler and inbox write through the library's
+ * public APIs, at fixed rates per message type, reporting throughput and latency percentiles
+ * once without and once with persistence.
+ *
+ * Each run starts its own Spring context, as a service would. The run with persistence uses the
+ * full auto-configuration with an embedded PostgreSQL as the DataSource; the run without imports
+ * only the Jackson, Rabbit and queue auto-configurations, so no QueuePersistenceService exists.
+ * Arguments other than {@code --loadtest.*} (e.g. {@code --zula.queue.*}, {@code --spring.rabbitmq.*})
+ * are passed to both contexts.
+ */
+public final class LoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadTest.class);
+
+    static final String SERVICE_NAME = "loadtest";
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new SimpleCommandLinePropertySource(args));
+        LoadTestProperties options = Binder.get(environment).bind("loadtest", LoadTestProperties.class)
+                .orElseGet(LoadTestProperties::new);
+
+        List<LoadReport> reports = new ArrayList<>();
+        if (options.getPersistence() != LoadTestProperties.Persistence.ON) {
+            reports.add(run(options, false, args));
+        }
+        if (options.getPersistence() != LoadTestProperties.Persistence.OFF) {
+            reports.add(run(options, true, args));
+        }
+        for (LoadReport report : reports) {
+            report.print(System.out);
+            if (!options.getOutputDir().isBlank()) {
+                report.writeHistograms(Path.of(options.getOutputDir()));
+            }
+        }
+        if (reports.size() == 2) {
+            LoadReport.printOverhead(System.out, reports.get(0), reports.get(1));
+        }
+        System.exit(0);
+    }
+
+    static LoadReport run(LoadTestProperties options, boolean persistence, String[] args) throws Exception {
+        List<LoadTestProperties.Workload> workloads = options.resolveWorkloads();
+        List<String> properties = new ArrayList<>(List.of(
+                "spring.application.name=" + SERVICE_NAME,
+                "zula.queue.transport=" + options.getTransport().name().toLowerCase(Locale.ROOT),
+                "zula.queue.loopback.broker="));
+        for (LoadTestProperties.Workload workload : workloads) {
+            properties.add("zula.queue.listener.types." + workload.getMessageType().toLowerCase(Locale.ROOT)
+                    + ".concurrent-consumers=" + workload.getConsumers());
+        }
+
+        EmbeddedPostgres postgres = persistence ? EmbeddedPostgres.start() : null;
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(persistence ? WithPersistence.class : WithoutPersistence.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .properties(properties.toArray(new String[0]))
+                .initializers(ctx -> {
+                    ctx.getBeanFactory().registerSingleton("loadTestProperties", options);
+                    if (postgres != null) {
+                        ctx.getBeanFactory().registerSingleton("dataSource", postgres.getPostgresDatabase());
+                    }
+                });
+        try (ConfigurableApplicationContext context = builder.run(args)) {
+            return measure(context, options, workloads, persistence);
+        } finally {
+            if (postgres != null) {
+                postgres.close();
+            }
+        }
+    }
+
+    private static LoadReport measure(ConfigurableApplicationContext context, LoadTestProperties options,
+                                      List<LoadTestProperties.Workload> workloads, boolean persistence) throws InterruptedException {
+        MessageHandlerRegistry handlers = context.getBean(MessageHandlerRegistry.class);
+        CommandHandlerRegistry commandHandlers = context.getBean(CommandHandlerRegistry.class);
+        LatencyRecorder recorder = context.getBean(LatencyRecorder.class);
+        StampingTransport transport = context.getBean(StampingTransport.class);
+        for (LoadTestProperties.Workload workload : workloads) {
+            long workNanos = TimeUnit.MICROSECONDS.toNanos(workload.getHandlerMicros());
+            if (workload.getKind() == LoadTestProperties.Kind.COMMAND) {
+                commandHandlers.register(workload.getMessageType(), LoadMessage.class, message -> work(workNanos));
+            } else {
+                handlers.register(workload.getMessageType(), LoadMessage.class, message -> work(workNanos));
+            }
+        }
+
+        List<LoadGenerator> generators = new ArrayList<>();
+        for (LoadTestProperties.Workload workload : workloads) {
+            generators.add(new LoadGenerator(workload, context.getBean(MessagePublisher.class),
+                    context.getBean(CommandPublisher.class), transport, SERVICE_NAME));
+        }
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long windowStart = start + TimeUnit.SECONDS.toNanos(options.getWarmupSeconds());
+        long end = windowStart + TimeUnit.SECONDS.toNanos(options.getDurationSeconds());
+        recorder.startWindow(windowStart, end);
+        log.info("Persistence {}: {} s warmup, {} s measured, {} message type(s)",
+                persistence ? "on" : "off", options.getWarmupSeconds(), options.getDurationSeconds(), workloads.size());
+        for (LoadGenerator generator : generators) {
+            generator.start(start, windowStart, end);
+        }
+        for (LoadGenerator generator : generators) {
+            generator.join();
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.getDrainTimeoutSeconds());
+        while (!drained(workloads, generators, recorder) && System.nanoTime() < drainDeadline) {
+            Thread.sleep(50);
+        }
+
+        LoadReport report = new LoadReport(persistence, options.getTransport().name().toLowerCase(Locale.ROOT),
+                options.getDurationSeconds());
+        for (int i = 0; i < workloads.size(); i++) {
+            LoadGenerator generator = generators.get(i);
+            LatencyRecorder.TypeLatency latency = recorder.of(workloads.get(i).getMessageType());
+            report.types.add(new LoadReport.TypeResult(workloads.get(i), generator.sentInWindow.sum(), generator.failed.sum(),
+                    latency.completed.sum(), latency.completedInWindow.sum(),
+                    latency.correctedHistogram(), latency.uncorrectedHistogram()));
+        }
+        return report;
+    }
+
+    private static boolean drained(List<LoadTestProperties.Workload> workloads, List<LoadGenerator> generators,
+                                   LatencyRecorder recorder) {
+        for (int i = 0; i < workloads.size(); i++) {
+            if (recorder.of(workloads.get(i).getMessageType()).completed.sum() < generators.get(i).sentInWindow.sum()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void work(long nanos) {
+        long until = System.nanoTime() + nanos;
+        while (System.nanoTime() < until) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Beans shared by both runs: the stamping transport around the configured transport, the
+     * timing container factory and the latency recorder. They replace the library's defaults,
+     * which back off when these exist.
+     */
+    @Configuration(proxyBeanMethods = false)
+    static class Harness {
+
+        @Bean
+        LatencyRecorder latencyRecorder(LoadTestProperties options) {
+            return new LatencyRecorder(options.resolveWorkloads().stream()
+                    .map(LoadTestProperties.Workload::getMessageType).toList());
+        }
+
+        @Bean
+        StampingTransport messageTransport(RabbitTemplate rabbitTemplate, RabbitAdmin rabbitAdmin, QueueProperties properties) {
+            MessageTransport delegate = properties.getTransport() == QueueProperties.Transport.LOOPBACK
+                    ? new LoopbackTransport(properties.getLoopback())
+                    : new RabbitMessageTransport(rabbitTemplate, rabbitAdmin);
+            return new StampingTransport(delegate);
+        }
+
+        @Bean
+        QueueListenerContainerFactory queueListenerContainerFactory(ConnectionFactory connectionFactory, QueueProperties properties,
+                                                                    StampingTransport transport, LatencyRecorder recorder) {
+            return new TimingContainerFactory(connectionFactory, properties, transport, recorder);
+        }
+    }
+
+    @SpringBootConfiguration
+    @ImportAutoConfiguration({JacksonAutoConfiguration.class, RabbitAutoConfiguration.class, QueueAutoConfig.class})
+    @Import(Harness.class)
+    static class WithoutPersistence {
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @Import(Harness.class)
+    static class WithPersistence {
+    }
+}
@@ -0,0 +1,109 @@
+package com.zula.queue.loadtest;
+
+import com.zula.queue.config.QueueProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Load test settings, bound from {@code --loadtest.*} arguments.
+ */
+public class LoadTestProperties {
+
+    /**
+     * Which runs to make: without persistence, with persistence on an embedded PostgreSQL, or both.
+     */
+    public enum Persistence { OFF, ON, BOTH }
+
+    /**
+     * Whether messages go through {@code MessagePublisher}/{@code MessageHandlerRegistry} or
+     * {@code CommandPublisher}/{@code CommandHandlerRegistry}.
+     */
+    public enum Kind { EVENT, COMMAND }
+
+    /** Broker: the in-memory loopback transport, or RabbitMQ as configured with {@code spring.rabbitmq.*}. */
+    private QueueProperties.Transport transport = QueueProperties.Transport.LOOPBACK;
+
+    private Persistence persistence = Persistence.BOTH;
+
+    /** Seconds of load before measuring starts. */
+    private int warmupSeconds = 10;
+
+    /** Seconds of measured load. */
+    private int durationSeconds = 30;
+
+    /** How long to wait for outstanding deliveries after the last send. */
+    private int drainTimeoutSeconds = 30;
+
+    /** Directory for one .hgrm percentile distribution per run and type; empty writes none. */
+    private String outputDir = "";
+
+    /** Message types to drive; one "load" event at 1000 msg/s when empty. */
+    private List<Workload> workloads = new ArrayList<>();
+
+    public QueueProperties.Transport getTransport() { return transport; }
+    public void setTransport(QueueProperties.Transport transport) { this.transport = transport; }
+
+    public Persistence getPersistence() { return persistence; }
+    public void setPersistence(Persistence persistence) { this.persistence = persistence; }
+
+    public int getWarmupSeconds() { return warmupSeconds; }
+    public void setWarmupSeconds(int warmupSeconds) { this.warmupSeconds = warmupSeconds; }
+
+    public int getDurationSeconds() { return durationSeconds; }
+    public void setDurationSeconds(int durationSeconds) { this.durationSeconds = durationSeconds; }
+
+    public int getDrainTimeoutSeconds() { return drainTimeoutSeconds; }
+    public void setDrainTimeoutSeconds(int drainTimeoutSeconds) { this.drainTimeoutSeconds = drainTimeoutSeconds; }
+
+    public String getOutputDir() { return outputDir; }
+    public void setOutputDir(String outputDir) { this.outputDir = outputDir; }
+
+    public List<Workload> getWorkloads() { return workloads; }
+    public void setWorkloads(List<Workload> workloads) { this.workloads = workloads; }
+
+    /**
+     * The configured workloads, or the default one.
+     */
+    public List<Workload> resolveWorkloads() {
+        return workloads.isEmpty() ? List.of(new Workload()) : workloads;
+    }
+
+    /**
+     * Load for one message type.
+     */
+    public static class Workload {
+        private String messageType = "load";
+        private Kind kind = Kind.EVENT;
+        /** Approximate JSON body size. */
+        private int payloadBytes = 1024;
+        /** Messages per second, spread evenly over the publisher threads. */
+        private int rate = 1000;
+        private int publishers = 1;
+        /** Consumer threads for the type's queue ({@code zula.queue.listener.types.<type>.concurrent-consumers}). */
+        private int consumers = 1;
+        /** Simulated handler work per message. */
+        private int handlerMicros = 0;
+
+        public String getMessageType() { return messageType; }
+        public void setMessageType(String messageType) { this.messageType = messageType; }
+
+        public Kind getKind() { return kind; }
+        public void setKind(Kind kind) { this.kind = kind; }
+
+        public int getPayloadBytes() { return payloadBytes; }
+        public void setPayloadBytes(int payloadBytes) { this.payloadBytes = payloadBytes; }
+
+        public int getRate() { return rate; }
+        public void setRate(int rate) { this.rate = rate; }
+
+        public int getPublishers() { return publishers; }
+        public void setPublishers(int publishers) { this.publishers = publishers; }
+
+        public int getConsumers() { return consumers; }
+        public void setConsumers(int consumers) { this.consumers = consumers; }
+
+        public int getHandlerMicros() { return handlerMicros; }
+        public void setHandlerMicros(int handlerMicros) { this.handlerMicros = handlerMicros; }
+    }
+}
@@ -0,0 +1,131 @@
+package com.zula.queue.loadtest;
+
+import com.zula.queue.core.MessageTransport;
+import org.springframework.amqp.core.BatchMessageListener;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Exchange;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.context.Lifecycle;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Transport that writes the load generator's send times into message headers before handing
+ * the message to the real transport. The generator registers the times under the message id
+ * before it publishes, so messages sent later by the outbox relay are stamped as well.
+ * Both times are {@link System#nanoTime()} values, which is fine because generator and
+ * consumers run in the same JVM.
+ */
+final class StampingTransport implements MessageTransport, AutoCloseable {
+
+    /** When the message should have been sent according to the workload's rate. */
+    static final String HEADER_INTENDED_NANOS = "x-load-intended-nanos";
+    /** When the generator actually called the publisher. */
+    static final String HEADER_SENT_NANOS = "x-load-sent-nanos";
+
+    private final MessageTransport delegate;
+    private final Map<String, long[]> pending = new ConcurrentHashMap<>();
+
+    StampingTransport(MessageTransport delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Remember the send times of a message about to be published.
+     */
+    void expect(String messageId, long intendedNanos, long sentNanos) {
+        pending.put(messageId, new long[] {intendedNanos, sentNanos});
+    }
+
+    /**
+     * Drop the send times of a message whose publish failed.
+     */
+    void forget(String messageId) {
+        pending.remove(messageId);
+    }
+
+    private Message stamp(Message message) {
+        MessageProperties props = message.getMessageProperties();
+        Object messageId = props.getHeaders().get("x-message-id");
+        long[] times = messageId != null ? pending.remove(messageId.toString()) : null;
+        if (times != null) {
+            props.setHeader(HEADER_INTENDED_NANOS, times[0]);
+            props.setHeader(HEADER_SENT_NANOS, times[1]);
+        }
+        return message;
+    }
+
+    @Override
+    public Confirms getConfirms() {
+        return delegate.getConfirms();
+    }
+
+    @Override
+    public void send(String exchange, String routingKey, Message message, CorrelationData correlation) {
+        delegate.send(exchange, routingKey, stamp(message), correlation);
+    }
+
+    @Override
+    public <T> T invoke(Function<Channel, T> action) {
+        return delegate.invoke(channel -> action.apply(new Channel() {
+            @Override
+            public void send(String exchange, String routingKey, Message message, CorrelationData correlation) {
+                channel.send(exchange, routingKey, stamp(message), correlation);
+            }
+
+            @Override
+            public boolean waitForConfirms(long timeoutMs) {
+                return channel.waitForConfirms(timeoutMs);
+            }
+        }));
+    }
+
+    @Override
+    public void declareExchange(Exchange exchange) {
+        delegate.declareExchange(exchange);
+    }
+
+    @Override
+    public void declareQueue(Queue queue) {
+        delegate.declareQueue(queue);
+    }
+
+    @Override
+    public void declareBinding(Binding binding) {
+        delegate.declareBinding(binding);
+    }
+
+    @Override
+    public void removeBinding(Binding binding) {
+        delegate.removeBinding(binding);
+    }
+
+    @Override
+    public void onReconnect(Runnable action) {
+        delegate.onReconnect(action);
+    }
+
+    @Override
+    public Lifecycle subscribe(String queueName, MessageListener listener, int consumers) {
+        return delegate.subscribe(queueName, listener, consumers);
+    }
+
+    @Override
+    public Lifecycle subscribeBatch(String queueName, BatchMessageListener listener, int consumers, int batchSize) {
+        return delegate.subscribeBatch(queueName, listener, consumers, batchSize);
+    }
+
+    @Override
+    public void close() throws Exception {
+        pending.clear();
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.zula.queue.loadtest;
+
+import com.zula.queue.config.QueueProperties;
+import com.zula.queue.core.MessageTransport;
+import com.zula.queue.core.QueueListenerContainerFactory;
+import org.springframework.amqp.core.BatchMessageListener;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.context.Lifecycle;
+
+/**
+ * Container factory that records each delivery in the {@link LatencyRecorder} once the
+ * registry's listener has returned without an exception. Consuming itself is left to the
+ * library, on Rabbit containers or loopback subscriptions alike.
+ */
+final class TimingContainerFactory extends QueueListenerContainerFactory {
+
+    private final LatencyRecorder recorder;
+
+    TimingContainerFactory(ConnectionFactory connectionFactory, QueueProperties properties,
+                           MessageTransport transport, LatencyRecorder recorder) {
+        super(connectionFactory, properties, transport);
+        this.recorder = recorder;
+    }
+
+    @Override
+    public Lifecycle startContainer(String queueName, String messageType, MessageListener listener) {
+        return super.startContainer(queueName, messageType, message -> {
+            listener.onMessage(message);
+            recorder.record(message);
+        });
+    }
+
+    @Override
+    public Lifecycle startBatchContainer(String queueName, String messageType, BatchMessageListener listener) {
+        return super.startBatchContainer(queueName, messageType, messages -> {
+            listener.onMessageBatch(messages);
+            for (Message message : messages) {
+                recorder.record(message);
+            }
+        });
+    }
+}